@@ -0,0 +1,55 @@
+import java.io.IOException;
+
+/*
+ * AppendSequence hands out the space of a file that is appended to by several threads at once, and decides how much of it readers may see.
+ *      -reserve(...) gives an append its offset. Reservations are made under the file's append lock, in the same order as the appends are logged.
+ *       The student and course files take their offsets from an IDAllocator instead, also in log order, and only publish through here.
+ *      -An append is written once the log holds it, which may be after appends reserved later. publish(...) therefore waits until every append
+ *       before it has been published, so end() only ever moves past records that are completely written, and readers and scans that stop at
+ *       end() never see a hole or a record in the middle of being written.
+ *      -If an append fails after its reservation, fail(...) makes every append waiting behind it, and every later one, fail too: the space it
+ *       reserved would otherwise never be published. The store has to be reopened, which replays the log.
+ */
+class AppendSequence {
+	private long reserved;
+	private volatile long published;
+	private IOException failure;
+	public AppendSequence(long end) {
+		this.reserved = end;
+		this.published = end;
+	}
+	//The offset just past the last published append.
+	public long end() {
+		return published;
+	}
+	public synchronized long reserve(long length) throws IOException {
+		checkFailure();
+		long offset = reserved;
+		reserved += length;
+		return offset;
+	}
+	//Publishes the append reserved at offset, which ends at end, as soon as every append reserved before it has been published.
+	public synchronized void publish(long offset, long end) throws IOException {
+		boolean interrupted = false;
+		while(published != offset) {
+			checkFailure();
+			try {
+				wait();
+			} catch (InterruptedException exception) {  //The append is already in the log, so it is published all the same.
+				interrupted = true;
+			}
+		}
+		published = end;
+		notifyAll();
+		if(interrupted)
+			Thread.currentThread().interrupt();
+	}
+	public synchronized void fail(IOException exception) {
+		if(failure == null)
+			failure = exception;
+		notifyAll();
+	}
+	private void checkFailure() throws IOException {
+		if(failure != null) throw new IOException("An earlier append failed; the store must be reopened.", failure);
+	}
+}
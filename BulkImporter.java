@@ -0,0 +1,299 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * BulkImporter streams CSV exports into a store: students, courses and enrollments, one file of each.
+ *      -Rows are read one at a time and validated, and valid rows are collected into batches of BATCH_SIZE that are appended with a single write
+ *       (createStudents, createCourses, writeEnrollRecords), so memory use does not depend on the size of the input.
+ *      -Enrollments are checked for duplicates against the in-memory enrollment index and the rows before them in the same batch, so the whole
+ *       import is one pass over the input and never scans the enroll file. Their courses and students are checked by the store as it writes
+ *       the batch, under the lock that keeps them from being deleted meanwhile, and a row whose course or student does not exist is rejected
+ *       alone.
+ *      -Every rejected row is written to <input>.rejected as "line,reason,row", and a progress line is printed every PROGRESS_ROWS rows. The
+ *       file is only created once a row is rejected, so an import without rejects leaves the file of an earlier one as it was.
+ *
+ * The CSV formats are, with an optional header line:
+ *      students:    name,address,age,year           year is one of StudentInfoStore.YEAR_LEVELS
+ *      courses:     title,description,room,major    major is one of StudentInfoStore.MAJORS
+ *      enrollments: year,semester,courseID,studentID[,grade]
+ * Students and courses are given IDs in the order of their rows; the first and last ID assigned are reported, so enrollment exports can be
+ * matched up with them.
+ *
+ * Usage: java BulkImporter [--dir directory] [--students file.csv] [--courses file.csv] [--enrollments file.csv]
+ */
+public class BulkImporter {
+	private static final int BATCH_SIZE = 10000,
+							 PROGRESS_ROWS = 100000;
+	private final StudentInfoStore store;
+	private final PrintStream progress;
+
+	public BulkImporter(StudentInfoStore store, PrintStream progress) {
+		this.store = store;
+		this.progress = progress;
+	}
+
+	public static void main(String[] args) throws IOException {
+		File directory = new File("."),
+			 students = null,
+			 courses = null,
+			 enrollments = null;
+		for(int arg = 0; arg < args.length; arg++) {
+			switch(args[arg]) {
+				case "--dir": directory = new File(args[++arg]); break;
+				case "--students": students = new File(args[++arg]); break;
+				case "--courses": courses = new File(args[++arg]); break;
+				case "--enrollments": enrollments = new File(args[++arg]); break;
+				default: throw new IllegalArgumentException("Unknown argument: " + args[arg]);
+			}
+		}
+		try(StudentInfoStore store = new StudentInfoStore(directory)) {
+			BulkImporter importer = new BulkImporter(store, System.out);
+			//Students and courses go first, so that the enrollments can refer to them.
+			if(students != null) importer.importStudents(students);
+			if(courses != null) importer.importCourses(courses);
+			if(enrollments != null) importer.importEnrollments(enrollments);
+		}
+	}
+
+	/*
+	 * Result is the outcome of importing one file. firstID and lastID are the IDs given to the first and last imported student or course;
+	 * both are 0 for enrollments, or when nothing was imported.
+	 */
+	public static class Result {
+		private long rows,
+					 imported,
+					 rejected,
+					 millis;
+		private int firstID,
+					lastID;
+		public long getRows() { return rows; }
+		public long getImported() { return imported; }
+		public long getRejected() { return rejected; }
+		public long getMillis() { return millis; }
+		public int getFirstID() { return firstID; }
+		public int getLastID() { return lastID; }
+	}
+
+	public Result importStudents(File csv) throws IOException {
+		return importFile(csv, "name", new RowImporter<Student>() {
+			Student parse(String[] fields) {
+				checkFieldCount(fields, 4, 4);
+				short age = parseShort(fields[2], "age");
+				if(age < 16 || age > 122) throw new IllegalArgumentException("age must be between 16 and 122");
+				return new Student(checkText(fields[0], "name"), checkText(fields[1], "address"), age, checkChoice(fields[3], StudentInfoStore.YEAR_LEVELS, "year"));
+			}
+			boolean[] write(List<Student> batch, String[] refusals, Result result) throws IOException {
+				recordIDs(result, store.createStudents(batch), batch.size());
+				return null;
+			}
+		});
+	}
+
+	public Result importCourses(File csv) throws IOException {
+		return importFile(csv, "title", new RowImporter<Course>() {
+			Course parse(String[] fields) {
+				checkFieldCount(fields, 4, 4);
+				short room = parseShort(fields[2], "room");
+				if(room < 1 || room > 999) throw new IllegalArgumentException("room must be between 1 and 999");
+				return new Course(checkText(fields[0], "title"), checkText(fields[1], "description"), room, checkChoice(fields[3], StudentInfoStore.MAJORS, "major"));
+			}
+			boolean[] write(List<Course> batch, String[] refusals, Result result) throws IOException {
+				recordIDs(result, store.createCourses(batch), batch.size());
+				return null;
+			}
+		});
+	}
+
+	public Result importEnrollments(File csv) throws IOException {
+		return importFile(csv, "year", new RowImporter<Enrollment>() {
+			Enrollment parse(String[] fields) {
+				checkFieldCount(fields, 4, 5);
+				short year = parseShort(fields[0], "year");
+				String semester = checkChoice(fields[1], StudentInfoStore.SEMESTERS, "semester");
+				int courseID = parseInt(fields[2], "courseID"),
+					studentID = parseInt(fields[3], "studentID");
+				String grade = fields.length == 5 && !fields[4].trim().isEmpty() ? checkChoice(fields[4], StudentInfoStore.GRADES, "grade") : "IP";
+				return new Enrollment(year, semester, courseID, studentID, grade);
+			}
+			boolean[] write(List<Enrollment> batch, String[] refusals, Result result) throws IOException {
+				return store.writeEnrollRecords(batch, refusals);
+			}
+		});
+	}
+
+	/*
+	 * A RowImporter turns the fields of one CSV row into a record, throwing an IllegalArgumentException with the reason if the row is invalid,
+	 * and writes a batch of records to the store. write(...) returns which records were written, or null if all of them were, and puts the
+	 * reason a record was refused in its slot of refusals; a record not written with no reason is a duplicate.
+	 */
+	private abstract static class RowImporter<T> {
+		abstract T parse(String[] fields) throws IOException;
+		abstract boolean[] write(List<T> batch, String[] refusals, Result result) throws IOException;
+	}
+
+	private <T> Result importFile(File csv, String headerField, RowImporter<T> rowImporter) throws IOException {
+		Result result = new Result();
+		long start = System.currentTimeMillis();
+		List<T> batch = new ArrayList<>(BATCH_SIZE);
+		List<String> batchLines = new ArrayList<>(BATCH_SIZE);
+		long[] batchLineNumbers = new long[BATCH_SIZE];
+		progress.println("Importing " + csv + "...");
+		try(BufferedReader reader = new BufferedReader(new FileReader(csv), 1 << 16);
+			RejectsFile rejects = new RejectsFile(new File(csv.getPath() + ".rejected"))) {
+			String line;
+			long lineNumber = 0;
+			while((line = reader.readLine()) != null) {
+				++lineNumber;
+				if(line.trim().isEmpty()) continue;
+				String[] fields = parseCSVLine(line);
+				if(lineNumber == 1 && fields[0].trim().equalsIgnoreCase(headerField)) continue;
+				++result.rows;
+				try {
+					batchLineNumbers[batch.size()] = lineNumber;
+					batch.add(rowImporter.parse(fields));
+					batchLines.add(line);
+				} catch (IllegalArgumentException exception) {
+					reject(rejects, result, lineNumber, exception.getMessage(), line);
+				}
+				if(batch.size() == BATCH_SIZE)
+					flush(rowImporter, batch, batchLines, batchLineNumbers, rejects, result);
+				if(result.rows % PROGRESS_ROWS == 0)
+					printProgress(result, start);
+			}
+			flush(rowImporter, batch, batchLines, batchLineNumbers, rejects, result);
+		}
+		result.millis = System.currentTimeMillis() - start;
+		printProgress(result, start);
+		if(result.firstID != 0)
+			progress.println("IDs " + result.firstID + " to " + result.lastID + " assigned.");
+		if(result.rejected != 0)
+			progress.println(result.rejected + " rows rejected; see " + csv.getPath() + ".rejected");
+		return result;
+	}
+
+	private <T> void flush(RowImporter<T> rowImporter, List<T> batch, List<String> batchLines, long[] batchLineNumbers, RejectsFile rejects, Result result) throws IOException {
+		if(batch.isEmpty()) return;
+		String[] refusals = new String[batch.size()];
+		boolean[] written = rowImporter.write(batch, refusals, result);
+		for(int index = 0; index < batch.size(); index++) {
+			if(written == null || written[index])
+				++result.imported;
+			else
+				reject(rejects, result, batchLineNumbers[index], refusals[index] != null ? refusals[index] : "duplicate enrollment", batchLines.get(index));
+		}
+		batch.clear();
+		batchLines.clear();
+	}
+
+	private void reject(RejectsFile rejects, Result result, long lineNumber, String reason, String line) throws IOException {
+		++result.rejected;
+		rejects.println(lineNumber + ",\"" + reason.replace("\"", "\"\"") + "\"," + line);
+	}
+
+	//The <input>.rejected file of an import, opened (and so truncated) by the first rejected row.
+	private static class RejectsFile implements Closeable {
+		private final File file;
+		private PrintWriter writer;
+		RejectsFile(File file) {
+			this.file = file;
+		}
+		void println(String line) throws IOException {
+			if(writer == null)
+				writer = new PrintWriter(new BufferedWriter(new FileWriter(file)));
+			writer.println(line);
+		}
+		public void close() {
+			if(writer != null)
+				writer.close();
+		}
+	}
+
+	private void printProgress(Result result, long start) {
+		long millis = Math.max(1, System.currentTimeMillis() - start);
+		progress.printf("%d rows read, %d imported, %d rejected (%.0f rows/s)%n", result.rows, result.imported, result.rejected, result.rows * 1000.0 / millis);
+	}
+
+	private static void recordIDs(Result result, int firstID, int count) {
+		if(result.firstID == 0)
+			result.firstID = firstID;
+		result.lastID = firstID + count - 1;
+	}
+
+	/*
+	 * Splits one CSV line into fields. Fields may be quoted with double quotes, so they can contain commas; a doubled quote inside a quoted
+	 * field stands for one quote. Fields are not trimmed here.
+	 */
+	static String[] parseCSVLine(String line) {
+		List<String> fields = new ArrayList<>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		for(int index = 0; index < line.length(); index++) {
+			char ch = line.charAt(index);
+			if(quoted) {
+				if(ch == '"' && index + 1 < line.length() && line.charAt(index + 1) == '"') {
+					field.append('"');
+					++index;
+				}
+				else if(ch == '"')
+					quoted = false;
+				else
+					field.append(ch);
+			}
+			else if(ch == '"')
+				quoted = true;
+			else if(ch == ',') {
+				fields.add(field.toString());
+				field.setLength(0);
+			}
+			else
+				field.append(ch);
+		}
+		fields.add(field.toString());
+		return fields.toArray(new String[fields.size()]);
+	}
+
+	private static void checkFieldCount(String[] fields, int min, int max) {
+		if(fields.length < min || fields.length > max)
+			throw new IllegalArgumentException("expected " + (min == max ? String.valueOf(min) : min + " to " + max) + " fields, found " + fields.length);
+	}
+
+	private static String checkText(String field, String name) {
+		String text = field.trim();
+		if(text.isEmpty()) throw new IllegalArgumentException(name + " cannot be empty");
+		if(text.length() > StudentInfoStore.TEXT_SIZE) throw new IllegalArgumentException(name + " is longer than " + StudentInfoStore.TEXT_SIZE + " characters");
+		if(text.getBytes(StandardCharsets.UTF_8).length > RecordFormat.TEXT_BYTES) throw new IllegalArgumentException(name + " is too long to store");
+		return text;
+	}
+
+	private static String checkChoice(String field, List<String> choices, String name) {
+		String choice = field.trim();
+		if(!choices.contains(choice)) throw new IllegalArgumentException(name + " must be one of " + choices);
+		return choice;
+	}
+
+	private static short parseShort(String field, String name) {
+		try {
+			return Short.parseShort(field.trim());
+		} catch (NumberFormatException exception) {
+			throw new IllegalArgumentException(name + " must be a number");
+		}
+	}
+
+	private static int parseInt(String field, String name) {
+		try {
+			return Integer.parseInt(field.trim());
+		} catch (NumberFormatException exception) {
+			throw new IllegalArgumentException(name + " must be a number");
+		}
+	}
+}
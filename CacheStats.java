@@ -0,0 +1,47 @@
+/*
+ * A snapshot of a record cache's statistics, as returned by StudentInfoStore.getCacheStats(...). bytes and capacity are estimates of memory use.
+ */
+public class CacheStats {
+	private final long hits,
+					   misses,
+					   evictions,
+					   bytes,
+					   capacity;
+	private final int entries;
+	public CacheStats(long hits, long misses, long evictions, int entries, long bytes, long capacity) {
+		this.hits = hits;
+		this.misses = misses;
+		this.evictions = evictions;
+		this.entries = entries;
+		this.bytes = bytes;
+		this.capacity = capacity;
+	}
+	public long getHits() {
+		return hits;
+	}
+	public long getMisses() {
+		return misses;
+	}
+	public long getEvictions() {
+		return evictions;
+	}
+	public int getEntries() {
+		return entries;
+	}
+	public long getBytes() {
+		return bytes;
+	}
+	public long getCapacity() {
+		return capacity;
+	}
+	//The fraction of lookups that were hits, or 0 if there have been none.
+	public double getHitRatio() {
+		long lookups = hits + misses;
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+	@Override
+	public String toString() {
+		return String.format("%d hits, %d misses (%.1f%% hit ratio), %d evictions, %d entries, %d of %d bytes",
+				hits, misses, 100 * getHitRatio(), evictions, entries, bytes, capacity);
+	}
+}
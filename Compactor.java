@@ -0,0 +1,54 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Compactor runs StudentInfoStore.compact(...) in the background every PERIOD_MINUTES, so the tombstones left by unenrolling are cleared out of
+ * the terms that have gathered DEAD_RATIO of them, without anyone running TermManager --compact.
+ *      -Each period it also checkpoints the store, which saves the term summary and text index snapshots that changed, so a store that is not
+ *       closed cleanly still opens from snapshots at most a period old.
+ *      -It runs on a daemon thread of its own. A compaction copies its term while enrollments go on, and only holds the term lock exclusively
+ *       for the switch to the new file.
+ *      -A compaction that fails is reported on System.err and tried again next period; the old segment is left as it was.
+ *      -close() waits for a compaction in progress to finish, so the owner of the store closes the compactor before the store.
+ */
+class Compactor implements Closeable {
+	static final double DEAD_RATIO = 0.2; //Compacting a term rewrites all of it, so it waits until a fifth of the term is tombstones.
+	private static final long PERIOD_MINUTES = 10;
+	private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+		public Thread newThread(Runnable task) {
+			Thread thread = new Thread(task, "Compactor");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	public Compactor(final StudentInfoStore store) {
+		executor.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				try {
+					store.compact(DEAD_RATIO);
+				} catch (IOException | RuntimeException exception) {
+					System.err.println("Compaction failed: " + exception);
+				}
+				try {
+					store.checkpoint();
+				} catch (IOException | RuntimeException exception) {
+					System.err.println("Checkpoint failed: " + exception);
+				}
+			}
+		}, PERIOD_MINUTES, PERIOD_MINUTES, TimeUnit.MINUTES);
+	}
+
+	public void close() {
+		executor.shutdown();
+		try {
+			executor.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException exception) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
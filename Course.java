@@ -0,0 +1,35 @@
+/*
+ * A course record. The ID is assigned by StudentInfoStore.createCourse(...); a Course that has not been created yet has an ID of 0.
+ */
+public class Course {
+	private final int ID;
+	private final String title,
+						 description,
+						 major;
+	private final short room;
+	public Course(String title, String description, short room, String major) {
+		this(0, title, description, room, major);
+	}
+	public Course(int ID, String title, String description, short room, String major) {
+		this.ID = ID;
+		this.title = title;
+		this.description = description;
+		this.room = room;
+		this.major = major;
+	}
+	public int getID() {
+		return ID;
+	}
+	public String getTitle() {
+		return title;
+	}
+	public String getDescription() {
+		return description;
+	}
+	public short getRoom() {
+		return room;
+	}
+	public String getMajor() {
+		return major;
+	}
+}
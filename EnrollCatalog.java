@@ -0,0 +1,105 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/*
+ * EnrollCatalog lists the terms (year and semester) that have an enrollment segment in a store directory. Each term's enrollments live in a
+ * segment file of their own, named after the term, so a term is found without any search and dropping or archiving one never touches the rest.
+ *      -A term is held as an int, year * SEMESTERS.size() + semester code, so terms sort in calendar order.
+ *      -The catalog file is a RecordFormat header followed by one CATALOG_ENTRY_SIZE entry per term. It is small, and every change rewrites it
+ *       into a temporary file that is then moved over the old one, so the catalog on disk is always either the old or the new list.
+ *      -The catalog is the commit point of segment changes: a segment is added to it only after its file is in place, and removed from it
+ *       before its file is moved or deleted. A crash in between leaves at worst a segment file that is not listed, never a listed term with
+ *       its data missing.
+ *      -The methods of a catalog are synchronized, so it can be read and changed from several threads.
+ */
+class EnrollCatalog {
+	static final String FILE_NAME = "EnrollmentCatalog.dat";
+	private static final int CATALOG_ENTRY_SIZE = 4; //short year: 2 bytes + byte semester: 1 byte + 1 byte reserved
+	private final File file;
+	private final SortedSet<Integer> terms = new TreeSet<>();
+	public EnrollCatalog(File directory) throws IOException {
+		this.file = new File(directory, FILE_NAME);
+		if(!file.exists()) {
+			save();
+			return;
+		}
+		try(RandomAccessFile catalog = new RandomAccessFile(file, "r")) {
+			RecordFormat.openFile(catalog, CATALOG_ENTRY_SIZE, FILE_NAME);
+			RecordReader reader = new RecordReader(catalog, CATALOG_ENTRY_SIZE, RecordFormat.HEADER_SIZE);
+			ByteBuffer entry;
+			while((entry = reader.next()) != null)
+				terms.add(term(entry.getShort(), entry.get()));
+		}
+	}
+	public static boolean exists(File directory) {
+		return new File(directory, FILE_NAME).exists();
+	}
+	//Returns every term in the catalog, in calendar order.
+	public synchronized List<Integer> terms() {
+		return new ArrayList<>(terms);
+	}
+	public synchronized boolean contains(int term) {
+		return terms.contains(term);
+	}
+	public synchronized void add(int term) throws IOException {
+		if(terms.add(term))
+			save();
+	}
+	public synchronized void remove(int term) throws IOException {
+		if(terms.remove(term))
+			save();
+	}
+	//Replaces the catalog of the directory with one listing terms.
+	public static void write(File directory, SortedSet<Integer> terms) throws IOException {
+		new EnrollCatalog(new File(directory, FILE_NAME), terms).save();
+	}
+	private EnrollCatalog(File file, SortedSet<Integer> terms) {
+		this.file = file;
+		this.terms.addAll(terms);
+	}
+	private void save() throws IOException {
+		ByteBuffer catalog = ByteBuffer.allocate(RecordFormat.HEADER_SIZE + terms.size() * CATALOG_ENTRY_SIZE);
+		catalog.putInt(RecordFormat.MAGIC).putInt(RecordFormat.VERSION).putInt(CATALOG_ENTRY_SIZE).putInt(0);
+		for(int term : terms)
+			catalog.putShort(year(term)).put(semester(term)).put((byte) 0);
+		catalog.flip();
+		Path temporary = new File(file.getPath() + ".tmp").toPath();
+		try(FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			while(catalog.hasRemaining())
+				channel.write(catalog);
+			channel.force(true);
+		}
+		Files.move(temporary, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	static int term(short year, byte semester) {
+		return year * StudentInfoStore.SEMESTERS.size() + semester;
+	}
+	static short year(int term) {
+		return (short) Math.floorDiv(term, StudentInfoStore.SEMESTERS.size());
+	}
+	static byte semester(int term) {
+		return (byte) Math.floorMod(term, StudentInfoStore.SEMESTERS.size());
+	}
+	//The segment files of a term are named after it, e.g. EnrollmentFile-2016-Fall.dat and EnrollmentIndex-2016-Fall.dat.
+	static File segmentFile(File directory, int term) {
+		return new File(directory, "EnrollmentFile-" + termName(term) + ".dat");
+	}
+	static File indexFile(File directory, int term) {
+		return new File(directory, "EnrollmentIndex-" + termName(term) + ".dat");
+	}
+	private static String termName(int term) {
+		return year(term) + "-" + StudentInfoStore.SEMESTERS.get(semester(term));
+	}
+}
@@ -0,0 +1,189 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/*
+ * EnrollIndex maps the composite key of every enrollment record to the byte offset of that record in the enroll file, so that the duplicate check,
+ * grade lookups and course rosters no longer scan the enroll file.
+ *      -The index file holds one INDEX_ENTRY_SIZE entry per enrollment record, appended in the same order as the records themselves, so
+ *       the entry for the record at offset HEADER_SIZE + n * ENROLL_RECORD_SIZE is always the n-th entry.
+ *      -When the index is opened, entries are loaded into a ConcurrentSkipListMap, so lookups and roster ranges can be read on any number of
+ *       threads while the store appends to it. Appends themselves are serialized by the store, under the segment's append lock.
+ *      -Entries are written at their own position with a positional write, so the index file has no shared file pointer to move.
+ *      -When the index is opened, entries are loaded into the map. If the enroll file has records the index is missing (e.g. the
+ *       application was killed between the two appends), only those records are read and indexed.
+ *      -If the index file is missing, has a torn entry, or does not line up with the enroll file, it is rebuilt from the enroll file.
+ *      -Alongside the map, the index keeps a RosterBitmap of the students of each course, filled from the same keys as it loads and appends,
+ *       so counting, testing and combining rosters reads neither file. A roster is changed under its own lock, and roster(...) returns a copy.
+ *      -An unenrolled record stays in the enroll file as a tombstone until the term is compacted, and its entry in the index file; remove(...)
+ *       only takes it out of the map and the roster. So when the enroll file's header counts tombstones, the index is loaded as usual (a key
+ *       enrolled again after being dropped is then found twice, and its last record wins) and the tombstones are read from the enroll file
+ *       and taken back out.
+ */
+class EnrollIndex {
+	private static final int INDEX_ENTRY_SIZE = 19; //short: 2 bytes + byte: 1 byte + 2 * int: 8 bytes + long: 8 bytes
+	private static final int ENROLL_RECORD_SIZE = StudentInfoStore.ENROLL_RECORD_SIZE,
+							 HEADER_SIZE = StudentInfoStore.HEADER_SIZE,
+							 CATCH_UP_BATCH = 65536; //Entries indexed during a catch-up or rebuild are appended to the index file this many at a time.
+	private final RandomAccessFile indexFile,
+								   enrollFile;
+	private final NavigableMap<EnrollKey,Long> index = new ConcurrentSkipListMap<>();
+	private final Map<Integer,RosterBitmap> rosters = new ConcurrentHashMap<>(); //By course ID.
+	private final int tombstones; //As counted by the enroll file when the index was opened.
+	public EnrollIndex(File file, RandomAccessFile enrollFile) throws IOException {
+		this.indexFile = new RandomAccessFile(file, "rw");
+		this.enrollFile = enrollFile;
+		this.tombstones = RecordFormat.tombstones(enrollFile);
+		long entries = load();
+		if(entries < 0) {
+			index.clear();
+			rosters.clear();
+			indexFile.setLength(0);
+			entries = 0;
+		}
+		//From the first record the index file has no entry for; with tombstones, the map can hold fewer keys than the file has entries.
+		long start = HEADER_SIZE + entries * ENROLL_RECORD_SIZE;
+		RecordReader reader = new RecordReader(enrollFile, ENROLL_RECORD_SIZE, start);
+		List<EnrollKey> keys = new ArrayList<>();
+		ByteBuffer record;
+		while((record = reader.next()) != null) {
+			int at = record.position();
+			keys.add(new EnrollKey(record.getShort(at + RecordFormat.YEAR_AT), record.get(at + RecordFormat.SEMESTER_AT),
+					record.getInt(at + RecordFormat.COURSE_AT), record.getInt(at + RecordFormat.STUDENT_AT)));
+			if(keys.size() == CATCH_UP_BATCH) {
+				append(keys, start);
+				start += (long) keys.size() * ENROLL_RECORD_SIZE;
+				keys.clear();
+			}
+		}
+		append(keys, start);
+		if(tombstones > 0)
+			dropTombstones();
+	}
+	//Returns the number of entries loaded, or -1 if the index file cannot be trusted and has to be rebuilt from the enroll file.
+	private long load() throws IOException {
+		long entries = indexFile.length() / INDEX_ENTRY_SIZE;
+		if(indexFile.length() % INDEX_ENTRY_SIZE != 0 || entries > RecordFormat.records(enrollFile, ENROLL_RECORD_SIZE))
+			return -1;
+		RecordReader reader = new RecordReader(indexFile, INDEX_ENTRY_SIZE);
+		ByteBuffer entry;
+		long number = 0;
+		for(; (entry = reader.next()) != null; number++) {
+			EnrollKey key = new EnrollKey(entry.getShort(), entry.get(), entry.getInt(), entry.getInt());
+			long offset = entry.getLong();
+			if(offset != HEADER_SIZE + number * ENROLL_RECORD_SIZE || (index.put(key, offset) != null && tombstones == 0))
+				return -1;
+			addToRoster(key);
+		}
+		return number;
+	}
+	//Indexes enrollments written back to back starting at offset, appending all of their entries with one write.
+	public void addAll(List<Enrollment> enrollments, long offset) throws IOException {
+		List<EnrollKey> keys = new ArrayList<>(enrollments.size());
+		for(Enrollment enrollment : enrollments)
+			keys.add(key(enrollment.getYear(), enrollment.getSemester(), enrollment.getCourseID(), enrollment.getStudentID()));
+		append(keys, offset);
+	}
+	private void append(List<EnrollKey> keys, long offset) throws IOException {
+		if(keys.isEmpty()) return;
+		ByteBuffer entries = ByteBuffer.allocate(keys.size() * INDEX_ENTRY_SIZE);
+		long recordOffset = offset;
+		for(EnrollKey key : keys) {
+			entries.putShort(key.year).put(key.semester).putInt(key.courseID).putInt(key.studentID).putLong(recordOffset);
+			index.put(key, recordOffset);
+			addToRoster(key);
+			recordOffset += ENROLL_RECORD_SIZE;
+		}
+		entries.flip();
+		long position = (offset - HEADER_SIZE) / ENROLL_RECORD_SIZE * INDEX_ENTRY_SIZE;
+		while(entries.hasRemaining())
+			indexFile.getChannel().write(entries, position + entries.position());
+		StoreMetrics.written(entries.limit());
+	}
+	//Returns the offset of the enroll record with the given key, or null if the record does not exist.
+	public Long find(short year, String semester, int courseID, int studentID) {
+		return find(key(year, semester, courseID, studentID));
+	}
+	public Long find(EnrollKey key) {
+		return index.get(key);
+	}
+	//Returns every enroll record of the course in the given year and semester, ordered by student ID.
+	public NavigableMap<EnrollKey,Long> find(short year, String semester, int courseID) {
+		return index.subMap(key(year, semester, courseID, Integer.MIN_VALUE), true, key(year, semester, courseID, Integer.MAX_VALUE), true);
+	}
+	//Returns a copy of the roster of the course, which is empty if no student is enrolled in it.
+	public RosterBitmap roster(int courseID) {
+		RosterBitmap roster = rosters.get(courseID);
+		if(roster == null) return new RosterBitmap();
+		synchronized(roster) {
+			return roster.copy();
+		}
+	}
+	public boolean isEnrolled(int courseID, int studentID) {
+		RosterBitmap roster = rosters.get(courseID);
+		if(roster == null) return false;
+		synchronized(roster) {
+			return roster.contains(studentID);
+		}
+	}
+	//Takes an unenrolled record out of the index, and its student out of the course's roster. Returns false if the key was not indexed.
+	public boolean remove(EnrollKey key) {
+		if(index.remove(key) == null) return false;
+		removeFromRoster(key);
+		return true;
+	}
+	//Returns whether the student is enrolled in any course of the term.
+	public boolean hasStudent(int studentID) {
+		for(RosterBitmap roster : rosters.values()) {
+			synchronized(roster) {
+				if(roster.contains(studentID)) return true;
+			}
+		}
+		return false;
+	}
+	//Takes the keys of the tombstones in the enroll file back out, unless the key has a later record.
+	private void dropTombstones() throws IOException {
+		RecordReader reader = new RecordReader(enrollFile, ENROLL_RECORD_SIZE, HEADER_SIZE);
+		ByteBuffer record;
+		for(long offset = HEADER_SIZE; (record = reader.next()) != null; offset += ENROLL_RECORD_SIZE) {
+			int at = record.position();
+			if(record.get(at + RecordFormat.GRADE_AT) != RecordFormat.DELETED) continue;
+			EnrollKey key = new EnrollKey(record.getShort(at + RecordFormat.YEAR_AT), record.get(at + RecordFormat.SEMESTER_AT),
+					record.getInt(at + RecordFormat.COURSE_AT), record.getInt(at + RecordFormat.STUDENT_AT));
+			if(index.remove(key, offset))
+				removeFromRoster(key);
+		}
+	}
+	private void removeFromRoster(EnrollKey key) {
+		RosterBitmap roster = rosters.get(key.courseID);
+		if(roster == null) return;
+		synchronized(roster) {
+			roster.remove(key.studentID);
+		}
+	}
+	private void addToRoster(EnrollKey key) {
+		RosterBitmap roster = rosters.get(key.courseID);
+		if(roster == null) {
+			RosterBitmap added = new RosterBitmap();
+			roster = rosters.putIfAbsent(key.courseID, added);
+			if(roster == null)
+				roster = added;
+		}
+		synchronized(roster) {
+			roster.add(key.studentID);
+		}
+	}
+	private EnrollKey key(short year, String semester, int courseID, int studentID) {
+		return new EnrollKey(year, StudentInfoStore.semesterCode(semester), courseID, studentID);
+	}
+	public void close() throws IOException {
+		indexFile.close();
+	}
+}
@@ -0,0 +1,31 @@
+/*
+ * EnrollKey is the composite key of an enrollment record: (year, semester, courseID, studentID). The semester is stored as its index in
+ * StudentInfoStore.SEMESTERS.
+ * Keys sort in that order, so every enrollment of one course in one year and semester sits in a single contiguous range of the index.
+ */
+class EnrollKey implements Comparable<EnrollKey> {
+	final short year;
+	final byte semester;
+	final int courseID,
+			  studentID;
+	public EnrollKey(short year, byte semester, int courseID, int studentID) {
+		this.year = year;
+		this.semester = semester;
+		this.courseID = courseID;
+		this.studentID = studentID;
+	}
+	public int compareTo(EnrollKey other) {
+		if(year != other.year) return Short.compare(year, other.year);
+		if(semester != other.semester) return Byte.compare(semester, other.semester);
+		if(courseID != other.courseID) return Integer.compare(courseID, other.courseID);
+		return Integer.compare(studentID, other.studentID);
+	}
+	@Override
+	public boolean equals(Object other) {
+		return other instanceof EnrollKey && compareTo((EnrollKey) other) == 0;
+	}
+	@Override
+	public int hashCode() {
+		return ((year * 4 + semester) * 31 + courseID) * 31 + studentID;
+	}
+}
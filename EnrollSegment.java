@@ -0,0 +1,74 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * EnrollSegment is the enrollment storage of one term: its segment file, in the RecordFormat enroll record layout, the EnrollIndex over it and,
+ * in memory-mapped scan mode, its MappedEnrollFile. Segments are opened by the store the first time their term is used, so opening a store
+ * does not load the index of every term it has ever held.
+ *      -Appends to a segment are reserved and logged under its appendLock, which the store holds from the duplicate check until the new keys are
+ *       pending, so two threads can never both write the same enrollment. Keys stay pending until they are indexed, which the store only does
+ *       once their records are written, after the log has been forced without the lock held.
+ *      -appends publishes an append once it and every append before it are written and indexed, and scans stop at its end(), so a scan on
+ *       another thread never reads a record that is still being written.
+ *      -tombstones is the count kept in the segment file's header, which the store only changes with the term lock held exclusively.
+ *       modifications counts the changes made in place (grades and tombstones), so a compaction can tell whether records it has already
+ *       copied changed behind it.
+ */
+class EnrollSegment {
+	final int term;
+	final RandomAccessFile file;
+	final EnrollIndex index;
+	final MappedEnrollFile mapped; //Only set in memory-mapped scan mode; null otherwise.
+	final ReentrantLock appendLock = new ReentrantLock();
+	final AppendSequence appends;
+	final Set<EnrollKey> pending = Collections.newSetFromMap(new ConcurrentHashMap<EnrollKey,Boolean>());
+	final AtomicLong modifications = new AtomicLong();
+	volatile int tombstones;
+	public EnrollSegment(File directory, int term, boolean mapFile) throws IOException {
+		this.term = term;
+		File segmentFile = EnrollCatalog.segmentFile(directory, term);
+		RandomAccessFile opened = new RandomAccessFile(segmentFile, "rw");
+		EnrollIndex openedIndex = null;
+		MappedEnrollFile mappedFile = null;
+		try {
+			RecordFormat.openFile(opened, StudentInfoStore.ENROLL_RECORD_SIZE, segmentFile.getName());
+			openedIndex = new EnrollIndex(EnrollCatalog.indexFile(directory, term), opened);
+			if(mapFile)
+				mappedFile = new MappedEnrollFile(opened, StudentInfoStore.HEADER_SIZE, StudentInfoStore.ENROLL_RECORD_SIZE);
+		} catch (IOException exception) {
+			if(openedIndex != null)
+				openedIndex.close();
+			opened.close();
+			throw exception;
+		}
+		this.file = opened;
+		this.index = openedIndex;
+		this.mapped = mappedFile;
+		this.tombstones = RecordFormat.tombstones(opened);
+		this.appends = new AppendSequence(StudentInfoStore.HEADER_SIZE + RecordFormat.records(opened, StudentInfoStore.ENROLL_RECORD_SIZE) * StudentInfoStore.ENROLL_RECORD_SIZE);
+	}
+	//The offset just past the last published record. When the segment is opened, a torn record left at the end by a crash is overwritten from here.
+	public long end() {
+		return appends.end();
+	}
+	//Returns a buffer positioned at the record at offset, read from the mapping in memory-mapped scan mode, and from disk otherwise.
+	public ByteBuffer recordAt(long offset) throws IOException {
+		if(mapped != null)
+			return mapped.recordAt(offset);
+		return RecordReader.readRecordAt(file, offset, StudentInfoStore.ENROLL_RECORD_SIZE);
+	}
+	public void close() throws IOException {
+		try {
+			index.close();
+		} finally {
+			file.close();
+		}
+	}
+}
@@ -0,0 +1,32 @@
+/*
+ * An enrollment of a student in a course for a given year and semester. The grade is "IP" (in progress) until one is added.
+ */
+public class Enrollment {
+	private final short year;
+	private final String semester,
+						 grade;
+	private final int courseID,
+					  studentID;
+	public Enrollment(short year, String semester, int courseID, int studentID, String grade) {
+		this.year = year;
+		this.semester = semester;
+		this.courseID = courseID;
+		this.studentID = studentID;
+		this.grade = grade;
+	}
+	public short getYear() {
+		return year;
+	}
+	public String getSemester() {
+		return semester;
+	}
+	public int getCourseID() {
+		return courseID;
+	}
+	public int getStudentID() {
+		return studentID;
+	}
+	public String getGrade() {
+		return grade;
+	}
+}
@@ -0,0 +1,223 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * GradeAnalytics holds the grade statistics of every enrollment in a store, as computed by StudentInfoStore.getGradeAnalytics(...): the grade
+ * distribution of each course in each term, of each term and of the whole history, and the GPA of each student.
+ *      -GPAs are on the usual 4-point scale, "A" = 4 down to "F" = 0. "P", "W" and "IP" carry no grade points and are left out of a GPA.
+ *      -Records with a grade code outside StudentInfoStore.GRADES (a damaged record, or a grade added by a later version) are left out.
+ *
+ * The statistics come from one parallel pass over the enroll segments, run by compute(...) on the common ForkJoinPool:
+ *      -The segments are cut into chunks of CHUNK_RECORDS records, which always start and end on a record boundary. A Scan task splits its run
+ *       of chunks in two until it holds one chunk, which it reads forwards with its own RecordReader; reads are positional, so every worker
+ *       reads its chunk in parallel with the others.
+ *      -Each chunk counts grades into a partial map of course distributions of its own, and the maps are merged as the tasks join, so the
+ *       scan shares nothing but its progress.
+ *      -The workers count their reads towards the getGradeAnalytics operation that started the pass (see StoreMetrics.attach(...)).
+ *      -Student grade points are the exception: a partial per chunk would need a slot for every student, and merging those would cost more than
+ *       the scan. They are added straight into one AtomicLongArray indexed by student ID instead, each slot packing the grade points (high 32
+ *       bits) and the number of graded courses (low 32 bits), so one atomic add counts a record.
+ */
+public class GradeAnalytics {
+	static final int CHUNK_RECORDS = 64 * 1024;
+	private static final int[] GRADE_POINTS = {-1, 4, 3, 2, 1, 0, -1, -1}; //By grade code, in the order of StudentInfoStore.GRADES; -1 is not graded.
+	private final SortedMap<Long,GradeDistribution> courses; //By term << 32 | courseID, so courses sort by term and then by ID.
+	private final int firstStudentID;
+	private final AtomicLongArray students;
+
+	private GradeAnalytics(SortedMap<Long,GradeDistribution> courses, int firstStudentID, AtomicLongArray students) {
+		this.courses = courses;
+		this.firstStudentID = firstStudentID;
+		this.students = students;
+	}
+
+	//Returns the distribution of every course with enrollments in the given year and semester, by course ID.
+	public SortedMap<Integer,GradeDistribution> getCourseDistributions(short year, String semester) {
+		long term = EnrollCatalog.term(year, StudentInfoStore.semesterCode(semester));
+		SortedMap<Integer,GradeDistribution> termCourses = new TreeMap<>();
+		for(Map.Entry<Long,GradeDistribution> course : courses.subMap(term << 32, (term + 1) << 32).entrySet())
+			termCourses.put(course.getKey().intValue(), course.getValue());
+		return termCourses;
+	}
+
+	public GradeDistribution getTermDistribution(short year, String semester) {
+		GradeDistribution distribution = new GradeDistribution();
+		for(GradeDistribution course : getCourseDistributions(year, semester).values())
+			distribution.addAll(course);
+		return distribution;
+	}
+
+	public GradeDistribution getOverallDistribution() {
+		GradeDistribution distribution = new GradeDistribution();
+		for(GradeDistribution course : courses.values())
+			distribution.addAll(course);
+		return distribution;
+	}
+
+	//Returns every term with enrollments, in calendar order, with its number of enrollments.
+	public List<Term> getTerms() {
+		SortedMap<Integer,Long> terms = new TreeMap<>();
+		for(Map.Entry<Long,GradeDistribution> course : courses.entrySet()) {
+			int term = (int) (course.getKey() >>> 32);
+			Long enrollments = terms.get(term);
+			terms.put(term, (enrollments == null ? 0 : enrollments) + course.getValue().getTotal());
+		}
+		List<Term> termList = new ArrayList<>();
+		for(Map.Entry<Integer,Long> term : terms.entrySet())
+			termList.add(new Term(EnrollCatalog.year(term.getKey()), StudentInfoStore.SEMESTERS.get(EnrollCatalog.semester(term.getKey())), term.getValue()));
+		return termList;
+	}
+
+	//Returns the student's GPA, or NaN if the student has no graded courses.
+	public double getGPA(int studentID) {
+		long points = studentPoints(studentID);
+		return (int) points == 0 ? Double.NaN : (double) (points >>> 32) / (int) points;
+	}
+
+	//The number of courses with a grade that counts towards the student's GPA.
+	public int getGradedCourses(int studentID) {
+		return (int) studentPoints(studentID);
+	}
+
+	//The mean GPA of every student with at least one graded course.
+	public double getMeanGPA() {
+		double sum = 0;
+		int graded = 0;
+		for(int student = 0; student < students.length(); student++) {
+			long points = students.get(student);
+			if((int) points != 0) {
+				sum += (double) (points >>> 32) / (int) points;
+				++graded;
+			}
+		}
+		return graded == 0 ? Double.NaN : sum / graded;
+	}
+
+	private long studentPoints(int studentID) {
+		int student = studentID - firstStudentID;
+		return student < 0 || student >= students.length() ? 0 : students.get(student);
+	}
+
+	//A run of whole records of one segment, from start (inclusive) to end (exclusive).
+	static class Chunk {
+		final EnrollSegment segment;
+		final long start,
+				   end;
+		Chunk(EnrollSegment segment, long start, long end) {
+			this.segment = segment;
+			this.start = start;
+			this.end = end;
+		}
+	}
+
+	/*
+	 * Runs the parallel pass over the chunks. Students are counted if their ID is one of the studentCount IDs from firstStudentID. monitor is
+	 * told how many records have been scanned as each chunk finishes, from whichever worker finished it; a CancellationException it throws stops
+	 * the pass.
+	 */
+	static GradeAnalytics compute(List<Chunk> chunks, int firstStudentID, int studentCount, ScanMonitor monitor) throws IOException {
+		long total = 0;
+		for(Chunk chunk : chunks)
+			total += (chunk.end - chunk.start) / StudentInfoStore.ENROLL_RECORD_SIZE;
+		AtomicLongArray students = new AtomicLongArray(studentCount);
+		Scan scan = new Scan(chunks, 0, chunks.size(), firstStudentID, students, new AtomicLong(), total, monitor, StoreMetrics.current());
+		Map<Long,GradeDistribution> courses;
+		try {
+			courses = ForkJoinPool.commonPool().invoke(scan);
+		} catch (UncheckedIOException exception) {
+			throw exception.getCause();
+		}
+		return new GradeAnalytics(new TreeMap<>(courses), firstStudentID, students);
+	}
+
+	private static class Scan extends RecursiveTask<Map<Long,GradeDistribution>> {
+		private static final long serialVersionUID = 1L;
+		private final List<Chunk> chunks;
+		private final int from,
+						  to,
+						  firstStudentID;
+		private final AtomicLongArray students;
+		private final AtomicLong scanned;
+		private final long total;
+		private final ScanMonitor monitor;
+		private final OperationStats stats;
+		Scan(List<Chunk> chunks, int from, int to, int firstStudentID, AtomicLongArray students, AtomicLong scanned, long total, ScanMonitor monitor, OperationStats stats) {
+			this.chunks = chunks;
+			this.from = from;
+			this.to = to;
+			this.firstStudentID = firstStudentID;
+			this.students = students;
+			this.scanned = scanned;
+			this.total = total;
+			this.monitor = monitor;
+			this.stats = stats;
+		}
+		@Override
+		protected Map<Long,GradeDistribution> compute() {
+			if(to - from == 0) return new HashMap<>();
+			if(to - from == 1) {
+				OperationStats outer = StoreMetrics.attach(stats);
+				try {
+					return scan(chunks.get(from));
+				} catch (IOException exception) {
+					throw new UncheckedIOException(exception);
+				} finally {
+					StoreMetrics.attach(outer);
+				}
+			}
+			int middle = (from + to) >>> 1;
+			Scan left = new Scan(chunks, from, middle, firstStudentID, students, scanned, total, monitor, stats);
+			left.fork();
+			Map<Long,GradeDistribution> right = new Scan(chunks, middle, to, firstStudentID, students, scanned, total, monitor, stats).compute();
+			Map<Long,GradeDistribution> merged = left.join();
+			for(Map.Entry<Long,GradeDistribution> course : right.entrySet()) {
+				GradeDistribution distribution = merged.get(course.getKey());
+				if(distribution == null)
+					merged.put(course.getKey(), course.getValue());
+				else
+					distribution.addAll(course.getValue());
+			}
+			return merged;
+		}
+		private Map<Long,GradeDistribution> scan(Chunk chunk) throws IOException {
+			Map<Long,GradeDistribution> courses = new HashMap<>();
+			long term = (long) chunk.segment.term << 32;
+			//Records of one course tend to come in runs, so the last course's distribution is kept at hand.
+			long lastCourse = -1;
+			GradeDistribution distribution = null;
+			RecordReader reader = new RecordReader(chunk.segment.file, StudentInfoStore.ENROLL_RECORD_SIZE, chunk.start, chunk.end, ScanMonitor.IGNORE_PROGRESS);
+			ByteBuffer record;
+			while((record = reader.next()) != null) {
+				int at = record.position();
+				int gradeCode = record.get(at + RecordFormat.GRADE_AT);
+				if(gradeCode < 0 || gradeCode >= GRADE_POINTS.length) continue;  //A tombstone (DELETED), or a grade this version does not know.
+				long course = term | (record.getInt(at + RecordFormat.COURSE_AT) & 0xFFFFFFFFL);
+				if(course != lastCourse) {
+					distribution = courses.get(course);
+					if(distribution == null) {
+						distribution = new GradeDistribution();
+						courses.put(course, distribution);
+					}
+					lastCourse = course;
+				}
+				distribution.add(gradeCode, 1);
+				int student = record.getInt(at + RecordFormat.STUDENT_AT) - firstStudentID;
+				if(GRADE_POINTS[gradeCode] >= 0 && student >= 0 && student < students.length())
+					students.addAndGet(student, ((long) GRADE_POINTS[gradeCode] << 32) + 1);
+			}
+			monitor.progress(scanned.addAndGet((chunk.end - chunk.start) / StudentInfoStore.ENROLL_RECORD_SIZE), total);
+			return courses;
+		}
+	}
+}
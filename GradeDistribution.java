@@ -0,0 +1,45 @@
+/*
+ * GradeDistribution counts the enrollments of a course, a term or the whole history by grade, and gives the rates derived from those counts.
+ *      -Counts are kept in the order of StudentInfoStore.GRADES.
+ *      -Rates are taken over the completed enrollments, i.e. every grade but "IP": the pass rate counts "A" to "D" and "P", the fail rate
+ *       counts "F", and the withdraw rate counts "W". All three are NaN while nothing has been completed.
+ */
+public class GradeDistribution {
+	private final long[] counts = new long[StudentInfoStore.GRADES.size()];
+
+	void add(int gradeCode, long count) {
+		counts[gradeCode] += count;
+	}
+
+	void addAll(GradeDistribution other) {
+		for(int grade = 0; grade < counts.length; grade++)
+			counts[grade] += other.counts[grade];
+	}
+
+	public long getCount(String grade) {
+		return counts[StudentInfoStore.gradeCode(grade)];
+	}
+
+	public long getTotal() {
+		long total = 0;
+		for(long count : counts)
+			total += count;
+		return total;
+	}
+
+	public long getCompleted() {
+		return getTotal() - getCount("IP");
+	}
+
+	public double getPassRate() {
+		return (double) (getCount("A") + getCount("B") + getCount("C") + getCount("D") + getCount("P")) / getCompleted();
+	}
+
+	public double getFailRate() {
+		return (double) getCount("F") / getCompleted();
+	}
+
+	public double getWithdrawRate() {
+		return (double) getCount("W") / getCompleted();
+	}
+}
@@ -0,0 +1,68 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * IDAllocator hands out the IDs, and with them the slots, of a student or course file. IDs are positional, ID = firstID + slot number, so
+ * handing out an ID is just taking the next slot from an atomic counter.
+ *      -The file is extended SLOT_BLOCK slots at a time, ahead of the IDs handed out, so most creates write into a slot the file already has,
+ *       and the file's length only changes once every SLOT_BLOCK creates. A slot that has not been written yet reads as all zeros.
+ *      -The count is not kept anywhere but in the file itself. When the allocator is opened, after the log has been replayed, the empty slots
+ *       at the end of the file (those left by the last extension) are found by their ID of 0, which no record has, and trimmed off; the count
+ *       is the number of slots left. The store trims the file again when it is closed, so a file that was closed cleanly has no empty slots.
+ *      -The store allocates while it logs the new records (see WriteAheadLog.append(..., Placement, ...)), so IDs are in the same order as the
+ *       log holds their records, and the log's durable prefix never leaves an empty slot below a record that survived a crash.
+ *      -An append that fails after allocating (its log entry or write failed) leaves its slots empty, and the store has to be reopened. Only
+ *       empty slots at the end are trimmed, so once later records follow them they stay in the file; the store treats a slot that does not
+ *       hold its own ID as absent.
+ */
+class IDAllocator {
+	static final int SLOT_BLOCK = 1024; //129KB of student or course records.
+	private final RandomAccessFile file;
+	private final int firstID,
+					  slotSize;
+	private final AtomicLong next; //The number of slots handed out.
+	private volatile long extended; //The number of slots the file has room for. Only changed under this.
+
+	public IDAllocator(RandomAccessFile file, int slotSize, int firstID) throws IOException {
+		this.file = file;
+		this.slotSize = slotSize;
+		this.firstID = firstID;
+		long slots = RecordFormat.records(file, slotSize);
+		while(slots > 0 && RecordReader.readRecordAt(file, offset(slots - 1), 4).getInt() == 0)
+			--slots;
+		file.setLength(offset(slots));
+		next = new AtomicLong(slots);
+		extended = slots;
+	}
+
+	//The number of IDs handed out, which is the number of slots in use.
+	public long slots() {
+		return next.get();
+	}
+
+	//Hands out count consecutive IDs and returns the first, extending the file first if it does not have room for them.
+	public int allocate(int count) throws IOException {
+		long first = next.getAndAdd(count);
+		if(first + count > extended)
+			extend(first + count);
+		return (int) (firstID + first);
+	}
+
+	//Trims the empty slots off the end of the file, leaving the first slots; called by the store when it closes.
+	public synchronized void trim(long slots) throws IOException {
+		file.setLength(offset(slots));
+		extended = slots;
+	}
+
+	private synchronized void extend(long slots) throws IOException {
+		if(slots <= extended) return;
+		long blocks = (slots + SLOT_BLOCK - 1) / SLOT_BLOCK;
+		file.setLength(offset(blocks * SLOT_BLOCK));
+		extended = blocks * SLOT_BLOCK;
+	}
+
+	private long offset(long slot) {
+		return RecordFormat.HEADER_SIZE + slot * slotSize;
+	}
+}
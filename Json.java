@@ -0,0 +1,194 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Json writes and reads the small JSON documents of the HTTP service, so the store stays free of third party libraries.
+ *      -JSON is written with a Json.Writer, which appends names and values to a StringBuilder and takes care of commas and string escapes.
+ *      -Request bodies are flat objects of strings, numbers, booleans and nulls; parseObject(...) returns their values as text, by name, and
+ *       throws an IllegalArgumentException for anything else, which the service reports as a bad request.
+ */
+class Json {
+	private Json() {}
+
+	static class Writer {
+		private final StringBuilder json = new StringBuilder();
+		private boolean first = true;
+		public Writer beginObject() {
+			separate();
+			json.append('{');
+			first = true;
+			return this;
+		}
+		public Writer endObject() {
+			json.append('}');
+			first = false;
+			return this;
+		}
+		public Writer beginArray(String name) {
+			name(name);
+			json.append('[');
+			first = true;
+			return this;
+		}
+		public Writer endArray() {
+			json.append(']');
+			first = false;
+			return this;
+		}
+		public Writer value(String name, String value) {
+			name(name);
+			if(value == null)
+				json.append("null");
+			else
+				quote(value);
+			first = false;
+			return this;
+		}
+		public Writer value(String name, long value) {
+			name(name);
+			json.append(value);
+			first = false;
+			return this;
+		}
+		public Writer value(String name, boolean value) {
+			name(name);
+			json.append(value);
+			first = false;
+			return this;
+		}
+		//An array element: a number.
+		public Writer value(long value) {
+			separate();
+			json.append(value);
+			first = false;
+			return this;
+		}
+		private void name(String name) {
+			separate();
+			quote(name);
+			json.append(':');
+		}
+		private void separate() {
+			if(!first)
+				json.append(',');
+		}
+		private void quote(String text) {
+			json.append('"');
+			for(int index = 0; index < text.length(); index++) {
+				char ch = text.charAt(index);
+				switch(ch) {
+					case '"': json.append("\\\""); break;
+					case '\\': json.append("\\\\"); break;
+					case '\n': json.append("\\n"); break;
+					case '\r': json.append("\\r"); break;
+					case '\t': json.append("\\t"); break;
+					default:
+						if(ch < 0x20)
+							json.append(String.format("\\u%04x", (int) ch));
+						else
+							json.append(ch);
+				}
+			}
+			json.append('"');
+		}
+		@Override
+		public String toString() {
+			return json.toString();
+		}
+	}
+
+	//Parses a flat JSON object. Values are returned as their text: strings unescaped, numbers and booleans as written, and null as null.
+	static Map<String,String> parseObject(String text) {
+		Parser parser = new Parser(text);
+		Map<String,String> object = new LinkedHashMap<>();
+		parser.expect('{');
+		if(!parser.consume('}')) {
+			do {
+				String name = parser.string();
+				parser.expect(':');
+				object.put(name, parser.scalar());
+			} while(parser.consume(','));
+			parser.expect('}');
+		}
+		parser.end();
+		return object;
+	}
+
+	private static class Parser {
+		private final String text;
+		private int at;
+		Parser(String text) {
+			this.text = text;
+		}
+		void expect(char ch) {
+			if(!consume(ch)) throw error("expected '" + ch + "'");
+		}
+		boolean consume(char ch) {
+			skipSpace();
+			if(at < text.length() && text.charAt(at) == ch) {
+				++at;
+				return true;
+			}
+			return false;
+		}
+		void end() {
+			skipSpace();
+			if(at != text.length()) throw error("unexpected text after the object");
+		}
+		String scalar() {
+			skipSpace();
+			if(at == text.length()) throw error("expected a value");
+			char ch = text.charAt(at);
+			if(ch == '"') return string();
+			if(ch == '{' || ch == '[') throw error("nested values are not supported");
+			int start = at;
+			while(at < text.length() && ",} \t\r\n".indexOf(text.charAt(at)) < 0)
+				++at;
+			String value = text.substring(start, at);
+			if(value.equals("null")) return null;
+			if(!value.equals("true") && !value.equals("false") && !value.matches("-?[0-9]+(\\.[0-9]+)?([eE][-+]?[0-9]+)?"))
+				throw error("invalid value " + value);
+			return value;
+		}
+		String string() {
+			expect('"');
+			StringBuilder string = new StringBuilder();
+			while(true) {
+				if(at >= text.length()) throw error("unterminated string");
+				char ch = text.charAt(at++);
+				if(ch == '"') return string.toString();
+				if(ch != '\\') {
+					string.append(ch);
+					continue;
+				}
+				if(at >= text.length()) throw error("unterminated string");
+				char escaped = text.charAt(at++);
+				switch(escaped) {
+					case '"': case '\\': case '/': string.append(escaped); break;
+					case 'b': string.append('\b'); break;
+					case 'f': string.append('\f'); break;
+					case 'n': string.append('\n'); break;
+					case 'r': string.append('\r'); break;
+					case 't': string.append('\t'); break;
+					case 'u':
+						if(at + 4 > text.length()) throw error("invalid escape");
+						try {
+							string.append((char) Integer.parseInt(text.substring(at, at + 4), 16));
+						} catch (NumberFormatException exception) {
+							throw error("invalid escape");
+						}
+						at += 4;
+						break;
+					default: throw error("invalid escape");
+				}
+			}
+		}
+		private void skipSpace() {
+			while(at < text.length() && Character.isWhitespace(text.charAt(at)))
+				++at;
+		}
+		private IllegalArgumentException error(String problem) {
+			return new IllegalArgumentException("Invalid JSON at character " + at + ": " + problem + ".");
+		}
+	}
+}
@@ -0,0 +1,62 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * MappedEnrollFile maps an enroll segment into memory for the memory-mapped scan mode, so the records the store finds through the index (the grades
+ * of a report, a record looked up by offset) are read by recordAt(...) straight out of the page cache, without a read call each.
+ *      -A single MappedByteBuffer cannot exceed 2GB, so the file is mapped as a list of regions, each holding a whole number of records. The regions
+ *       start after the file's header, and offsets passed in are file offsets.
+ *      -grow() is called after every append. Only the last region is remapped, to cover the records written since it was mapped.
+ *      -The mapping is read-only and shared with the file, so grades overwritten in place through the RandomAccessFile are seen by the mapping
+ *       without remapping.
+ *      -grow() builds a new list of regions and then publishes it, so readers on other threads always see a complete list, either the one before
+ *       the append or the one after it. grow() is synchronized, since appends reserved one after the other may be written on several threads at once.
+ */
+class MappedEnrollFile {
+	private static final int REGION_RECORDS = 32 * 1024 * 1024; //32M records per region: 384MB for the 12 byte enroll record.
+	private final FileChannel channel;
+	private final long start,
+					   regionSize;
+	private volatile List<MappedByteBuffer> regions = Collections.emptyList();
+	public MappedEnrollFile(RandomAccessFile file, long start, int recordSize) throws IOException {
+		this.channel = file.getChannel();
+		this.start = start;
+		this.regionSize = (long) REGION_RECORDS * recordSize;
+		grow();
+	}
+	public synchronized void grow() throws IOException {
+		long length = Math.max(0, channel.size() - start),
+			 mapped = size();
+		if(mapped == length) return;
+		List<MappedByteBuffer> grown = new ArrayList<>(regions);
+		int last = grown.size() - 1;
+		if(last >= 0 && grown.get(last).capacity() < regionSize) {  //The last region is partial, so it is replaced by a larger mapping.
+			grown.remove(last);
+			mapped = last * regionSize;
+		}
+		for(long regionStart = mapped; regionStart < length; regionStart += regionSize)
+			grown.add(channel.map(FileChannel.MapMode.READ_ONLY, start + regionStart, Math.min(regionSize, length - regionStart)));
+		regions = Collections.unmodifiableList(grown);
+	}
+	public long size() {
+		List<MappedByteBuffer> regions = this.regions;
+		int last = regions.size() - 1;
+		return last < 0 ? 0 : last * regionSize + regions.get(last).capacity();
+	}
+	//Returns a buffer positioned at the record at offset in the file, independent of the mapping, so callers can move its position freely.
+	public ByteBuffer recordAt(long offset) throws EOFException {
+		List<MappedByteBuffer> regions = this.regions;
+		int region = (int) ((offset - start) / regionSize);
+		if(region >= regions.size()) throw new EOFException();
+		ByteBuffer view = regions.get(region).duplicate();
+		view.position((int) ((offset - start) % regionSize));
+		return view;
+	}
+}
@@ -0,0 +1,124 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * OperationStats holds the latency histogram and I/O counts of one kind of store operation; see StoreMetrics.
+ *      -Latencies go into a log-linear histogram: a bucket per power of two of nanoseconds, each split into SUB_BUCKETS linear sub-buckets, so
+ *       a percentile is known to within one sub-bucket, 1/8 of its value, from a nanosecond up to the longest latency a long can hold. The
+ *       histogram is a fixed AtomicLongArray, so recording a latency is one atomic increment and allocates nothing.
+ *      -Counts are LongAdders, which threads add to without contending. Reading any of them while operations run gives a value that was true
+ *       at some moment during the read, which is all a monitor needs.
+ */
+public class OperationStats implements OperationStatsMBean {
+	private static final int SUB_BUCKET_BITS = 3,
+							 SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private final String name;
+	private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+	private final AtomicLong max = new AtomicLong();
+	private final LongAdder count = new LongAdder(),
+							totalNanos = new LongAdder(),
+							recordsScanned = new LongAdder(),
+							bytesRead = new LongAdder(),
+							bytesWritten = new LongAdder(),
+							seeks = new LongAdder();
+
+	OperationStats(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	void record(long nanos) {
+		buckets.incrementAndGet(bucket(nanos));
+		count.increment();
+		totalNanos.add(nanos);
+		long longest = max.get();
+		while(nanos > longest && !max.compareAndSet(longest, nanos))
+			longest = max.get();
+	}
+
+	void read(long bytes, long records) {
+		bytesRead.add(bytes);
+		recordsScanned.add(records);
+		seeks.increment();
+	}
+
+	void written(long bytes) {
+		bytesWritten.add(bytes);
+		seeks.increment();
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public double getMeanMicros() {
+		long operations = count.sum();
+		return operations == 0 ? 0 : totalNanos.sum() / 1000.0 / operations;
+	}
+
+	public double getP50Micros() {
+		return percentileMicros(0.5);
+	}
+
+	public double getP99Micros() {
+		return percentileMicros(0.99);
+	}
+
+	public double getP999Micros() {
+		return percentileMicros(0.999);
+	}
+
+	public double getMaxMicros() {
+		return max.get() / 1000.0;
+	}
+
+	public long getRecordsScanned() {
+		return recordsScanned.sum();
+	}
+
+	public long getBytesRead() {
+		return bytesRead.sum();
+	}
+
+	public long getBytesWritten() {
+		return bytesWritten.sum();
+	}
+
+	public long getSeeks() {
+		return seeks.sum();
+	}
+
+	//The latency below which the given fraction of operations fell, as the top of its bucket, or 0 if there have been none.
+	public double percentileMicros(double fraction) {
+		long[] counts = new long[buckets.length()];
+		long total = 0;
+		for(int bucket = 0; bucket < counts.length; bucket++)
+			total += counts[bucket] = buckets.get(bucket);
+		if(total == 0) return 0;
+		long rank = Math.max(1, (long) Math.ceil(fraction * total)),
+			 seen = 0;
+		for(int bucket = 0; bucket < counts.length; bucket++) {
+			seen += counts[bucket];
+			if(seen >= rank) return Math.min(lowest(bucket + 1) - 1, max.get()) / 1000.0;
+		}
+		return max.get() / 1000.0;
+	}
+
+	//Values below SUB_BUCKETS have a bucket each; above, a value's bucket is its highest bit and the SUB_BUCKET_BITS bits below it.
+	static int bucket(long nanos) {
+		if(nanos < SUB_BUCKETS) return (int) Math.max(0, nanos);
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + (int) (nanos >>> (exponent - SUB_BUCKET_BITS) & (SUB_BUCKETS - 1));
+	}
+
+	//The smallest value in the bucket.
+	static long lowest(int bucket) {
+		if(bucket < SUB_BUCKETS) return bucket;
+		int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+	}
+}
@@ -0,0 +1,16 @@
+/*
+ * The JMX view of one kind of store operation, as kept by OperationStats. Latencies are in microseconds, and every count is since the store
+ * was opened.
+ */
+public interface OperationStatsMBean {
+	long getCount();
+	double getMeanMicros();
+	double getP50Micros();
+	double getP99Micros();
+	double getP999Micros();
+	double getMaxMicros();
+	long getRecordsScanned();
+	long getBytesRead();
+	long getBytesWritten();
+	long getSeeks();
+}
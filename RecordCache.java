@@ -0,0 +1,125 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/*
+ * RecordCache holds decoded records by ID in least-recently-used order, bounded by an estimate of the memory they take rather than by a count.
+ *      -get(...) and put(...) move the record to the most-recently-used end; once the estimated size of all records exceeds the capacity, records
+ *       are evicted from the least-recently-used end until it fits again.
+ *      -peek(...) looks a record up without counting a hit or miss, for bulk readers such as reports, so the statistics describe the interactive
+ *       lookups the cache is sized for. Bulk readers also never put(...) what they read, so a large report cannot push the working set out.
+ *      -A capacity of 0 disables the cache: nothing is kept, and every get(...) is a miss.
+ *      -A RecordCache is thread-safe. IDs are split over shards, each an LRU of its own share of the capacity under its own lock, so threads
+ *       looking up different records rarely wait for each other. Eviction is least-recently-used within a shard, which approximates it over
+ *       the whole cache. Small caches have a single shard, so a record never has to fit into a sliver of the capacity.
+ */
+class RecordCache<V> {
+	private static final int MAX_SHARDS = 16;
+	private static final long MIN_SHARD_BYTES = 1024 * 1024;
+	private final long capacity;
+	private final Shard<V>[] shards;
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public RecordCache(long capacity) {
+		this.capacity = capacity;
+		int count = 1;
+		while(count < MAX_SHARDS && capacity / (count * 2) >= MIN_SHARD_BYTES)
+			count *= 2;
+		shards = new Shard[count];
+		for(int shard = 0; shard < count; shard++)
+			shards[shard] = new Shard<V>(capacity / count);
+	}
+	private static class Entry<V> {
+		final V value;
+		final long size;
+		Entry(V value, long size) {
+			this.value = value;
+			this.size = size;
+		}
+	}
+	private static class Shard<V> {
+		final long capacity;
+		final LinkedHashMap<Integer,Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+		long bytes,
+			 hits,
+			 misses,
+			 evictions;
+		Shard(long capacity) {
+			this.capacity = capacity;
+		}
+	}
+	private Shard<V> shard(int ID) {
+		return shards[(ID ^ (ID >>> 16)) & (shards.length - 1)];
+	}
+	//Returns the record with the given ID, or null if it is not cached.
+	public V get(int ID) {
+		Shard<V> shard = shard(ID);
+		synchronized(shard) {
+			Entry<V> entry = shard.entries.get(ID);
+			if(entry == null) {
+				++shard.misses;
+				return null;
+			}
+			++shard.hits;
+			return entry.value;
+		}
+	}
+	public V peek(int ID) {
+		Shard<V> shard = shard(ID);
+		synchronized(shard) {
+			Entry<V> entry = shard.entries.get(ID);
+			return entry == null ? null : entry.value;
+		}
+	}
+	//Caches value under ID, replacing any record cached for it. size is the estimated memory the record takes, in bytes.
+	public void put(int ID, V value, long size) {
+		Shard<V> shard = shard(ID);
+		synchronized(shard) {
+			if(size > shard.capacity) {  //A record that could never fit is not cached, but neither may a stale copy of it stay behind.
+				remove(shard, ID);
+				return;
+			}
+			Entry<V> previous = shard.entries.put(ID, new Entry<V>(value, size));
+			if(previous != null)
+				shard.bytes -= previous.size;
+			shard.bytes += size;
+			Iterator<Entry<V>> eldest = shard.entries.values().iterator();
+			while(shard.bytes > shard.capacity) {
+				shard.bytes -= eldest.next().size;
+				eldest.remove();
+				++shard.evictions;
+			}
+		}
+	}
+	public void remove(int ID) {
+		Shard<V> shard = shard(ID);
+		synchronized(shard) {
+			remove(shard, ID);
+		}
+	}
+	private static <V> void remove(Shard<V> shard, int ID) {
+		Entry<V> previous = shard.entries.remove(ID);
+		if(previous != null)
+			shard.bytes -= previous.size;
+	}
+	//The statistics are summed shard by shard, so under concurrent use they are a close snapshot rather than an exact one.
+	public CacheStats stats() {
+		long hits = 0, misses = 0, evictions = 0, bytes = 0;
+		int entries = 0;
+		for(Shard<V> shard : shards) {
+			synchronized(shard) {
+				hits += shard.hits;
+				misses += shard.misses;
+				evictions += shard.evictions;
+				entries += shard.entries.size();
+				bytes += shard.bytes;
+			}
+		}
+		return new CacheStats(hits, misses, evictions, entries, bytes, capacity);
+	}
+	//Estimates the memory taken by a decoded record with the given text fields: the record object with its primitives, plus each String.
+	static long estimateSize(String... texts) {
+		long size = 32;
+		for(String text : texts)
+			size += 40 + 2 * text.length();
+		return size;
+	}
+}
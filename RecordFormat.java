@@ -0,0 +1,125 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/*
+ * RecordFormat is the version 2 ("compact") layout of the record files, shared by the store, the index, the migrator and the benchmark.
+ *      -Every file starts with a HEADER_SIZE header: the MAGIC "SIS2", the format VERSION and the size of the file's records. Records follow
+ *       the header back to back, so the record numbered n is at HEADER_SIZE + n * recordSize.
+ *      -Text is stored as UTF-8 behind a one byte length, in a fixed TEXT_BYTES slot so that records keep a fixed size. Text is limited to
+ *       StudentInfoStore.TEXT_SIZE characters, as in version 1, and must also fit the slot, which any text of 2 byte UTF-8 characters does.
+ *      -Fields that can only take a few values (semester, grade, year level, major) are stored as a byte: their index in the store's list.
+ *      -Student and course records:  int ID, text, text, short, byte code                                               129 bytes
+ *       Enroll records:              short year, byte semester, byte grade, int courseID, int studentID                   12 bytes
+ *      -A deleted record is left in place as a tombstone, with DELETED for its code (student and course records, whose text is cleared) or
+ *       its grade (enroll records). The last int of an enroll segment's header, at TOMBSTONES_AT, counts its tombstones.
+ * Version 1 files have no header: they start straight away with a record of char[] fields, which is how an older file is told apart from
+ * this format. StoreMigrator converts them.
+ */
+class RecordFormat {
+	static final int MAGIC = 0x53495332, //"SIS2"
+					 VERSION = 2,
+					 HEADER_SIZE = 16, //int magic + int version + int record size + int tombstones
+					 TOMBSTONES_AT = 12,
+					 TEXT_BYTES = 60,
+					 TEXT_SLOT_SIZE = 1 + TEXT_BYTES;
+	static final byte DELETED = -1; //The code, or grade, of a tombstone.
+	//Byte positions of the fields of an enroll record.
+	static final int YEAR_AT = 0,
+					 SEMESTER_AT = 2,
+					 GRADE_AT = 3,
+					 COURSE_AT = 4,
+					 STUDENT_AT = 8;
+
+	private RecordFormat() {}
+
+	/*
+	 * Prepares a record file of this format that has just been opened: a new (empty) file is given its header, and an existing one has its header
+	 * checked. IOException is thrown if the file is not a version 2 file of records of recordSize.
+	 */
+	static void openFile(RandomAccessFile file, int recordSize, String name) throws IOException {
+		if(file.length() == 0) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC).putInt(VERSION).putInt(recordSize).putInt(0);
+			header.flip();
+			while(header.hasRemaining())
+				file.getChannel().write(header, header.position());
+			file.getChannel().force(true);  //A new file may be listed (in the catalog) or logged to before anything else forces it.
+			return;
+		}
+		int version = version(file);
+		if(version != VERSION) throw new IOException(name + " is a version " + version + " file; run StoreMigrator to convert it to version " + VERSION + ".");
+		ByteBuffer header = RecordReader.readRecordAt(file, 0, HEADER_SIZE);
+		header.position(8);
+		if(header.getInt() != recordSize) throw new IOException(name + " does not hold records of " + recordSize + " bytes.");
+	}
+
+	//Returns the format version of a record file: 0 if it is empty, VERSION if it starts with the header, and 1 (headerless) otherwise.
+	static int version(RandomAccessFile file) throws IOException {
+		if(file.length() == 0) return 0;
+		if(file.length() < HEADER_SIZE) return 1;
+		ByteBuffer header = RecordReader.readRecordAt(file, 0, HEADER_SIZE);
+		if(header.getInt() != MAGIC) return 1;
+		return header.getInt();
+	}
+
+	//Returns the number of tombstones the header of a file counts; 0 for a file without a header.
+	static int tombstones(RandomAccessFile file) throws IOException {
+		if(file.length() < HEADER_SIZE) return 0;
+		return RecordReader.readRecordAt(file, TOMBSTONES_AT, 4).getInt();
+	}
+
+	//The number of whole records in a file of records of recordSize. A trailing partial record is not counted.
+	static long records(RandomAccessFile file, int recordSize) throws IOException {
+		return Math.max(0, file.length() - HEADER_SIZE) / recordSize;
+	}
+
+	static void putSCRecord(ByteBuffer record, int ID, String firstText, String secondText, short number, byte code) {
+		record.putInt(ID);
+		putText(record, firstText);
+		putText(record, secondText);
+		record.putShort(number);
+		record.put(code);
+	}
+
+	static void putEnrollRecord(ByteBuffer record, short year, byte semester, byte grade, int courseID, int studentID) {
+		record.putShort(year).put(semester).put(grade).putInt(courseID).putInt(studentID);
+	}
+
+	/*
+	 * Puts text into its slot, trimmed, the way version 1 read text back. IllegalArgumentException is thrown if the text is longer than
+	 * StudentInfoStore.TEXT_SIZE characters or its UTF-8 does not fit the slot.
+	 */
+	static void putText(ByteBuffer record, String text) {
+		String trimmed = text.trim();
+		if(trimmed.length() > StudentInfoStore.TEXT_SIZE) throw new IllegalArgumentException("\"" + text + "\" is longer than " + StudentInfoStore.TEXT_SIZE + " characters.");
+		byte[] bytes = trimmed.getBytes(StandardCharsets.UTF_8);
+		if(bytes.length > TEXT_BYTES) throw new IllegalArgumentException("\"" + text + "\" is too long to store.");
+		int slot = record.position();
+		record.put((byte) bytes.length).put(bytes);
+		record.position(slot + TEXT_SLOT_SIZE);
+	}
+
+	static String getText(ByteBuffer record) {
+		int slot = record.position();
+		byte[] bytes = new byte[Math.min(record.get() & 0xFF, TEXT_BYTES)];
+		record.get(bytes);
+		record.position(slot + TEXT_SLOT_SIZE);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	//Returns the byte code of choice: its index in choices. IllegalArgumentException is thrown if it is not one of them.
+	static byte code(List<String> choices, String choice, String name) {
+		int code = choices.indexOf(choice);
+		if(code == -1) throw new IllegalArgumentException("Invalid " + name + ".");
+		return (byte) code;
+	}
+
+	//Returns the choice a byte code stands for. IOException is thrown for a code that is not in choices, which only a damaged file can hold.
+	static String choice(List<String> choices, byte code) throws IOException {
+		if(code < 0 || code >= choices.size()) throw new IOException("Invalid code " + code + " in record file.");
+		return choices.get(code);
+	}
+}
@@ -0,0 +1,126 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/*
+ * RecordReader reads fixed-size records through the file's FileChannel a page at a time, instead of a readChar()/readInt() call per field.
+ *      -next() returns the page buffer positioned at the start of the next record, or null at the end of the file. The caller decodes the record
+ *       with the buffer's relative get methods; whatever it does not read is skipped on the following call.
+ *      -Pages hold a whole number of records, so a record never straddles two reads.
+ *      -Reads are positional, so the RandomAccessFile's own file pointer is neither used nor moved, and any number of readers can scan one file
+ *       at once, alongside positional writes from other threads.
+ *      -A reader can be given an end offset, such as the end a store has published for a file that is being appended to; records past it are
+ *       never read, even if the file already holds (part of) them.
+ *      -The monitor is told how far the scan has got before each page is read, which is also where a cancelled scan stops.
+ *      -Every read is counted towards the store operation running on the thread, if any; see StoreMetrics.
+ */
+class RecordReader {
+	static final int PAGE_SIZE = 64 * 1024;
+	private final FileChannel channel;
+	private final int recordSize;
+	private final ByteBuffer page;
+	private final ScanMonitor monitor;
+	private final long end;
+	private long pageStart;
+	private int nextRecord;
+	public RecordReader(RandomAccessFile file, int recordSize) {
+		this(file, recordSize, 0);
+	}
+	public RecordReader(RandomAccessFile file, int recordSize, long start) {
+		this(file, recordSize, start, ScanMonitor.IGNORE_PROGRESS);
+	}
+	public RecordReader(RandomAccessFile file, int recordSize, long start, ScanMonitor monitor) {
+		this(file, recordSize, start, Long.MAX_VALUE, monitor);
+	}
+	public RecordReader(RandomAccessFile file, int recordSize, long start, long end, ScanMonitor monitor) {
+		this.end = end;
+		this.monitor = monitor;
+		this.channel = file.getChannel();
+		this.recordSize = recordSize;
+		this.page = ByteBuffer.allocate(PAGE_SIZE / recordSize * recordSize);
+		this.page.limit(0);
+		this.pageStart = start;
+	}
+	public ByteBuffer next() throws IOException {
+		if(nextRecord + recordSize > page.limit()) {
+			pageStart += nextRecord;
+			nextRecord = 0;
+			monitor.progress(pageStart, Math.min(end, channel.size()));
+			page.clear();
+			if(end - pageStart < page.capacity())
+				page.limit((int) Math.max(0, end - pageStart));
+			while(page.hasRemaining() && channel.read(page, pageStart + page.position()) >= 0);
+			page.flip();
+			StoreMetrics.read(page.limit(), page.limit() / recordSize);
+			if(page.limit() < recordSize) return null; //A trailing partial record is treated as the end of the file.
+		}
+		page.position(nextRecord);
+		nextRecord += recordSize;
+		return page;
+	}
+	//The byte offset in the file of the record last returned by next().
+	public long offset() {
+		return pageStart + nextRecord - recordSize;
+	}
+	//Reads the single record at offset with one positional read. EOFException is thrown if the record lies past the end of the file.
+	public static ByteBuffer readRecordAt(RandomAccessFile file, long offset, int recordSize) throws IOException {
+		FileChannel channel = file.getChannel();
+		ByteBuffer record = ByteBuffer.allocate(recordSize);
+		while(record.hasRemaining()) {
+			if(channel.read(record, offset + record.position()) < 0) throw new EOFException();
+		}
+		record.flip();
+		StoreMetrics.read(recordSize, 1);
+		return record;
+	}
+
+	/*
+	 * readRecordsAt(...) reads the records at a batch of offsets, which must be in ascending order, in one forward pass over the file. Records
+	 * that lie within PAGE_SIZE of the first record of a read are fetched by that same positional read, gaps included, so resolving a sorted
+	 * batch of records costs a run of sequential reads rather than one random read per record.
+	 *      -The visitor is given the position of each offset in the array and a buffer positioned at its record.
+	 *      -The monitor is told how many of the records have been read before each read.
+	 *      -EOFException is thrown if a record lies past the end of the file.
+	 */
+	public static void readRecordsAt(RandomAccessFile file, long[] offsets, int recordSize, ScanMonitor monitor, RecordVisitor visitor) throws IOException {
+		FileChannel channel = file.getChannel();
+		if(offsets.length == 0) return;
+		//The page is never larger than the span of the records, so a small batch does not pay for a whole page.
+		ByteBuffer page = ByteBuffer.allocate((int) Math.min(Math.max(PAGE_SIZE, recordSize), offsets[offsets.length - 1] + recordSize - offsets[0]));
+		int first = 0;
+		while(first < offsets.length) {
+			monitor.progress(first, offsets.length);
+			long pageStart = offsets[first];
+			int last = first;
+			while(last + 1 < offsets.length && offsets[last + 1] + recordSize - pageStart <= page.capacity())
+				++last;
+			page.clear();
+			page.limit((int) (offsets[last] + recordSize - pageStart));
+			while(page.hasRemaining()) {
+				if(channel.read(page, pageStart + page.position()) < 0) throw new EOFException();
+			}
+			StoreMetrics.read(page.limit(), last - first + 1);
+			for(int index = first; index <= last; index++) {
+				page.limit((int) (offsets[index] - pageStart) + recordSize);
+				page.position((int) (offsets[index] - pageStart));
+				visitor.visit(index, page);
+			}
+			first = last + 1;
+		}
+	}
+
+	//A RecordVisitor is handed each record read by readRecordsAt(...).
+	public interface RecordVisitor {
+		void visit(int index, ByteBuffer record) throws IOException;
+	}
+	
+	//Decodes the next length chars of a record buffer, as written by RandomAccessFile.writeChars(...).
+	public static String readChars(ByteBuffer record, int length) {
+		char[] buffer = new char[length];
+		for(int index = 0; index < length; index++) 
+			buffer[index] = record.getChar();
+		return String.valueOf(buffer);
+	}
+}
@@ -0,0 +1,125 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/*
+ * ReportExporter writes course reports to CSV or JSON Lines, without the Swing window, for one course, every course of a term, or every term
+ * the store holds.
+ *      -Rows are read a page of PAGE_ROWS at a time with StudentInfoStore.getReportPage(...) and written as soon as they are read, so an export
+ *       of any size holds one page of rows in memory, and output goes through one large buffer.
+ *      -Every row names its year, semester and course, so the rows of a term or history export can be told apart: in CSV the columns are
+ *       year,semester,courseID,studentID,name,grade, after a header row; in JSON Lines each row is one object with the same names.
+ *      -Courses are exported in ID order within a term, and terms in calendar order; the students of a course in ID order.
+ *
+ * Usage: java ReportExporter [--dir directory] [--format csv|jsonl] [--out file] [--year year --semester semester [--course courseID]]
+ * Without --year and --semester every term is exported; without --out the rows are written to standard output.
+ */
+public class ReportExporter {
+	static final int PAGE_ROWS = 4096;
+	private static final int BUFFER_SIZE = 1 << 20;
+	private final StudentInfoStore store;
+	private final Writer out;
+	private final boolean csv;
+	private long rows;
+
+	public static void main(String[] args) throws IOException {
+		File directory = new File("."),
+			 outFile = null;
+		String format = "csv",
+			   semester = null;
+		Short year = null;
+		Integer courseID = null;
+		for(int arg = 0; arg < args.length; arg++) {
+			switch(args[arg]) {
+				case "--dir": directory = new File(args[++arg]); break;
+				case "--format": format = args[++arg]; break;
+				case "--out": outFile = new File(args[++arg]); break;
+				case "--year": year = Short.parseShort(args[++arg]); break;
+				case "--semester": semester = args[++arg]; break;
+				case "--course": courseID = Integer.parseInt(args[++arg]); break;
+				default: throw new IllegalArgumentException("Unknown argument: " + args[arg]);
+			}
+		}
+		if(!format.equals("csv") && !format.equals("jsonl")) throw new IllegalArgumentException("--format must be csv or jsonl.");
+		if((year == null) != (semester == null)) throw new IllegalArgumentException("--year and --semester must be given together.");
+		if(courseID != null && year == null) throw new IllegalArgumentException("--course needs --year and --semester.");
+		OutputStream stream = outFile == null ? System.out : new FileOutputStream(outFile);
+		long started = System.nanoTime();
+		long exported;
+		try(StudentInfoStore store = new StudentInfoStore(directory);
+			Writer out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), BUFFER_SIZE)) {
+			ReportExporter exporter = new ReportExporter(store, out, format.equals("csv"));
+			if(courseID != null)
+				exporter.exportCourse(year, semester, courseID);
+			else if(year != null)
+				exporter.exportTerm(year, semester);
+			else
+				exporter.exportHistory();
+			exported = exporter.getRows();
+		}
+		System.err.printf("Exported %d rows in %.1f seconds.%n", exported, (System.nanoTime() - started) / 1e9);
+	}
+
+	//Writes to out, which the caller buffers and closes; the CSV header is written here.
+	public ReportExporter(StudentInfoStore store, Writer out, boolean csv) throws IOException {
+		this.store = store;
+		this.out = out;
+		this.csv = csv;
+		if(csv)
+			out.write("year,semester,courseID,studentID,name,grade\n");
+	}
+
+	public void exportCourse(short year, String semester, int courseID) throws IOException {
+		int fromStudentID = 0;
+		List<ReportRow> page;
+		do {
+			page = store.getReportPage(year, semester, courseID, fromStudentID, 0, PAGE_ROWS);
+			for(ReportRow row : page)
+				write(year, semester, courseID, row);
+			if(!page.isEmpty())
+				fromStudentID = page.get(page.size() - 1).getStudentID() + 1;
+		} while(page.size() == PAGE_ROWS);
+	}
+
+	public void exportTerm(short year, String semester) throws IOException {
+		for(int courseID : store.getCourseIDsFromEnrollFile(year, semester))
+			exportCourse(year, semester, courseID);
+	}
+
+	public void exportHistory() throws IOException {
+		for(Term term : store.getTerms())
+			exportTerm(term.getYear(), term.getSemester());
+	}
+
+	//The number of rows written so far.
+	public long getRows() {
+		return rows;
+	}
+
+	private void write(short year, String semester, int courseID, ReportRow row) throws IOException {
+		if(csv) {
+			out.write(year + "," + semester + "," + courseID + "," + row.getStudentID() + ",");
+			out.write(csvField(row.getName()));
+			out.write(",");
+			out.write(row.getGrade());
+		}
+		else {
+			out.write(new Json.Writer().beginObject().value("year", year).value("semester", semester).value("courseID", courseID)
+					.value("studentID", row.getStudentID()).value("name", row.getName()).value("grade", row.getGrade()).endObject().toString());
+		}
+		out.write("\n");
+		++rows;
+	}
+
+	//Quotes a field that holds a comma, quote or line break, doubling its quotes, as RFC 4180 does.
+	private static String csvField(String field) {
+		if(field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0 && field.indexOf('\r') < 0) return field;
+		return "\"" + field.replace("\"", "\"\"") + "\"";
+	}
+}
@@ -0,0 +1,22 @@
+/*
+ * One row of a course report: a student enrolled in the course, with the student's name and grade.
+ */
+public class ReportRow {
+	private final int studentID;
+	private final String name,
+						 grade;
+	public ReportRow(int studentID, String name, String grade) {
+		this.studentID = studentID;
+		this.name = name;
+		this.grade = grade;
+	}
+	public int getStudentID() {
+		return studentID;
+	}
+	public String getName() {
+		return name;
+	}
+	public String getGrade() {
+		return grade;
+	}
+}
@@ -0,0 +1,280 @@
+import java.util.Arrays;
+
+/*
+ * RosterBitmap is a compressed set of student IDs, laid out like a Roaring bitmap, so a course roster can be counted, tested and combined with
+ * other rosters without touching the enroll file.
+ *      -IDs are split into their high and low 16 bits. Each high half present has a container of low halves: a sorted char array while it
+ *       holds up to ARRAY_MAX IDs, and a 65536-bit long[] bitmap once it holds more. Student IDs are given out densely from 90000, so a roster
+ *       of any size spans only a few containers, and a big one packs each ID into about a bit.
+ *      -and(...), or(...) and andNot(...) return a new bitmap and leave both operands as they were. Containers are combined pairwise by high
+ *       half, so only the high halves both sides share are looked at for an intersection.
+ *      -A RosterBitmap is not thread-safe. The rosters kept by EnrollIndex are only changed under their own lock, and handed out as copies.
+ */
+public class RosterBitmap {
+	private static final int ARRAY_MAX = 4096, //An array container of 4096 chars takes as much memory as a bitmap container: 8KB.
+							 BITMAP_WORDS = 1024;
+	private char[] keys = new char[0]; //The high halves present, sorted; containers[n] holds the low halves of keys[n].
+	private Container[] containers = new Container[0];
+	private int cardinality;
+
+	public RosterBitmap() {}
+
+	//Returns a bitmap of the given IDs, in any order.
+	public static RosterBitmap of(int... IDs) {
+		RosterBitmap bitmap = new RosterBitmap();
+		for(int ID : IDs)
+			bitmap.add(ID);
+		return bitmap;
+	}
+
+	public RosterBitmap copy() {
+		RosterBitmap copy = new RosterBitmap();
+		copy.keys = keys.clone();
+		copy.containers = new Container[containers.length];
+		for(int index = 0; index < containers.length; index++)
+			copy.containers[index] = containers[index].copy();
+		copy.cardinality = cardinality;
+		return copy;
+	}
+
+	//Adds ID, and returns false if it was already present.
+	public boolean add(int ID) {
+		char high = (char) (ID >>> 16);
+		int at = Arrays.binarySearch(keys, high);
+		if(at < 0) {
+			at = -at - 1;
+			char[] newKeys = new char[keys.length + 1];
+			Container[] newContainers = new Container[containers.length + 1];
+			System.arraycopy(keys, 0, newKeys, 0, at);
+			System.arraycopy(containers, 0, newContainers, 0, at);
+			System.arraycopy(keys, at, newKeys, at + 1, keys.length - at);
+			System.arraycopy(containers, at, newContainers, at + 1, containers.length - at);
+			newKeys[at] = high;
+			newContainers[at] = new Container();
+			keys = newKeys;
+			containers = newContainers;
+		}
+		if(!containers[at].add((char) ID)) return false;
+		++cardinality;
+		return true;
+	}
+
+	//Removes ID, and returns false if it was not present. A container left empty is dropped.
+	public boolean remove(int ID) {
+		int at = Arrays.binarySearch(keys, (char) (ID >>> 16));
+		if(at < 0 || !containers[at].remove((char) ID)) return false;
+		--cardinality;
+		if(containers[at].size == 0) {
+			char[] newKeys = new char[keys.length - 1];
+			Container[] newContainers = new Container[containers.length - 1];
+			System.arraycopy(keys, 0, newKeys, 0, at);
+			System.arraycopy(containers, 0, newContainers, 0, at);
+			System.arraycopy(keys, at + 1, newKeys, at, keys.length - at - 1);
+			System.arraycopy(containers, at + 1, newContainers, at, containers.length - at - 1);
+			keys = newKeys;
+			containers = newContainers;
+		}
+		return true;
+	}
+
+	public boolean contains(int ID) {
+		int at = Arrays.binarySearch(keys, (char) (ID >>> 16));
+		return at >= 0 && containers[at].contains((char) ID);
+	}
+
+	public int cardinality() {
+		return cardinality;
+	}
+
+	public boolean isEmpty() {
+		return cardinality == 0;
+	}
+
+	//Returns the IDs in ascending order, taken as unsigned, which for student IDs is their natural order.
+	public int[] toArray() {
+		int[] IDs = new int[cardinality];
+		int next = 0;
+		for(int index = 0; index < keys.length; index++) {
+			int high = keys[index] << 16;
+			Container container = containers[index];
+			if(container.bitmap == null) {
+				for(int low = 0; low < container.size; low++)
+					IDs[next++] = high | container.array[low];
+			}
+			else {
+				for(int word = 0; word < BITMAP_WORDS; word++) {
+					for(long bits = container.bitmap[word]; bits != 0; bits &= bits - 1)
+						IDs[next++] = high | (word << 6) + Long.numberOfTrailingZeros(bits);
+				}
+			}
+		}
+		return IDs;
+	}
+
+	//The IDs in both bitmaps.
+	public RosterBitmap and(RosterBitmap other) {
+		RosterBitmap result = new RosterBitmap();
+		int mine = 0,
+			theirs = 0;
+		while(mine < keys.length && theirs < other.keys.length) {
+			if(keys[mine] < other.keys[theirs])
+				++mine;
+			else if(keys[mine] > other.keys[theirs])
+				++theirs;
+			else {
+				long[] bitmap = containers[mine].toBitmap(),
+					   otherBitmap = other.containers[theirs].toBitmap();
+				for(int word = 0; word < BITMAP_WORDS; word++)
+					bitmap[word] &= otherBitmap[word];
+				result.append(keys[mine], bitmap);
+				++mine;
+				++theirs;
+			}
+		}
+		return result;
+	}
+
+	//The IDs in either bitmap.
+	public RosterBitmap or(RosterBitmap other) {
+		RosterBitmap result = new RosterBitmap();
+		int mine = 0,
+			theirs = 0;
+		while(mine < keys.length || theirs < other.keys.length) {
+			if(theirs == other.keys.length || (mine < keys.length && keys[mine] < other.keys[theirs])) {
+				result.append(keys[mine], containers[mine].toBitmap());
+				++mine;
+			}
+			else if(mine == keys.length || keys[mine] > other.keys[theirs]) {
+				result.append(other.keys[theirs], other.containers[theirs].toBitmap());
+				++theirs;
+			}
+			else {
+				long[] bitmap = containers[mine].toBitmap(),
+					   otherBitmap = other.containers[theirs].toBitmap();
+				for(int word = 0; word < BITMAP_WORDS; word++)
+					bitmap[word] |= otherBitmap[word];
+				result.append(keys[mine], bitmap);
+				++mine;
+				++theirs;
+			}
+		}
+		return result;
+	}
+
+	//The IDs in this bitmap but not in other.
+	public RosterBitmap andNot(RosterBitmap other) {
+		RosterBitmap result = new RosterBitmap();
+		int theirs = 0;
+		for(int mine = 0; mine < keys.length; mine++) {
+			while(theirs < other.keys.length && other.keys[theirs] < keys[mine])
+				++theirs;
+			long[] bitmap = containers[mine].toBitmap();
+			if(theirs < other.keys.length && other.keys[theirs] == keys[mine]) {
+				long[] otherBitmap = other.containers[theirs].toBitmap();
+				for(int word = 0; word < BITMAP_WORDS; word++)
+					bitmap[word] &= ~otherBitmap[word];
+			}
+			result.append(keys[mine], bitmap);
+		}
+		return result;
+	}
+
+	//Appends the container of a high half past every one present, as an array if it is small enough, and not at all if it is empty.
+	private void append(char high, long[] bitmap) {
+		Container container = Container.of(bitmap);
+		if(container.size == 0) return;
+		keys = Arrays.copyOf(keys, keys.length + 1);
+		containers = Arrays.copyOf(containers, containers.length + 1);
+		keys[keys.length - 1] = high;
+		containers[containers.length - 1] = container;
+		cardinality += container.size;
+	}
+
+	/*
+	 * The low halves of the IDs that share a high half: the first size chars of a sorted array, which grows by doubling, or a bitmap once there
+	 * are more than ARRAY_MAX of them, in which case array is null.
+	 */
+	private static class Container {
+		char[] array = new char[4];
+		long[] bitmap;
+		int size;
+		static Container of(long[] bitmap) {
+			Container container = new Container();
+			for(long word : bitmap)
+				container.size += Long.bitCount(word);
+			if(container.size > ARRAY_MAX) {
+				container.array = null;
+				container.bitmap = bitmap;
+				return container;
+			}
+			container.array = new char[Math.max(container.size, 4)];
+			int next = 0;
+			for(int word = 0; word < BITMAP_WORDS; word++) {
+				for(long bits = bitmap[word]; bits != 0; bits &= bits - 1)
+					container.array[next++] = (char) ((word << 6) + Long.numberOfTrailingZeros(bits));
+			}
+			return container;
+		}
+		boolean add(char low) {
+			if(bitmap != null) {
+				if((bitmap[low >>> 6] & (1L << low)) != 0) return false;
+				bitmap[low >>> 6] |= 1L << low;
+				++size;
+				return true;
+			}
+			//Rosters are mostly loaded in ID order, so the common case is an append past the last low half.
+			int at = size > 0 && array[size - 1] < low ? -size - 1 : Arrays.binarySearch(array, 0, size, low);
+			if(at >= 0) return false;
+			at = -at - 1;
+			if(size == ARRAY_MAX) {
+				bitmap = toBitmap();
+				array = null;
+				bitmap[low >>> 6] |= 1L << low;
+				++size;
+				return true;
+			}
+			if(size == array.length)
+				array = Arrays.copyOf(array, Math.min(array.length * 2, ARRAY_MAX));
+			System.arraycopy(array, at, array, at + 1, size - at);
+			array[at] = low;
+			++size;
+			return true;
+		}
+		//A bitmap that shrinks back to ARRAY_MAX low halves is turned back into an array.
+		boolean remove(char low) {
+			if(bitmap != null) {
+				if((bitmap[low >>> 6] & (1L << low)) == 0) return false;
+				bitmap[low >>> 6] &= ~(1L << low);
+				if(--size == ARRAY_MAX) {
+					array = of(bitmap).array;
+					bitmap = null;
+				}
+				return true;
+			}
+			int at = Arrays.binarySearch(array, 0, size, low);
+			if(at < 0) return false;
+			System.arraycopy(array, at + 1, array, at, size - at - 1);
+			--size;
+			return true;
+		}
+		boolean contains(char low) {
+			if(bitmap != null) return (bitmap[low >>> 6] & (1L << low)) != 0;
+			return Arrays.binarySearch(array, 0, size, low) >= 0;
+		}
+		//Returns the low halves as a new bitmap, which the caller may change.
+		long[] toBitmap() {
+			if(bitmap != null) return bitmap.clone();
+			long[] newBitmap = new long[BITMAP_WORDS];
+			for(int low = 0; low < size; low++)
+				newBitmap[array[low] >>> 6] |= 1L << array[low];
+			return newBitmap;
+		}
+		Container copy() {
+			Container copy = new Container();
+			copy.array = array == null ? null : Arrays.copyOf(array, Math.max(size, 4));
+			copy.bitmap = bitmap == null ? null : bitmap.clone();
+			copy.size = size;
+			return copy;
+		}
+	}
+}
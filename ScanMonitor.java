@@ -0,0 +1,11 @@
+/*
+ * ScanMonitor is told how far a scan over a record file has progressed. It is also how a scan finds out it is no longer wanted: progress(...) may throw
+ * a CancellationException, which unwinds the scan without reading the rest of the file.
+ */
+public interface ScanMonitor {
+	ScanMonitor IGNORE_PROGRESS = new ScanMonitor() {
+		public void progress(long done, long total) {}
+	};
+	
+	void progress(long done, long total);
+}
@@ -0,0 +1,183 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/*
+ * StoreMetrics times the operations of a StudentInfoStore and counts the I/O they do, with an OperationStats per kind of Operation, as returned
+ * by StudentInfoStore.getMetrics().
+ *      -The store wraps each operation in start(...) and Timer.stop(), which costs two System.nanoTime() calls and a few uncontended adds.
+ *      -I/O is counted where it happens, by RecordReader, the store's writes and the log, through the static read(...) and written(...). They
+ *       add to the operation running on the current thread, which start(...) keeps in a ThreadLocal; I/O outside any operation is not counted,
+ *       and I/O of an operation nested in another (a cohort's enrollments, a compaction's checkpoint) counts towards the inner one. A seek is
+ *       one positional read or write; reads from a memory-mapped segment are not I/O calls and are not counted.
+ *      -Each OperationStats is registered as a JMX MBean, named StudentInfoStore:type=Operation,store=<directory>,name=<operation>, so JConsole
+ *       or any JMX client can watch a running store. If the MBeans cannot be registered (say, a second store over the same directory), the
+ *       statistics are still kept.
+ *      -startLog(...) prints every operation that has run to a stream at a fixed period, on a daemon thread of its own.
+ */
+public class StoreMetrics implements Closeable {
+	private static final ThreadLocal<OperationStats> CURRENT = new ThreadLocal<>();
+	private final Map<Operation,OperationStats> operations = new EnumMap<>(Operation.class);
+	private final List<ObjectName> registered = new ArrayList<>();
+	private ScheduledExecutorService logger;
+
+	public enum Operation {
+		CREATE_RECORDS("createRecords"),
+		READ_RECORD("readRecord"),
+		UPDATE_RECORD("updateRecord"),
+		DELETE_RECORD("deleteRecord"),
+		SEARCH_RECORDS("searchRecords"),
+		LIST_RECORD_IDS("getIDsFromSCFile"),
+		ENROLL("writeEnrollRecords"),
+		UNENROLL("unenroll"),
+		READ_ENROLLMENT("readEnrollment"),
+		VIEW_ADD_GRADE("viewAddGrade"),
+		COURSE_IDS("getCourseIDsFromEnrollFile"),
+		STUDENT_IDS("getStudentIDsFromEnrollFile"),
+		ROSTER("roster"),
+		REPORT("getReportDataFromEnrollFile"),
+		REPORT_PAGE("getReportPage"),
+		GRADE_ANALYTICS("getGradeAnalytics"),
+		CHECKPOINT("checkpoint"),
+		COMPACT("compactTerm");
+		final String label;
+		Operation(String label) {
+			this.label = label;
+		}
+	}
+
+	StoreMetrics(File directory) {
+		for(Operation operation : Operation.values())
+			operations.put(operation, new OperationStats(operation.label));
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			String store = ObjectName.quote(directory.getAbsoluteFile().toPath().normalize().toString());
+			for(OperationStats stats : operations.values()) {
+				ObjectName name = new ObjectName("StudentInfoStore:type=Operation,store=" + store + ",name=" + stats.getName());
+				server.registerMBean(stats, name);
+				registered.add(name);
+			}
+		} catch (JMException exception) {
+			unregister();
+		}
+	}
+
+	public OperationStats get(Operation operation) {
+		return operations.get(operation);
+	}
+
+	public Map<Operation,OperationStats> getAll() {
+		return Collections.unmodifiableMap(operations);
+	}
+
+	//Starts timing an operation on the current thread, which also counts the I/O the thread does until the timer is stopped.
+	Timer start(Operation operation) {
+		OperationStats stats = operations.get(operation);
+		Timer timer = new Timer(stats, CURRENT.get());
+		CURRENT.set(stats);
+		return timer;
+	}
+
+	static class Timer {
+		private final OperationStats stats,
+									 outer;
+		private final long start = System.nanoTime();
+		private Timer(OperationStats stats, OperationStats outer) {
+			this.stats = stats;
+			this.outer = outer;
+		}
+		void stop() {
+			stats.record(System.nanoTime() - start);
+			attach(outer);
+		}
+	}
+
+	//The statistics the current thread counts its I/O towards, or null, so worker threads of the operation can attach(...) to them.
+	static OperationStats current() {
+		return CURRENT.get();
+	}
+
+	//Makes the current thread count its I/O towards stats (none if null), and returns what it counted towards before, to be attached again after.
+	static OperationStats attach(OperationStats stats) {
+		OperationStats previous = CURRENT.get();
+		if(stats == null)
+			CURRENT.remove();
+		else
+			CURRENT.set(stats);
+		return previous;
+	}
+
+	//Counts a positional read of bytes, holding records whole records, towards the operation running on the current thread.
+	static void read(long bytes, long records) {
+		OperationStats stats = CURRENT.get();
+		if(stats != null)
+			stats.read(bytes, records);
+	}
+
+	static void written(long bytes) {
+		OperationStats stats = CURRENT.get();
+		if(stats != null)
+			stats.written(bytes);
+	}
+
+	//Prints the statistics of every operation that has run to out every periodSeconds, until the metrics are closed.
+	public synchronized void startLog(final PrintStream out, long periodSeconds) {
+		if(logger != null) throw new IllegalStateException("The metrics are already being logged.");
+		logger = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable task) {
+				Thread thread = new Thread(task, "Store metrics");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		logger.scheduleAtFixedRate(new Runnable() {
+			public void run() {
+				out.print(report());
+				out.flush();
+			}
+		}, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+	}
+
+	//One line per operation that has run: its count, latency percentiles in microseconds, and I/O.
+	public String report() {
+		StringBuilder report = new StringBuilder();
+		for(OperationStats stats : operations.values()) {
+			if(stats.getCount() == 0) continue;
+			report.append(String.format("%-28s %10d ops  p50 %10.1f  p99 %10.1f  p999 %10.1f  max %10.1f us  %12d records  %14d bytes read  %14d bytes written  %10d seeks%n",
+					stats.getName(), stats.getCount(), stats.getP50Micros(), stats.getP99Micros(), stats.getP999Micros(), stats.getMaxMicros(),
+					stats.getRecordsScanned(), stats.getBytesRead(), stats.getBytesWritten(), stats.getSeeks()));
+		}
+		return report.toString();
+	}
+
+	//Stops the log and unregisters the MBeans; called by the store as it closes.
+	public synchronized void close() {
+		if(logger != null)
+			logger.shutdownNow();
+		logger = null;
+		unregister();
+	}
+
+	private void unregister() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		for(ObjectName name : registered) {
+			try {
+				server.unregisterMBean(name);
+			} catch (JMException exception) {}  //Already gone.
+		}
+		registered.clear();
+	}
+}
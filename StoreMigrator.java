@@ -0,0 +1,201 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/*
+ * StoreMigrator converts the record files of a directory from version 1 (char[] text, fields stored as text) to the compact version 2 format
+ * of RecordFormat. It runs offline from the command line, and online from the StudentInfoStore constructor, which calls migrate(...) before
+ * opening the files, so an application upgraded in place converts its data the first time it starts.
+ *      -Each file is converted on its own, into a temporary file next to it. Only once that is complete and forced to disk is the original kept
+ *       as <file>.v1 and the temporary file moved over it, so at every moment the file is either the whole version 1 file or the whole version 2
+ *       file, and an interrupted migration is simply done again.
+ *      -Files that are missing, empty or already version 2 are left alone. The enrollment index is deleted once the enroll file is converted,
+ *       because its offsets are those of the old file; the store rebuilds it when it opens.
+ *      -IDs and the order of the records are kept, so every student and course keeps its ID.
+ *      -A single version 2 EnrollmentFile.dat, as written before enrollments were partitioned by term, is then split into one segment file per
+ *       term and the EnrollCatalog listing them. The catalog is the commit point of the split: until it exists an interrupted split is simply
+ *       done again, and once it does the old file is kept as EnrollmentFile.dat.v2 and its index deleted.
+ *      -A record that cannot be represented in version 2 (a choice that is not in the store's lists, or text whose UTF-8 does not fit
+ *       RecordFormat.TEXT_BYTES) fails the migration of its file with an IOException naming the record; the original file is left untouched.
+ *
+ * Usage: java StoreMigrator [--dir directory]
+ */
+public class StoreMigrator {
+	private static final int V1_TEXT_SIZE = 30,
+							 V1_SC_RECORD_SIZE = 186, //int: 4 bytes + 3 * char[30]: 180 bytes + short: 2 bytes
+							 V1_ENROLL_RECORD_SIZE = 26; //short: 2 bytes + char[6]: 12 bytes + 2 * int: 8 bytes + char[2]: 4 bytes
+
+	public static void main(String[] args) throws IOException {
+		File directory = new File(".");
+		for(int arg = 0; arg < args.length; arg++) {
+			switch(args[arg]) {
+				case "--dir": directory = new File(args[++arg]); break;
+				default: throw new IllegalArgumentException("Unknown argument: " + args[arg]);
+			}
+		}
+		int migrated = migrate(directory, new ScanMonitor() {
+			int lastPercent = -1;
+			public void progress(long done, long total) {
+				int percent = total == 0 ? 100 : (int) (done * 100 / total);
+				if(percent / 10 != lastPercent / 10)
+					System.out.println(percent + "%");
+				lastPercent = percent;
+			}
+		});
+		System.out.println(migrated == 0 ? "Nothing to migrate in " + directory + "." : migrated + " files migrated to version " + RecordFormat.VERSION + ".");
+	}
+
+	//Migrates every version 1 record file in the directory and partitions an unpartitioned enroll file, and returns how many files were migrated.
+	public static int migrate(File directory, ScanMonitor monitor) throws IOException {
+		int migrated = 0;
+		if(migrateFile(new File(directory, "StudentFile.dat"), "Student", monitor))
+			++migrated;
+		if(migrateFile(new File(directory, "CourseFile.dat"), "Course", monitor))
+			++migrated;
+		if(migrateFile(new File(directory, "EnrollmentFile.dat"), "Enroll", monitor)) {
+			++migrated;
+			Files.deleteIfExists(new File(directory, "EnrollmentIndex.dat").toPath());
+		}
+		if(partitionEnrollFile(directory, monitor))
+			++migrated;
+		return migrated;
+	}
+
+	private static boolean partitionEnrollFile(File directory, ScanMonitor monitor) throws IOException {
+		File file = new File(directory, "EnrollmentFile.dat");
+		if(!file.isFile()) return false;
+		int recordSize = StudentInfoStore.ENROLL_RECORD_SIZE;
+		if(!EnrollCatalog.exists(directory)) {
+			Map<Integer,SegmentWriter> writers = new TreeMap<>();
+			try(RandomAccessFile source = new RandomAccessFile(file, "r")) {
+				if(RecordFormat.version(source) == RecordFormat.VERSION) {
+					RecordReader reader = new RecordReader(source, recordSize, RecordFormat.HEADER_SIZE, monitor);
+					ByteBuffer record;
+					while((record = reader.next()) != null) {
+						int at = record.position(),
+							term = EnrollCatalog.term(record.getShort(at + RecordFormat.YEAR_AT), record.get(at + RecordFormat.SEMESTER_AT));
+						SegmentWriter writer = writers.get(term);
+						if(writer == null) {
+							writer = new SegmentWriter(EnrollCatalog.segmentFile(directory, term), recordSize);
+							writers.put(term, writer);
+							Files.deleteIfExists(EnrollCatalog.indexFile(directory, term).toPath());
+						}
+						writer.write(record, recordSize);
+					}
+				}
+				for(SegmentWriter writer : writers.values())
+					writer.finish();
+			} finally {
+				for(SegmentWriter writer : writers.values())
+					writer.close();
+			}
+			EnrollCatalog.write(directory, new TreeSet<>(writers.keySet()));
+		}
+		Files.move(file.toPath(), new File(file.getPath() + ".v2").toPath(), StandardCopyOption.REPLACE_EXISTING);
+		Files.deleteIfExists(new File(directory, "EnrollmentIndex.dat").toPath());
+		return true;
+	}
+
+	//Appends records to a new segment file through a page-sized buffer.
+	private static class SegmentWriter {
+		private final FileChannel channel;
+		private final ByteBuffer out;
+		SegmentWriter(File file, int recordSize) throws IOException {
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+			out = ByteBuffer.allocate(RecordReader.PAGE_SIZE / recordSize * recordSize);
+			out.putInt(RecordFormat.MAGIC).putInt(RecordFormat.VERSION).putInt(recordSize).putInt(0);
+		}
+		void write(ByteBuffer record, int recordSize) throws IOException {
+			if(out.remaining() < recordSize)
+				StoreMigrator.write(channel, out);
+			for(int index = 0; index < recordSize; index++)
+				out.put(record.get(record.position() + index));
+		}
+		void finish() throws IOException {
+			StoreMigrator.write(channel, out);
+			channel.force(true);
+		}
+		void close() throws IOException {
+			channel.close();
+		}
+	}
+
+	private static boolean migrateFile(File file, String fileType, ScanMonitor monitor) throws IOException {
+		if(!file.isFile()) return false;
+		Path temporary = new File(file.getPath() + ".v2tmp").toPath(),
+			 backup = new File(file.getPath() + ".v1").toPath();
+		boolean enroll = fileType.equals("Enroll");
+		int oldSize = enroll ? V1_ENROLL_RECORD_SIZE : V1_SC_RECORD_SIZE,
+			newSize = enroll ? StudentInfoStore.ENROLL_RECORD_SIZE : StudentInfoStore.SC_RECORD_SIZE;
+		try(RandomAccessFile source = new RandomAccessFile(file, "r")) {
+			if(RecordFormat.version(source) != 1) return false;
+			try(FileChannel target = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+				ByteBuffer out = ByteBuffer.allocate(RecordReader.PAGE_SIZE / newSize * newSize);
+				out.putInt(RecordFormat.MAGIC).putInt(RecordFormat.VERSION).putInt(newSize).putInt(0);
+				RecordReader reader = new RecordReader(source, oldSize, 0, monitor);
+				ByteBuffer record;
+				for(long number = 0; (record = reader.next()) != null; number++) {
+					if(out.remaining() < newSize)
+						write(target, out);
+					try {
+						if(enroll)
+							convertEnrollRecord(record, out);
+						else
+							convertSCRecord(record, out, fileType);
+					} catch (IllegalArgumentException exception) {
+						throw new IOException("Cannot migrate record " + number + " of " + file + ": " + exception.getMessage());
+					}
+				}
+				write(target, out);
+				target.force(true);
+			}
+		} catch (IOException exception) {
+			Files.deleteIfExists(temporary);
+			throw exception;
+		}
+		Files.deleteIfExists(backup);
+		try {
+			Files.createLink(backup, file.toPath());
+		} catch (IOException | UnsupportedOperationException exception) {  //Without hard links, the backup is a copy.
+			Files.copy(file.toPath(), backup);
+		}
+		Files.move(temporary, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		return true;
+	}
+
+	private static void convertSCRecord(ByteBuffer record, ByteBuffer out, String fileType) {
+		int ID = record.getInt();
+		String firstText = RecordReader.readChars(record,V1_TEXT_SIZE),
+			   secondText = RecordReader.readChars(record,V1_TEXT_SIZE);
+		short number = record.getShort();
+		String choice = RecordReader.readChars(record,V1_TEXT_SIZE).trim();
+		byte code = fileType.equals("Student") ? RecordFormat.code(StudentInfoStore.YEAR_LEVELS, choice, "year level")
+											   : RecordFormat.code(StudentInfoStore.MAJORS, choice, "major");
+		RecordFormat.putSCRecord(out, ID, firstText, secondText, number, code);
+	}
+
+	private static void convertEnrollRecord(ByteBuffer record, ByteBuffer out) {
+		short year = record.getShort();
+		String semester = RecordReader.readChars(record,6).trim();
+		int courseID = record.getInt(),
+			studentID = record.getInt();
+		String grade = RecordReader.readChars(record,2).trim();
+		RecordFormat.putEnrollRecord(out, year, StudentInfoStore.semesterCode(semester), StudentInfoStore.gradeCode(grade), courseID, studentID);
+	}
+
+	private static void write(FileChannel target, ByteBuffer out) throws IOException {
+		out.flip();
+		while(out.hasRemaining())
+			target.write(out);
+		out.clear();
+	}
+}
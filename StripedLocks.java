@@ -0,0 +1,28 @@
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+ * StripedLocks guards an unbounded set of keys (record IDs, enrollment keys) with a fixed array of read-write locks. A key is hashed to one of
+ * the stripes, so operations on different records almost always take different locks and run in parallel, while two operations on the same
+ * record always share one. Keys that collide on a stripe only wait for each other; they are never wrong.
+ *      -Readers of a record take its read lock, so any number of them run at once; a writer takes the write lock, and readers never see a record
+ *       half written or a cached copy older than the file.
+ *      -An operation holds at most one stripe at a time, so stripes cannot deadlock against each other.
+ */
+class StripedLocks {
+	private final ReentrantReadWriteLock[] stripes;
+	//stripes is rounded up to a power of two, so a stripe is picked with a mask.
+	public StripedLocks(int stripes) {
+		int size = 1;
+		while(size < stripes)
+			size <<= 1;
+		this.stripes = new ReentrantReadWriteLock[size];
+		for(int stripe = 0; stripe < this.stripes.length; stripe++)
+			this.stripes[stripe] = new ReentrantReadWriteLock();
+	}
+	//Returns the lock of key's stripe. The hash is spread first, so keys that differ only in their high bits still use every stripe.
+	public ReadWriteLock forKey(int key) {
+		int hash = key * 0x9E3779B9;
+		return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+	}
+}
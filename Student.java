@@ -0,0 +1,35 @@
+/*
+ * A student record. The ID is assigned by StudentInfoStore.createStudent(...); a Student that has not been created yet has an ID of 0.
+ */
+public class Student {
+	private final int ID;
+	private final String name,
+						 address,
+						 year;  //Freshman, Sophomore, Junior or Senior
+	private final short age;
+	public Student(String name, String address, short age, String year) {
+		this(0, name, address, age, year);
+	}
+	public Student(int ID, String name, String address, short age, String year) {
+		this.ID = ID;
+		this.name = name;
+		this.address = address;
+		this.age = age;
+		this.year = year;
+	}
+	public int getID() {
+		return ID;
+	}
+	public String getName() {
+		return name;
+	}
+	public String getAddress() {
+		return address;
+	}
+	public short getAge() {
+		return age;
+	}
+	public String getYear() {
+		return year;
+	}
+}
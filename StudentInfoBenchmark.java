@@ -0,0 +1,418 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+ * StudentInfoBenchmark measures how the operations of StudentInfoStore scale with the size of the record files.
+ * For each dataset size it generates synthetic StudentFile.dat, CourseFile.dat and EnrollmentFile.dat files, opens a store over them, and runs every
+ * operation for a fixed warmup and measurement time, recording the latency of each call.
+ *      -Results are appended to a CSV file, one row per (label, records, operation), with throughput and latency percentiles. The label names the
+ *       version being measured, so runs of different versions can share one file.
+ *      -"--threads" also runs a mix of lookups on several threads at once for each listed thread count, to show how throughput scales with cores.
+ *      -"--compare" prints two result files side by side, with the change in throughput and p99 latency per operation.
+ *
+ * Usage: java StudentInfoBenchmark [--sizes 10000,1000000,10000000] [--label name] [--dir directory] [--out results.csv] [--mmap] [--threads 1,2,4,8]
+ *        java StudentInfoBenchmark --compare baseline.csv candidate.csv
+ */
+public class StudentInfoBenchmark {
+	private static final long WARMUP_MILLIS = 2000,
+							  MEASURE_MILLIS = 5000;
+	private static final int MIN_SAMPLES = 5,
+							 MAX_SAMPLES = 1000000;
+	private static final int TERMS = 22 * StudentInfoStore.SEMESTERS.size(),  //The 22 years the UI offers, 1995 through 2016.
+							 ROSTER_SIZE = 30,      //Enrollments per course per term.
+							 ENROLLMENTS_PER_STUDENT = 20;
+
+	public static void main(String[] args) throws IOException {
+		if(args.length == 3 && args[0].equals("--compare")) {
+			compare(new File(args[1]), new File(args[2]));
+			return;
+		}
+		int[] sizes = {10000, 1000000};
+		String label = "current";
+		File directory = new File("benchmark-data"),
+			 out = new File("benchmark-results.csv");
+		boolean mapEnrollFile = false;
+		int[] threadCounts = {};
+		for(int arg = 0; arg < args.length; arg++) {
+			switch(args[arg]) {
+				case "--sizes":
+					String[] values = args[++arg].split(",");
+					sizes = new int[values.length];
+					for(int index = 0; index < values.length; index++)
+						sizes[index] = Integer.parseInt(values[index].trim());
+					break;
+				case "--label": label = args[++arg]; break;
+				case "--dir": directory = new File(args[++arg]); break;
+				case "--out": out = new File(args[++arg]); break;
+				case "--mmap": mapEnrollFile = true; break;
+				case "--threads":
+					String[] counts = args[++arg].split(",");
+					threadCounts = new int[counts.length];
+					for(int index = 0; index < counts.length; index++)
+						threadCounts[index] = Integer.parseInt(counts[index].trim());
+					break;
+				default: throw new IllegalArgumentException("Unknown argument: " + args[arg]);
+			}
+		}
+		for(int records : sizes) {
+			File dataset = new File(directory, String.valueOf(records));
+			System.out.println("Generating dataset of " + records + " enrollments in " + dataset + "...");
+			Dataset data = new Dataset(records);
+			data.generate(dataset);
+			List<Result> results = run(dataset, data, mapEnrollFile, threadCounts);
+			publish(results, label, records, out);
+		}
+	}
+
+	/*
+	 * Dataset describes a synthetic dataset of a given number of enrollments, and writes it straight into the record files in the store's format.
+	 * The enrollments are written as one file, which StoreMigrator then splits into term segments.
+	 * Enrollment i is a pure function of i, so benchmarks can pick existing enrollments at random without reading them back:
+	 *      -terms cycle fastest, then courses, so consecutive records spread over every term and course like a long history of appends.
+	 *      -each course has about ROSTER_SIZE students per term, and the students of a roster are spread over the whole student file.
+	 */
+	private static class Dataset {
+		final int records,
+				  students,
+				  courses;
+		Dataset(int records) {
+			this.records = records;
+			this.courses = Math.max(1, records / (TERMS * ROSTER_SIZE));
+			this.students = Math.max(ROSTER_SIZE, records / ENROLLMENTS_PER_STUDENT);
+		}
+		short year(int enrollment) {
+			return (short) (2016 - (enrollment % TERMS) / StudentInfoStore.SEMESTERS.size());
+		}
+		String semester(int enrollment) {
+			return StudentInfoStore.SEMESTERS.get((enrollment % TERMS) % StudentInfoStore.SEMESTERS.size());
+		}
+		int courseID(int enrollment) {
+			return 1000 + (enrollment / TERMS) % courses;
+		}
+		int studentID(int enrollment) {
+			int term = enrollment % TERMS,
+				course = (enrollment / TERMS) % courses,
+				seat = enrollment / (TERMS * courses);
+			return 90000 + (int) ((seat + course * 7919L + term * 31L) % students);
+		}
+		void generate(File directory) throws IOException {
+			if(!directory.isDirectory() && !directory.mkdirs()) throw new IOException("Cannot create " + directory);
+			for(File file : directory.listFiles()) {  //Segments, indexes, text index snapshots and the log of an earlier run would otherwise be opened over the new data.
+				if(file.getName().startsWith("Enrollment") || file.getName().equals(WriteAheadLog.FILE_NAME) || file.getName().endsWith(TextIndex.FILE_SUFFIX))
+					file.delete();
+			}
+			writeSCFile(new File(directory, "StudentFile.dat"), 90000, students, "Student", (byte) StudentInfoStore.YEAR_LEVELS.indexOf("Freshman"));
+			writeSCFile(new File(directory, "CourseFile.dat"), 1000, courses, "Course", (byte) StudentInfoStore.MAJORS.indexOf("Engineering"));
+			Random random = new Random(records);
+			try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(directory, "EnrollmentFile.dat")), 1 << 16))) {
+				writeHeader(out, StudentInfoStore.ENROLL_RECORD_SIZE);
+				ByteBuffer record = ByteBuffer.allocate(StudentInfoStore.ENROLL_RECORD_SIZE);
+				for(int enrollment = 0; enrollment < records; enrollment++) {
+					record.clear();
+					RecordFormat.putEnrollRecord(record, year(enrollment), StudentInfoStore.semesterCode(semester(enrollment)),
+							(byte) random.nextInt(StudentInfoStore.GRADES.size()), courseID(enrollment), studentID(enrollment));
+					out.write(record.array());
+				}
+			}
+			StoreMigrator.migrate(directory, ScanMonitor.IGNORE_PROGRESS);  //Splits the enroll file into its term segments.
+		}
+		private void writeSCFile(File file, int firstID, int count, String text, byte code) throws IOException {
+			try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+				writeHeader(out, StudentInfoStore.SC_RECORD_SIZE);
+				ByteBuffer record = ByteBuffer.allocate(StudentInfoStore.SC_RECORD_SIZE);
+				for(int ID = firstID; ID < firstID + count; ID++) {
+					record.clear();
+					RecordFormat.putSCRecord(record, ID, text + " " + ID, ID + " Main Street", (short) 20, code);
+					out.write(record.array());
+				}
+			}
+		}
+		private static void writeHeader(DataOutputStream out, int recordSize) throws IOException {
+			out.writeInt(RecordFormat.MAGIC);
+			out.writeInt(RecordFormat.VERSION);
+			out.writeInt(recordSize);
+			out.writeInt(0);
+		}
+	}
+
+	//An operation under measurement. run(...) is called once per sample with the sample's number.
+	private abstract static class Operation {
+		final String name;
+		Operation(String name) {
+			this.name = name;
+		}
+		abstract void run(int sample) throws IOException;
+	}
+
+	private static class Result {
+		final String operation;
+		final long samples,
+				   elapsedNanos;
+		final long[] latencies;
+		final double opsPerSecond,
+					 meanMicros,
+					 p50Micros,
+					 p99Micros,
+					 p999Micros;
+		Result(String operation, long[] latencies, int samples, long elapsedNanos) {
+			long[] sorted = Arrays.copyOf(latencies, samples);
+			Arrays.sort(sorted);
+			long total = 0;
+			for(long latency : sorted)
+				total += latency;
+			this.operation = operation;
+			this.samples = samples;
+			this.elapsedNanos = elapsedNanos;
+			this.latencies = sorted;
+			this.opsPerSecond = samples * 1e9 / elapsedNanos;
+			this.meanMicros = total / 1e3 / samples;
+			this.p50Micros = percentile(sorted, 0.50);
+			this.p99Micros = percentile(sorted, 0.99);
+			this.p999Micros = percentile(sorted, 0.999);
+		}
+		private static double percentile(long[] sorted, double quantile) {
+			return sorted[(int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1)] / 1e3;
+		}
+	}
+
+	/*
+	 * The read-only operations run first, so they see exactly the generated dataset. The writes then grow the files, which is why each size is
+	 * regenerated from scratch on every run.
+	 */
+	private static List<Result> run(File directory, final Dataset data, boolean mapEnrollFile, int[] threadCounts) throws IOException {
+		List<Result> results = new ArrayList<>();
+		final Random random = new Random(42);
+		long start = System.nanoTime();
+		final StudentInfoStore store = new StudentInfoStore(directory, mapEnrollFile);
+		for(Term term : store.getTerms())  //Segments are opened lazily, so each is opened here to include every index rebuild.
+			store.getStudentIDsFromEnrollFile(term.getYear(), term.getSemester(), 0);
+		long openNanos = System.nanoTime() - start;
+		results.add(new Result("open (index rebuild)", new long[]{openNanos}, 1, openNanos));
+		try {
+			List<Operation> operations = new ArrayList<>();
+			operations.add(new Operation("readStudent") {
+				void run(int sample) throws IOException {
+					store.readStudent(90000 + random.nextInt(data.students));
+				}
+			});
+			operations.add(new Operation("readStudent (1000 hot)") {
+				void run(int sample) throws IOException {
+					store.readStudent(90000 + random.nextInt(Math.min(1000, data.students)));
+				}
+			});
+			operations.add(new Operation("viewAddGrade (View)") {
+				void run(int sample) throws IOException {
+					int enrollment = random.nextInt(data.records);
+					store.viewAddGrade(data.year(enrollment), data.semester(enrollment), data.courseID(enrollment), data.studentID(enrollment), "View", "");
+				}
+			});
+			operations.add(new Operation("getStudentIDsFromEnrollFile") {
+				void run(int sample) throws IOException {
+					int enrollment = random.nextInt(data.records);
+					store.getStudentIDsFromEnrollFile(data.year(enrollment), data.semester(enrollment), data.courseID(enrollment));
+				}
+			});
+			operations.add(new Operation("getReportDataFromEnrollFile") {
+				void run(int sample) throws IOException {
+					int enrollment = random.nextInt(data.records);
+					store.getReportDataFromEnrollFile(data.year(enrollment), data.semester(enrollment), data.courseID(enrollment));
+				}
+			});
+			operations.add(new Operation("getReportDataFromEnrollFile (x10)") {
+				void run(int sample) throws IOException {
+					int enrollment = random.nextInt(data.records);
+					List<Integer> courseIDs = new ArrayList<>();
+					for(int course = 0; course < 10; course++)
+						courseIDs.add(data.courseID(random.nextInt(data.records)));
+					store.getReportDataFromEnrollFile(data.year(enrollment), data.semester(enrollment), courseIDs, ScanMonitor.IGNORE_PROGRESS);
+				}
+			});
+			operations.add(new Operation("getCourseIDsFromEnrollFile") {
+				void run(int sample) throws IOException {
+					int enrollment = random.nextInt(data.records);
+					store.getCourseIDsFromEnrollFile(data.year(enrollment), data.semester(enrollment));
+				}
+			});
+			operations.add(new Operation("getIDsFromSCFile (Student)") {
+				void run(int sample) throws IOException {
+					store.getIDsFromSCFile("Student");
+				}
+			});
+			operations.add(new Operation("writeEnrollRecord (duplicate)") {
+				void run(int sample) throws IOException {
+					int enrollment = random.nextInt(data.records);
+					store.writeEnrollRecord(data.year(enrollment), data.semester(enrollment), data.courseID(enrollment), data.studentID(enrollment));
+				}
+			});
+			operations.add(new Operation("viewAddGrade (Add)") {
+				void run(int sample) throws IOException {
+					int enrollment = random.nextInt(data.records);
+					store.viewAddGrade(data.year(enrollment), data.semester(enrollment), data.courseID(enrollment), data.studentID(enrollment), "Add", "B");
+				}
+			});
+			operations.add(new Operation("writeEnrollRecord (new)") {
+				int nextStudent = 90000 + data.students;  //Students past the end of the student file, so every enrollment is new.
+				void run(int sample) throws IOException {
+					int enrollment = random.nextInt(data.records);
+					store.writeEnrollRecord(data.year(enrollment), data.semester(enrollment), data.courseID(enrollment), nextStudent++);
+				}
+			});
+			operations.add(new Operation("writeSCRecord (Student)") {
+				void run(int sample) throws IOException {
+					store.createStudent(new Student("Benchmark Student", "1 Benchmark Road", (short) 20, "Senior"));
+				}
+			});
+			for(Operation operation : operations) {
+				Result result = measure(operation);
+				print(result);
+				results.add(result);
+			}
+			//The mix runs after the writes, so its lookups also go through records and index entries appended during the run.
+			Operation mix = new Operation("lookup mix") {
+				void run(int sample) throws IOException {
+					Random random = ThreadLocalRandom.current();
+					int enrollment = random.nextInt(data.records);
+					switch(sample % 4) {
+						case 0: store.readStudent(90000 + random.nextInt(data.students)); break;
+						case 1: store.readStudent(90000 + random.nextInt(Math.min(1000, data.students))); break;
+						case 2: store.viewAddGrade(data.year(enrollment), data.semester(enrollment), data.courseID(enrollment), data.studentID(enrollment), "View", ""); break;
+						default: store.getReportDataFromEnrollFile(data.year(enrollment), data.semester(enrollment), data.courseID(enrollment)); break;
+					}
+				}
+			};
+			for(int threads : threadCounts) {
+				Result result = measure(mix, threads);
+				print(result);
+				results.add(result);
+			}
+			System.out.println("Student cache: " + store.getCacheStats("Student"));
+			System.out.print("Store operations:\n" + store.getMetrics().report());
+		} finally {
+			store.close();
+		}
+		return results;
+	}
+
+	private static void print(Result result) {
+		System.out.printf("%-32s %12.1f ops/s   p50 %10.1f us   p99 %10.1f us   p99.9 %10.1f us%n",
+				result.operation, result.opsPerSecond, result.p50Micros, result.p99Micros, result.p999Micros);
+	}
+
+	/*
+	 * Runs the operation on threads threads at once, each as measure(...) would run it alone, and combines their samples. The throughput is that
+	 * of all threads together, so with the store scaling perfectly it grows in proportion to the thread count while the latencies stay put.
+	 */
+	private static Result measure(final Operation operation, int threads) throws IOException {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Result>> runs = new ArrayList<>();
+			for(int thread = 0; thread < threads; thread++) {
+				runs.add(executor.submit(new Callable<Result>() {
+					public Result call() throws IOException {
+						return measure(operation);
+					}
+				}));
+			}
+			long[] latencies = new long[0];
+			int samples = 0;
+			long elapsedNanos = 0;
+			for(Future<Result> run : runs) {
+				Result result = run.get();
+				latencies = Arrays.copyOf(latencies, samples + result.latencies.length);
+				System.arraycopy(result.latencies, 0, latencies, samples, result.latencies.length);
+				samples += result.latencies.length;
+				elapsedNanos = Math.max(elapsedNanos, result.elapsedNanos);
+			}
+			return new Result(operation.name + " (" + threads + " threads)", latencies, samples, elapsedNanos);
+		} catch (InterruptedException exception) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while measuring " + operation.name, exception);
+		} catch (ExecutionException exception) {
+			if(exception.getCause() instanceof IOException) throw (IOException) exception.getCause();
+			throw new RuntimeException(exception.getCause());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	//Runs the operation for WARMUP_MILLIS without recording, then records every call for MEASURE_MILLIS (but never fewer than MIN_SAMPLES calls).
+	private static Result measure(Operation operation) throws IOException {
+		long deadline = System.nanoTime() + WARMUP_MILLIS * 1000000;
+		int sample = 0;
+		while(System.nanoTime() < deadline)
+			operation.run(sample++);
+		long[] latencies = new long[MAX_SAMPLES];
+		int samples = 0;
+		long start = System.nanoTime();
+		deadline = start + MEASURE_MILLIS * 1000000;
+		long now = start;
+		while(samples < MAX_SAMPLES && (now < deadline || samples < MIN_SAMPLES)) {
+			operation.run(sample++);
+			long end = System.nanoTime();
+			latencies[samples++] = end - now;
+			now = end;
+		}
+		return new Result(operation.name, latencies, samples, now - start);
+	}
+
+	private static void publish(List<Result> results, String label, int records, File out) throws IOException {
+		boolean header = !out.exists() || out.length() == 0;
+		try(PrintWriter writer = new PrintWriter(new FileWriter(out, true))) {
+			if(header)
+				writer.println("label,records,operation,ops_per_sec,mean_us,p50_us,p99_us,p999_us,samples");
+			for(Result result : results)
+				writer.printf("%s,%d,%s,%.3f,%.3f,%.3f,%.3f,%.3f,%d%n", label, records, result.operation, result.opsPerSecond,
+						result.meanMicros, result.p50Micros, result.p99Micros, result.p999Micros, result.samples);
+		}
+		System.out.println("Results for " + records + " enrollments appended to " + out + ".");
+	}
+
+	//Prints every (records, operation) found in both files, with the candidate's throughput and p99 latency relative to the baseline's.
+	private static void compare(File baseline, File candidate) throws IOException {
+		Map<String,String[]> before = readResults(baseline),
+							 after = readResults(candidate);
+		System.out.printf("%-10s %-32s %14s %14s %8s %12s %12s %8s%n", "records", "operation", "base ops/s", "new ops/s", "change", "base p99", "new p99", "change");
+		for(Map.Entry<String,String[]> entry : after.entrySet()) {
+			String[] old = before.get(entry.getKey()),
+					 now = entry.getValue();
+			if(old == null) continue;
+			double oldOps = Double.parseDouble(old[3]), newOps = Double.parseDouble(now[3]),
+				   oldP99 = Double.parseDouble(old[6]), newP99 = Double.parseDouble(now[6]);
+			System.out.printf("%-10s %-32s %14.1f %14.1f %7.2fx %12.1f %12.1f %7.2fx%n", now[1], now[2], oldOps, newOps, newOps / oldOps, oldP99, newP99, oldP99 / newP99);
+		}
+	}
+
+	//Reads a results file, keeping the last row of each (records, operation); that is the latest run when one file holds several.
+	private static Map<String,String[]> readResults(File file) throws IOException {
+		Map<String,String[]> results = new LinkedHashMap<>();
+		try(BufferedReader reader = new BufferedReader(new FileReader(file))) {
+			String line = reader.readLine();  //header
+			while((line = reader.readLine()) != null) {
+				String[] fields = line.split(",");
+				if(fields.length == 9)
+					results.put(fields[1] + "," + fields[2], fields);
+			}
+		}
+		return results;
+	}
+}
@@ -0,0 +1,385 @@
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/*
+ * StudentInfoServer serves the operations of a StudentInfoStore as an HTTP/JSON API, for departments that query rosters and grades without the
+ * Swing window. It uses the JDK's own HTTP server, so it needs nothing beyond the JDK.
+ *      -Each request runs on a virtual thread of its own when the JDK has them (21 and later); an older JDK runs requests on a fixed pool of
+ *       platform threads instead. The store is thread-safe, so requests run in parallel either way.
+ *      -Connections are kept alive between requests: every response carries a Content-Length, and the server keeps up to MAX_IDLE_CONNECTIONS
+ *       idle connections open, so thousands of clients can hold a connection each without reconnecting for every request.
+ *      -Request threads are never interrupted, not even on shutdown: an interrupt during I/O would close the store's files.
+ *      -The store's operation metrics are served over JMX, and printed every --metrics-log seconds (0 for never).
+ *      -A Compactor clears the tombstones left by deletes out of the enroll segments in the background while the server runs.
+ *      -Errors are returned as {"error": message}: 400 for a request the store rejects, 404 for a record or enrollment that does not exist,
+ *       409 for an enrollment or grade that already exists, and 500 for a failed read or write.
+ *
+ * Routes (years and semesters are written as in the store, e.g. /reports/2024/Fall/1003):
+ *      POST /students                   {"name", "address", "age", "year"}               -> 201 {"id"}
+ *      GET  /students/{id}                                                                -> the student
+ *      PUT  /students/{id}              {"name", "address", "age", "year"}               -> the student
+ *      DELETE /students/{id}                                                              -> the student deleted; 409 while enrolled in a course
+ *      POST /courses                    {"title", "description", "room", "major"}        -> 201 {"id"}
+ *      GET  /courses/{id}                                                                 -> the course
+ *      PUT  /courses/{id}               {"title", "description", "room", "major"}        -> the course
+ *      DELETE /courses/{id}                                                               -> the course deleted; 409 while it has enrollments
+ *      POST /enrollments                {"year", "semester", "courseID", "studentID"}    -> 201 the enrollment
+ *      GET  /enrollments/{year}/{semester}/{courseID}/{studentID}                         -> the enrollment
+ *      DELETE /enrollments/{year}/{semester}/{courseID}/{studentID}                       -> the enrollment dropped
+ *      GET  /grades/{year}/{semester}/{courseID}/{studentID}                              -> {"grade"}, null while in progress
+ *      PUT  /grades/{year}/{semester}/{courseID}/{studentID}   {"grade"}                  -> {"grade"}
+ *      GET  /reports/{year}/{semester}/{courseID}                                         -> {"rows": [{"studentID", "name", "grade"}]}
+ *      GET  /terms/{year}/{semester}/courses                                              -> {"courseIDs": [...]}
+ *
+ * Usage: java StudentInfoServer [--dir directory] [--port 8080] [--mmap] [--threads 64] [--metrics-log 60]
+ */
+public class StudentInfoServer {
+	private static final int MAX_IDLE_CONNECTIONS = 10000,
+							 BACKLOG = 4096, //Connections the OS queues while the server accepts others.
+							 MAX_BODY_SIZE = 64 * 1024; //Request bodies are small, flat objects; anything larger is refused.
+	private final StudentInfoStore store;
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final Compactor compactor;
+
+	public static void main(String[] args) throws IOException {
+		File directory = new File(".");
+		int port = 8080,
+			threads = 64,
+			metricsLogSeconds = 60;
+		boolean mapEnrollFile = false;
+		for(int arg = 0; arg < args.length; arg++) {
+			switch(args[arg]) {
+				case "--dir": directory = new File(args[++arg]); break;
+				case "--port": port = Integer.parseInt(args[++arg]); break;
+				case "--mmap": mapEnrollFile = true; break;
+				case "--threads": threads = Integer.parseInt(args[++arg]); break;
+				case "--metrics-log": metricsLogSeconds = Integer.parseInt(args[++arg]); break;
+				default: throw new IllegalArgumentException("Unknown argument: " + args[arg]);
+			}
+		}
+		StudentInfoStore store = new StudentInfoStore(directory, mapEnrollFile);
+		if(metricsLogSeconds > 0)
+			store.getMetrics().startLog(System.out, metricsLogSeconds);
+		final StudentInfoServer server = new StudentInfoServer(store, port, threads);
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() {
+				try {
+					server.stop();
+				} catch (IOException exception) {
+					exception.printStackTrace();
+				}
+			}
+		});
+		server.start();
+		System.out.println("Serving " + directory.getAbsolutePath() + " on port " + port + ".");
+	}
+
+	/*
+	 * Serves store on port once started. threads is the size of the thread pool used when the JDK has no virtual threads. The server owns the
+	 * store from then on, and closes it when stopped.
+	 */
+	public StudentInfoServer(StudentInfoStore store, int port, int threads) throws IOException {
+		this.store = store;
+		//The JDK's server reads its limits once, when its first server is created; a limit given on the command line is left as it is.
+		if(System.getProperty("sun.net.httpserver.maxIdleConnections") == null)
+			System.setProperty("sun.net.httpserver.maxIdleConnections", Integer.toString(MAX_IDLE_CONNECTIONS));
+		server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+		executor = requestExecutor(threads);
+		server.setExecutor(executor);
+		compactor = new Compactor(store);
+		server.createContext("/students", new JsonHandler() {
+			@Override
+			Response respond(String method, String[] path, HttpExchange exchange) throws IOException, RequestException {
+				return respondSC("Student", method, path, exchange);
+			}
+		});
+		server.createContext("/courses", new JsonHandler() {
+			@Override
+			Response respond(String method, String[] path, HttpExchange exchange) throws IOException, RequestException {
+				return respondSC("Course", method, path, exchange);
+			}
+		});
+		server.createContext("/enrollments", new JsonHandler() {
+			@Override
+			Response respond(String method, String[] path, HttpExchange exchange) throws IOException, RequestException {
+				if(path.length == 0) {
+					allow(method, "POST");
+					Map<String,String> body = body(exchange);
+					short year = Short.parseShort(field(body, "year"));
+					String semester = field(body, "semester");
+					int courseID = Integer.parseInt(field(body, "courseID")),
+						studentID = Integer.parseInt(field(body, "studentID"));
+					checkEnrollment(courseID, studentID);
+					if(!store.writeEnrollRecord(year, semester, courseID, studentID))
+						throw new RequestException(409, "The student is already enrolled in the course for " + semester + " " + year + ".");
+					return new Response(201, enrollment(new Enrollment(year, semester, courseID, studentID, "IP")));
+				}
+				allow(method, "GET", "DELETE");
+				checkLength(path, 4);
+				Enrollment enrollment = store.readEnrollment(Short.parseShort(path[0]), path[1], Integer.parseInt(path[2]), Integer.parseInt(path[3]));
+				if(enrollment == null) throw new RequestException(404, "No such enrollment.");
+				if(method.equals("DELETE") && !store.unenroll(enrollment.getYear(), enrollment.getSemester(), enrollment.getCourseID(), enrollment.getStudentID()))
+					throw new RequestException(404, "No such enrollment.");  //Dropped by another request since it was read.
+				return new Response(200, enrollment(enrollment));
+			}
+		});
+		server.createContext("/grades", new JsonHandler() {
+			@Override
+			Response respond(String method, String[] path, HttpExchange exchange) throws IOException, RequestException {
+				allow(method, "GET", "PUT");
+				checkLength(path, 4);
+				short year = Short.parseShort(path[0]);
+				int courseID = Integer.parseInt(path[2]),
+					studentID = Integer.parseInt(path[3]);
+				//viewAddGrade(...) cannot tell a missing enrollment from a grade, so the enrollment is looked up first.
+				if(store.readEnrollment(year, path[1], courseID, studentID) == null) throw new RequestException(404, "No such enrollment.");
+				String grade;
+				if(method.equals("GET"))
+					grade = store.viewAddGrade(year, path[1], courseID, studentID, "View", null);
+				else {
+					String newGrade = field(body(exchange), "grade");
+					if(newGrade.trim().equals("IP")) throw new IllegalArgumentException("A grade cannot be set back to in progress.");
+					grade = store.viewAddGrade(year, path[1], courseID, studentID, "Add", newGrade);
+					if(grade == null) throw new RequestException(409, "A grade has already been added.");
+				}
+				return new Response(200, new Json.Writer().beginObject().value("grade", grade).endObject());
+			}
+		});
+		server.createContext("/reports", new JsonHandler() {
+			@Override
+			Response respond(String method, String[] path, HttpExchange exchange) throws IOException, RequestException {
+				allow(method, "GET");
+				checkLength(path, 3);
+				List<ReportRow> rows = store.getReportDataFromEnrollFile(Short.parseShort(path[0]), path[1], Integer.parseInt(path[2]));
+				Json.Writer json = new Json.Writer().beginObject().beginArray("rows");
+				for(ReportRow row : rows)
+					json.beginObject().value("studentID", row.getStudentID()).value("name", row.getName()).value("grade", row.getGrade()).endObject();
+				return new Response(200, json.endArray().endObject());
+			}
+		});
+		server.createContext("/terms", new JsonHandler() {
+			@Override
+			Response respond(String method, String[] path, HttpExchange exchange) throws IOException, RequestException {
+				allow(method, "GET");
+				if(path.length != 3 || !path[2].equals("courses")) throw new RequestException(404, "No such resource.");
+				Json.Writer json = new Json.Writer().beginObject().beginArray("courseIDs");
+				for(int courseID : store.getCourseIDsFromEnrollFile(Short.parseShort(path[0]), path[1]))
+					json.value(courseID);
+				return new Response(200, json.endArray().endObject());
+			}
+		});
+	}
+
+	public void start() {
+		server.start();
+	}
+
+	/*
+	 * Stops accepting requests, lets the running ones finish, and closes the store. The executor is shut down, never shut down now: that would
+	 * interrupt requests in the middle of their I/O.
+	 */
+	public void stop() throws IOException {
+		server.stop(1);
+		executor.shutdown();
+		try {
+			executor.awaitTermination(30, TimeUnit.SECONDS);
+		} catch (InterruptedException exception) {
+			Thread.currentThread().interrupt();
+		} finally {
+			compactor.close();
+			store.close();
+		}
+	}
+
+	/*
+	 * Returns a virtual-thread-per-task executor on a JDK that has virtual threads. It is looked up by reflection, so the server still compiles
+	 * and runs on an older JDK, where requests share a fixed pool of daemon threads instead.
+	 */
+	private static ExecutorService requestExecutor(int threads) {
+		try {
+			Method virtualThreads = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) virtualThreads.invoke(null);
+		} catch (ReflectiveOperationException exception) {
+			return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+				private final AtomicInteger count = new AtomicInteger();
+				public Thread newThread(Runnable task) {
+					Thread thread = new Thread(task, "request-" + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+	}
+
+	//Serves /students and /courses, which differ only in their fields.
+	private Response respondSC(String fileType, String method, String[] path, HttpExchange exchange) throws IOException, RequestException {
+		if(path.length == 0) {
+			allow(method, "POST");
+			Map<String,String> body = body(exchange);
+			int ID = fileType.equals("Student") ? store.createStudent(student(0, body)) : store.createCourse(course(0, body));
+			return new Response(201, new Json.Writer().beginObject().value("id", ID).endObject());
+		}
+		allow(method, "GET", "PUT", "DELETE");
+		checkLength(path, 1);
+		int ID = Integer.parseInt(path[0]);
+		boolean exists = fileType.equals("Student") ? store.containsStudent(ID) : store.containsCourse(ID);
+		if(!exists) throw new RequestException(404, "No such " + fileType.toLowerCase() + ".");
+		if(method.equals("DELETE"))
+			return deleteSC(fileType, ID);
+		if(fileType.equals("Student")) {
+			if(method.equals("PUT"))
+				store.updateStudent(student(ID, body(exchange)));
+			return new Response(200, student(store.readStudent(ID)));
+		}
+		if(method.equals("PUT"))
+			store.updateCourse(course(ID, body(exchange)));
+		return new Response(200, course(store.readCourse(ID)));
+	}
+
+	//Deletes a student or course and answers with the record as it was. The store refuses to delete one that still has enrollments.
+	private Response deleteSC(String fileType, int ID) throws IOException, RequestException {
+		Json.Writer record = fileType.equals("Student") ? student(store.readStudent(ID)) : course(store.readCourse(ID));
+		boolean deleted;
+		try {
+			deleted = fileType.equals("Student") ? store.deleteStudent(ID) : store.deleteCourse(ID);
+		} catch (IllegalArgumentException exception) {
+			throw new RequestException(409, exception.getMessage());
+		}
+		if(!deleted) throw new RequestException(404, "No such " + fileType.toLowerCase() + ".");
+		return new Response(200, record);
+	}
+
+	private static Student student(int ID, Map<String,String> body) {
+		return new Student(ID, field(body, "name"), field(body, "address"), Short.parseShort(field(body, "age")), field(body, "year"));
+	}
+
+	private static Course course(int ID, Map<String,String> body) {
+		return new Course(ID, field(body, "title"), field(body, "description"), Short.parseShort(field(body, "room")), field(body, "major"));
+	}
+
+	private static Json.Writer student(Student student) {
+		return new Json.Writer().beginObject().value("id", student.getID()).value("name", student.getName()).value("address", student.getAddress())
+				.value("age", student.getAge()).value("year", student.getYear()).endObject();
+	}
+
+	private static Json.Writer course(Course course) {
+		return new Json.Writer().beginObject().value("id", course.getID()).value("title", course.getTitle()).value("description", course.getDescription())
+				.value("room", course.getRoom()).value("major", course.getMajor()).endObject();
+	}
+
+	private static Json.Writer enrollment(Enrollment enrollment) {
+		return new Json.Writer().beginObject().value("year", enrollment.getYear()).value("semester", enrollment.getSemester())
+				.value("courseID", enrollment.getCourseID()).value("studentID", enrollment.getStudentID()).value("grade", enrollment.getGrade()).endObject();
+	}
+
+	//The store only refuses IDs that have been deleted, as the Swing window checks them first; the server checks them the same way.
+	private void checkEnrollment(int courseID, int studentID) throws IOException, RequestException {
+		if(!store.containsCourse(courseID)) throw new RequestException(404, "No such course.");
+		if(!store.containsStudent(studentID)) throw new RequestException(404, "No such student.");
+	}
+
+	private static String field(Map<String,String> body, String name) {
+		String value = body.get(name);
+		if(value == null) throw new IllegalArgumentException("Missing field: " + name + ".");
+		return value;
+	}
+
+	private static void allow(String method, String... methods) throws RequestException {
+		for(String allowed : methods)
+			if(allowed.equals(method)) return;
+		throw new RequestException(405, "Method " + method + " is not allowed here.");
+	}
+
+	private static void checkLength(String[] path, int length) throws RequestException {
+		if(path.length != length) throw new RequestException(404, "No such resource.");
+	}
+
+	//Reads the request body, up to MAX_BODY_SIZE bytes, as a flat JSON object.
+	private static Map<String,String> body(HttpExchange exchange) throws IOException, RequestException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		try(InputStream in = exchange.getRequestBody()) {
+			int read;
+			while((read = in.read(buffer)) >= 0) {
+				body.write(buffer, 0, read);
+				if(body.size() > MAX_BODY_SIZE) throw new RequestException(413, "The request body is larger than " + MAX_BODY_SIZE + " bytes.");
+			}
+		}
+		return Json.parseObject(new String(body.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	private static class Response {
+		final int status;
+		final Json.Writer json;
+		Response(int status, Json.Writer json) {
+			this.status = status;
+			this.json = json;
+		}
+	}
+
+	//A request that cannot be served, with the HTTP status to answer it with.
+	private static class RequestException extends Exception {
+		private static final long serialVersionUID = 1L;
+		final int status;
+		RequestException(int status, String message) {
+			super(message);
+			this.status = status;
+		}
+	}
+
+	/*
+	 * JsonHandler answers every request of a context with a JSON response, turning the exceptions of respond(...) into error responses. The path
+	 * is passed split into its segments after the context, so /students/90001 reaches the /students handler as ["90001"].
+	 */
+	private static abstract class JsonHandler implements HttpHandler {
+		abstract Response respond(String method, String[] path, HttpExchange exchange) throws IOException, RequestException;
+
+		public void handle(HttpExchange exchange) throws IOException {
+			Response response;
+			try {
+				String path = exchange.getRequestURI().getPath().substring(exchange.getHttpContext().getPath().length());
+				if(!path.isEmpty() && !path.startsWith("/")) throw new RequestException(404, "No such resource."); //e.g. /studentsX
+				path = path.replaceAll("^/+|/+$", "");
+				response = respond(exchange.getRequestMethod(), path.isEmpty() ? new String[0] : path.split("/+"), exchange);
+			} catch (RequestException exception) {
+				response = error(exception.status, exception.getMessage());
+			} catch (IllegalArgumentException exception) {  //Includes NumberFormatException, for an ID or number that is not one.
+				response = error(400, exception.getMessage());
+			} catch (IOException exception) {
+				exception.printStackTrace();
+				response = error(500, exception.getMessage());
+			}
+			//Closing the request body drains whatever was not read, so the connection can be reused for the next request.
+			exchange.getRequestBody().close();
+			byte[] json = response.json.toString().getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+			exchange.sendResponseHeaders(response.status, json.length);
+			try(OutputStream out = exchange.getResponseBody()) {
+				out.write(json);
+			}
+		}
+
+		private static Response error(int status, String message) {
+			return new Response(status, new Json.Writer().beginObject().value("error", message == null ? "Error." : message).endObject());
+		}
+	}
+}
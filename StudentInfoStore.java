@@ -0,0 +1,1649 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+ * StudentInfoStore is the storage engine of the Student Information System. It owns the student, course and enrollment record files and
+ * everything built over them, and has no dependency on Swing, so it can be used from the UI, batch jobs, servers and benchmarks alike.
+ *      -The store is opened over a directory by its constructor, which opens (or creates) the record files in it, and is closed by close().
+ *      -The files are in the compact version 2 format described by RecordFormat; a directory of version 1 files is converted by StoreMigrator
+ *       when it is opened.
+ *      -Enrollments are partitioned by term: each year and semester has a segment file of its own, listed in the EnrollCatalog, and segments are
+ *       opened the first time their term is used. Enroll operations go to the segment of their term only, and whole terms can be archived,
+ *       restored or dropped without rewriting any other file.
+ *      -Student and Course records share a layout: an int ID, two text fields, a short and a coded choice (year level or major). Their IDs are
+ *       their record number in the file plus the OFFSET of their type, so a record is found by ID without any search.
+ *      -Deleting a record leaves a tombstone in its place, which reads and scans pass over. Student and course tombstones keep their slot, since
+ *       IDs are positions; enrollment tombstones are cleared out of a term's segment by compactTerm(...), which a Compactor runs in the background.
+ *      -Every record is encoded into a buffer and written with a single positional write; the create and enroll operations also come in batch
+ *       forms that append a whole list of records with one write.
+ *      -Writes are durable once they return. Each is first appended to the WriteAheadLog, and the log is forced with a group commit that covers
+ *       every write logged on any thread in the meantime; the data file is written after that, without forcing it. The data files are forced
+ *       by a checkpoint, which then empties the log, and a log left behind by a crash is replayed when the store is next opened.
+ *      -What the store keeps over the files is saved with the watermark it covers, so opening a store costs what was written since the last
+ *       checkpoint rather than a scan of every file: the enroll indexes and term summary catch up from the records past theirs, and the text
+ *       indexes, once built, are saved as snapshots by each checkpoint and loaded with the records past them and those the replay rewrote.
+ *      -A store is thread-safe, and its operations run in parallel wherever they do not touch the same records:
+ *          -All file I/O is positional, through each file's FileChannel, so no operation moves a file pointer another one depends on.
+ *          -Student and course records are guarded by StripedLocks: reads of a record share its stripe, and an update holds it exclusively, so a
+ *           read never sees a record half rewritten, nor caches a copy older than the file.
+ *          -Appends to a file are reserved and logged under its append lock, which is what makes ID generation and the duplicate check atomic.
+ *           The lock is released before the log is forced, so concurrent appends to one file share a group commit, and an AppendSequence only
+ *           lets reads see a new record once it and every record before it have been written.
+ *          -Adding a grade holds the stripe of its enrollment key, so two "Add"s of one grade cannot both succeed. A grade is a single byte, so
+ *           lookups read it without a lock.
+ *          -Enroll operations share the store's term lock, which archiving, restoring or dropping a term, unenrolling, deleting a student or
+ *           course and the switch to a compacted segment hold exclusively, and logged writes share the log lock, which a checkpoint holds
+ *           exclusively. Locks are taken in that order: term lock, log lock, then an append lock or stripe.
+ *      -Every operation is timed, and its reads and writes counted, by the store's StoreMetrics, which are registered as JMX MBeans.
+ *      -FileChannels are closed when a thread blocked in them is interrupted, so callers must cancel store operations with a ScanMonitor rather
+ *       than by interrupting the thread.
+ */
+public class StudentInfoStore implements Closeable {
+	public static final int TEXT_SIZE = 30, //The longest text, in characters, a record can hold. Text is stored in a fixed size slot, so all records have fixed length.
+							SC_RECORD_SIZE = 129, //int: 4 bytes + 2 * text: 122 bytes + short: 2 bytes + byte: 1 byte
+							ENROLL_RECORD_SIZE = 12, //short: 2 bytes + 2 * byte: 2 bytes + 2 * int: 8 bytes
+							HEADER_SIZE = RecordFormat.HEADER_SIZE; //Every record file starts with a header of this size.
+	public static final long DEFAULT_CACHE_BYTES = 16 * 1024 * 1024; //Per record type: roughly 50,000 students or courses with typical text.
+	public static final List<String> SEMESTERS = Collections.unmodifiableList(Arrays.asList("Spring", "Summer", "Fall", "Winter")),
+									 YEAR_LEVELS = Collections.unmodifiableList(Arrays.asList("Freshman", "Sophomore", "Junior", "Senior")),
+									 MAJORS = Collections.unmodifiableList(Arrays.asList("Engineering", "Informatics", "Social Sciences", "Physical Sciences")),
+									 GRADES = Collections.unmodifiableList(Arrays.asList("IP", "A", "B", "C", "D", "F", "W", "P")); //"IP" (in progress) is the grade of a new enrollment.
+	private static final Map<String,List<String>> CHOICES = new HashMap<String,List<String>>() { //The choices the last field of a student or course record is coded from.
+		private static final long serialVersionUID = 1L;
+		{ put("Student",YEAR_LEVELS); put("Course",MAJORS); }
+	};
+	private static final int LOCK_STRIPES = 256,
+							 MAX_SEARCH_CANDIDATES = 5000; //The most candidates a fuzzy search checks against their records.
+	private static final long CHECKPOINT_BYTES = 64 * 1024 * 1024; //The log is checkpointed once it grows past this size.
+	private static final Map<String,Integer> OFFSET = new HashMap<String,Integer>() { //These offsets are used to calculate student and course IDs.
+		private static final long serialVersionUID = 1L;
+		{ put("Student",90000); put("Course",1000); }  //Student and Course IDs respectively begin at these offsets when their respective files contain no records.
+	};
+	private final Map<String,RandomAccessFile> mapRecordToStream = new HashMap<>();
+	private final Map<String,IDAllocator> idAllocators = new HashMap<>(); //Hands out the IDs, and the slots, of each student/course file.
+	private final Map<String,AppendSequence> scAppends = new HashMap<>(); //How far each student/course file has been appended to and published.
+	private final Map<String,TextIndex> textIndexes = new HashMap<>(); //Full-text search over the text fields of each student/course file, built on first search or loaded from its snapshot.
+	private final StripedLocks recordLocks = new StripedLocks(LOCK_STRIPES), //Student and course records, by ID.
+							   enrollLocks = new StripedLocks(LOCK_STRIPES); //Enrollment grades, by EnrollKey hash.
+	private final ReentrantReadWriteLock termLock = new ReentrantReadWriteLock(); //Shared by enroll operations, exclusive while a term is archived, restored or dropped.
+	private final ReentrantReadWriteLock logLock = new ReentrantReadWriteLock(); //Shared by every logged write, exclusive while a checkpoint empties the log.
+	private final File directory;
+	private final boolean mapEnrollFile; //Whether segments are opened in memory-mapped scan mode.
+	private final EnrollCatalog catalog;
+	private final TermSummary summary; //The courses of each term and their enrollment counts, kept up to date by every enroll append.
+	private final Map<Integer,EnrollSegment> segments = new ConcurrentHashMap<>(); //The segments opened so far, by term.
+	private final RecordCache<Student> studentCache;
+	private final RecordCache<Course> courseCache;
+	private final WriteAheadLog log;
+	private final StoreMetrics metrics; //The latency and I/O of every operation, also registered with JMX.
+
+	public StudentInfoStore(File directory) throws IOException {
+		this(directory, false);
+	}
+
+	/*
+	 * The record files are opened as "rw", so if they do not already exist in the directory they are created, and if they do they are not overwritten.
+	 * A write-ahead log left behind by a crash is replayed first, and version 1 files are migrated to version 2, keeping the originals as backups.
+	 * If anything fails to open, whatever was already opened is closed again before the exception is thrown.
+	 */
+	public StudentInfoStore(File directory, boolean mapEnrollFile) throws IOException {
+		this(directory, mapEnrollFile, DEFAULT_CACHE_BYTES);
+	}
+
+	/*
+	 * cacheBytes bounds the estimated memory of each of the student and course caches, which keep decoded records that have been read, created
+	 * or updated one at a time, so repeated lookups of the same records do not go to disk. A cacheBytes of 0 disables both caches.
+	 */
+	public StudentInfoStore(File directory, boolean mapEnrollFile, long cacheBytes) throws IOException {
+		this.directory = directory;
+		this.mapEnrollFile = mapEnrollFile;
+		studentCache = new RecordCache<>(cacheBytes);
+		courseCache = new RecordCache<>(cacheBytes);
+		//The student and course records the replay rewrites, whose texts a text index snapshot may not have right.
+		final Map<String,RosterBitmap> replayed = new HashMap<>();
+		replayed.put("Student", new RosterBitmap());
+		replayed.put("Course", new RosterBitmap());
+		WriteAheadLog.replay(directory, new WriteAheadLog.ReplayListener() {
+			public void replayed(byte target, int term, long offset, int length) {
+				if(target == WriteAheadLog.ENROLL_SEGMENT || offset < HEADER_SIZE) return;
+				String fileType = target == WriteAheadLog.STUDENT_FILE ? "Student" : "Course";
+				for(long at = offset - (offset - HEADER_SIZE) % SC_RECORD_SIZE; at < offset + length; at += SC_RECORD_SIZE)
+					replayed.get(fileType).add(scRecordID(fileType, at));
+			}
+		});
+		StoreMigrator.migrate(directory, ScanMonitor.IGNORE_PROGRESS);
+		try {
+			mapRecordToStream.put("Student", new RandomAccessFile(new File(directory, "StudentFile.dat"), "rw"));
+			mapRecordToStream.put("Course", new RandomAccessFile(new File(directory, "CourseFile.dat"), "rw"));
+			RecordFormat.openFile(mapRecordToStream.get("Student"), SC_RECORD_SIZE, "StudentFile.dat");
+			RecordFormat.openFile(mapRecordToStream.get("Course"), SC_RECORD_SIZE, "CourseFile.dat");
+			for(String fileType : mapRecordToStream.keySet()) {
+				idAllocators.put(fileType, new IDAllocator(mapRecordToStream.get(fileType), SC_RECORD_SIZE, OFFSET.get(fileType)));
+				textIndexes.put(fileType, new TextIndex());
+				scAppends.put(fileType, new AppendSequence(HEADER_SIZE + idAllocators.get(fileType).slots() * SC_RECORD_SIZE));
+			}
+			catalog = new EnrollCatalog(directory);
+			summary = new TermSummary(directory, catalog);
+			log = new WriteAheadLog(directory);
+			for(String fileType : mapRecordToStream.keySet())
+				loadTextIndex(fileType, replayed.get(fileType));
+			metrics = new StoreMetrics(directory);
+		} catch (IOException exception) {
+			for(RandomAccessFile file : mapRecordToStream.values())
+				file.close();
+			throw exception;
+		}
+	}
+
+	public int createStudent(Student student) throws IOException {
+		return writeSCRecord("Student", student.getName(), student.getAddress(), student.getAge(), student.getYear());
+	}
+
+	public int createCourse(Course course) throws IOException {
+		return writeSCRecord("Course", course.getTitle(), course.getDescription(), course.getRoom(), course.getMajor());
+	}
+
+	/*
+	 * Appends every student with one write, and returns the ID of the first; the rest follow it in list order.
+	 * Batches are not cached, so a bulk load does not push the working set out of the cache.
+	 */
+	public int createStudents(List<Student> students) throws IOException {
+		ByteBuffer records = ByteBuffer.allocate(students.size() * SC_RECORD_SIZE);
+		for(Student student : students)
+			RecordFormat.putSCRecord(records, 0, student.getName(), student.getAddress(), student.getAge(), choiceCode("Student", student.getYear()));
+		return appendSCRecords("Student", records, false);
+	}
+
+	//Appends every course with one write, and returns the ID of the first; the rest follow it in list order. Like students, batches are not cached.
+	public int createCourses(List<Course> courses) throws IOException {
+		ByteBuffer records = ByteBuffer.allocate(courses.size() * SC_RECORD_SIZE);
+		for(Course course : courses)
+			RecordFormat.putSCRecord(records, 0, course.getTitle(), course.getDescription(), course.getRoom(), choiceCode("Course", course.getMajor()));
+		return appendSCRecords("Course", records, false);
+	}
+
+	//A deleted student or course is not contained. The check does not cache the record, so checking every row of an import leaves the cache alone.
+	public boolean containsStudent(int studentID) throws IOException {
+		return scRecordExists("Student", studentID);
+	}
+
+	public boolean containsCourse(int courseID) throws IOException {
+		return scRecordExists("Course", courseID);
+	}
+
+	//Whether a record exists: a cached record does, and otherwise its slot is read under the record's lock, but not decoded or cached.
+	private boolean scRecordExists(String fileType, int recordID) throws IOException {
+		if(fileType.equals("Student") ? studentCache.peek(recordID) != null : courseCache.peek(recordID) != null) return true;
+		Lock lock = recordLocks.forKey(recordID).readLock();
+		lock.lock();
+		try {
+			return readSCRecord(fileType, recordID) != null;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private boolean containsSCRecord(String fileType, int recordID) throws IOException {
+		long record = recordID - OFFSET.get(fileType);
+		return record >= 0 && scRecordOffset(fileType, recordID) < scAppends.get(fileType).end();
+	}
+
+	//Returns the student with the given ID, or null if there is no such student.
+	public Student readStudent(int studentID) throws IOException {
+		StoreMetrics.Timer timer = metrics.start(StoreMetrics.Operation.READ_RECORD);
+		try {
+			Student student = studentCache.get(studentID);
+			if(student != null) return student;
+			Lock lock = recordLocks.forKey(studentID).readLock();
+			lock.lock();
+			try {
+				ByteBuffer record = readSCRecord("Student", studentID);
+				if(record == null) return null;
+				student = decodeStudent(studentID, record);
+				cacheStudent(student);
+				return student;
+			} finally {
+				lock.unlock();
+			}
+		} finally {
+			timer.stop();
+		}
+	}
+
+	//Returns the course with the given ID, or null if there is no such course.
+	public Course readCourse(int courseID) throws IOException {
+		StoreMetrics.Timer timer = metrics.start(StoreMetrics.Operation.READ_RECORD);
+		try {
+			Course course = courseCache.get(courseID);
+			if(course != null) return course;
+			Lock lock = recordLocks.forKey(courseID).readLock();
+			lock.lock();
+			try {
+				ByteBuffer record = readSCRecord("Course", courseID);
+				if(record == null) return null;
+				course = decodeCourse(courseID, record);
+				cacheCourse(course);
+				return course;
+			} finally {
+				lock.unlock();
+			}
+		} finally {
+			timer.stop();
+		}
+	}
+
+	/*
+	 * Updates are written through: the record is logged and written first, and the cache only replaces its copy once that has succeeded. All
+	 * of it happens under the record's lock, so a concurrent read sees the record either before or after the update, in the file and the cache alike.
+	 */
+	public void updateStudent(Student student) throws IOException {
+		StoreMetrics.Timer timer = metrics.start(StoreMetrics.Operation.UPDATE_RECORD);
+		try {
+			ByteBuffer record = ByteBuffer.allocate(SC_RECORD_SIZE);
+			RecordFormat.putSCRecord(record, student.getID(), student.getName(), student.getAddress(), student.getAge(), choiceCode("Student", student.getYear()));
+			Lock logShared = logLock.readLock();
+			logShared.lock();
+			try {
+				Lock lock = recordLocks.forKey(student.getID()).writeLock();
+				lock.lock();
+				try {
+					String[] oldTexts = indexedTexts("Student", student.getID());
+					updateSCRecord("Student", student.getID(), record);
+					cacheStudent(student);
+					reindexTexts("Student", student.getID(), oldTexts, student.getName(), student.getAddress());
+				} finally {
+					lock.unlock();
+				}
+			} finally {
+				logShared.unlock();
+			}
+			checkpointIfDue();
+		} finally {
+			timer.stop();
+		}
+	}
+
+	public void updateCourse(Course course) throws IOException {
+		StoreMetrics.Timer timer = metrics.start(StoreMetrics.Operation.UPDATE_RECORD);
+		try {
+			ByteBuffer record = ByteBuffer.allocate(SC_RECORD_SIZE);
+			RecordFormat.putSCRecord(record, course.getID(), course.getTitle(), course.getDescription(), course.getRoom(), choiceCode("Course", course.getMajor()));
+			Lock logShared = logLock.readLock();
+			logShared.lock();
+			try {
+				Lock lock = recordLocks.forKey(course.getID()).writeLock();
+				lock.lock();
+				try {
+					String[] oldTexts = indexedTexts("Course", course.getID());
+					updateSCRecord("Course", course.getID(), record);
+					cacheCourse(course);
+					reindexTexts("Course", course.getID(), oldTexts, course.getTitle(), course.getDescription());
+				} finally {
+					lock.unlock();
+				}
+			} finally {
+				logShared.unlock();
+			}
+			checkpointIfDue();
+		} finally {
+			timer.stop();
+		}
+	}
+
+	/*
+	 * deleteStudent(...) and deleteCourse(...) delete a student or course, returning false if there is no such record (or it is already deleted).
+	 * IDs are positions in the file, so the record is not removed: it is overwritten, logged like an update, with a tombstone that keeps the ID
+	 * but clears the text, and every read and scan passes over it from then on. Its ID is never handed out again.
+	 * IllegalArgumentException is thrown if the student or course still has enrollments in any term, which have to be unenrolled first. For a
+	 * course the term summary tells; for a student every term's segment is opened, if it is not open already, to look at its rosters.
+	 * The term lock is held exclusively from the check to the tombstone, and enrolling checks for deleted records under it (see
+	 * checkEnrollments(...)), so no enrollment can be written for the record in between.
+	 */
+	public boolean deleteStudent(int studentID) throws IOException {
+		StoreMetrics.Timer timer = metrics.start(StoreMetrics.Operation.DELETE_RECORD);
+		try {
+			boolean deleted;
+			termLock.writeLock().lock();
+			try {
+				for(int term : catalog.terms()) {
+					if(segment(EnrollCatalog.year(term), EnrollCatalog.semester(term), false).index.hasStudent(studentID))
+						throw new IllegalArgumentException("The student is enrolled in " + SEMESTERS.get(EnrollCatalog.semester(term)) + " " + EnrollCatalog.year(term) + ".");
+				}
+				deleted = deleteSCRecord("Student", studentID);
+			} finally {
+				termLock.writeLock().unlock();
+			}
+			checkpointIfDue();
+			return deleted;
+		} finally {
+			timer.stop();
+		}
+	}
+
+	public boolean deleteCourse(int courseID) throws IOException {
+		StoreMetrics.Timer timer = metrics.start(StoreMetrics.Operation.DELETE_RECORD);
+		try {
+			boolean deleted;
+			termLock.writeLock().lock();
+			try {
+				for(int term : catalog.terms()) {
+					if(summary.count(term, courseID) > 0)
+						throw new IllegalArgumentException("The course has enrollments in " + SEMESTERS.get(EnrollCatalog.semester(term)) + " " + EnrollCatalog.year(term) + ".");
+				}
+				deleted = deleteSCRecord("Course", courseID);
+			} finally {
+				termLock.writeLock().unlock();
+			}
+			checkpointIfDue();
+			return deleted;
+		} finally {
+			timer.stop();
+		}
+	}
+
+	/*
+	 * Writes the tombstone and drops the cached record under the record's lock, so no read caches the record again, then takes its text out of
+	 * the text index. Called with the term lock held exclusively; the caller checkpoints, if one is due, once it has let go of it.
+	 */
+	private boolean deleteSCRecord(String fileType, int recordID) throws IOException {
+		ByteBuffer tombstone = ByteBuffer.allocate(SC_RECORD_SIZE);
+		RecordFormat.putSCRecord(tombstone, recordID, "", "", (short) 0, RecordFormat.DELETED);
+		Lock logShared = logLock.readLock();
+		logShared.lock();
+		try {
+			Lock lock = recordLocks.forKey(recordID).writeLock();
+			lock.lock();
+			try {
+				ByteBuffer record = readSCRecord(fileType, recordID);
+				if(record == null) return false;
+				String[] oldTexts = {RecordFormat.getText(record), RecordFormat.getText(record)};
+				updateSCRecord(fileType, recordID, tombstone);
+				if(fileType.equals("Student"))
+					studentCache.remove(recordID);
+				else
+					courseCache.remove(recordID);
+				reindexTexts(fileType, recordID, oldTexts, "", "");
+			} finally {
+				lock.unlock();
+			}
+		} finally {
+			logShared.unlock();
+		}
+		return true;
+	}
+
+	//Returns the latency and I/O statistics of every operation on the store.
+	public StoreMetrics getMetrics() {
+		return metrics;
+	}
+
+	//Returns the hit and miss statistics of the student ("Student") or course ("Course") cache.
+	public CacheStats getCacheStats(String fileType) {
+		if(fileType.equals("Student")) return studentCache.stats();
+		if(fileType.equals("Course")) return courseCache.stats();
+		throw new IllegalArgumentException("Invalid file type.");
+	}
+
+	/*
+	 * Records are cached as a read would decode them, with their text trimmed, so a record that was just written is returned exactly as it would be
+	 * after being evicted and read back.
+	 */
+	private void cacheStudent(Student student) {
+		Student cached = new Student(student.getID(), student.getName().trim(), student.getAddress().trim(), student.getAge(), student.getYear().trim());
+		studentCache.put(cached.getID(), cached, RecordCache.estimateSize(cached.getName(), cached.getAddress(), cached.getYear()));
+	}
+
+	private void cacheCourse(Course course) {
+		Course cached = new Course(course.getID(), course.getTitle().trim(), course.getDescription().trim(), course.getRoom(), course.getMajor().trim());
+		courseCache.put(cached.getID(), cached, RecordCache.estimateSize(cached.getTitle(), cached.getDescription(), cached.getMajor()));
+	}
+
+	//Decodes a student record positioned just past its ID, at its first text field.
+	private static Student decodeStudent(int studentID, ByteBuffer record) throws IOException {
+		String name = RecordFormat.getText(record),
+			   address = RecordFormat.getText(record);
+		short age = record.getShort();
+		return new Student(studentID, name, address, age, RecordFormat.choice(YEAR_LEVELS, record.get()));
+	}
+
+	private static Course decodeCourse(int courseID, ByteBuffer record) throws IOException {
+		String title = RecordFormat.getText(record),
+			   description = RecordFormat.getText(record);
+		short room = record.getShort();
+		return new Course(courseID, title, description, room, RecordFormat.choice(MAJORS, record.get()));
+	}
+
+	/*
+	 * writeSCRecord(...) writes a student/course record to its respective file (depending on the fileType passed to the method) and returns the ID generated.
+	 * Student/course records are functionally identical except for the record they are written in.
+	 * The ID is generated by counting the records in the respective student/course file and adding the respective student or course offset.
+	 */
+	private int writeSCRecord(String fileType, String firstText, String secondText, short number, String thirdText) throws IOException {
+		ByteBuffer record = ByteBuffer.allocate(SC_RECORD_SIZE);
+		RecordFormat.putSCRecord(record, 0, firstText, secondText, number, choiceCode(fileType, thirdText));
+		return appendSCRecords(fileType, record, true);
+	}
+
+	/*
+	 * appendSCRecords(...) appends encoded student/course records to their file and returns the ID of the first. The records are encoded, and so
+	 * validated, before any IDs are allocated; their IDs are filled in once they are.
+	 *      -The IDs come from the file's IDAllocator as the records are logged, so IDs are handed out in the order the log holds them, with no
+	 *       lock of the store's own. Appends on other threads join the same group commit when the log is forced.
+	 *      -The records are then written, mostly into slots the allocator has already added to the file, and published in ID order; a read
+	 *       only finds a record once it is published.
+	 *      -A single record is cached before it is published, so no read or update of it can get to the cache first.
+	 */
+	private int appendSCRecords(final String fileType, ByteBuffer records, boolean cache) throws IOException {
+		StoreMetrics.Timer timer = metrics.start(StoreMetrics.Operation.CREATE_RECORDS);
+		try {
+			final int count = records.position() / SC_RECORD_SIZE;
+			int firstID;
+			AppendSequence appends = scAppends.get(fileType);
+			final IDAllocator allocator = idAllocators.get(fileType);
+			Lock logShared = logLock.readLock();
+			logShared.lock();
+			try {
+				long offset,
+					 logged;
+				ByteBuffer entry = records.duplicate();
+				entry.flip();
+				try {
+					logged = log.append(logTarget(fileType), 0, new WriteAheadLog.Placement() {
+						public long place(ByteBuffer data) throws IOException {
+							int allocated = allocator.allocate(count);
+							for(int index = 0; index < count; index++)
+								data.putInt(index * SC_RECORD_SIZE, allocated + index);
+							return scRecordOffset(fileType, allocated);
+						}
+					}, entry);
+				} catch (IOException exception) {
+					appends.fail(exception);
+					throw exception;
+				}
+				offset = scRecordOffset(fileType, records.getInt(0));
+				try {
+					log.sync(logged);
+					writeAt(mapRecordToStream.get(fileType), records, offset);
+					if(cache) {
+						records.position(4);
+						if(fileType.equals("Student"))
+							cacheStudent(decodeStudent(scRecordID(fileType, offset), records));
+						else
+							cacheCourse(decodeCourse(scRecordID(fileType, offset), records));
+					}
+					appends.publish(offset, offset + (long) count * SC_RECORD_SIZE);
+				} catch (IOException exception) {
+					appends.fail(exception);
+					throw exception;
+				}
+				//Checked only once published: a search that starts building the index after this sees the records in the file.
+				TextIndex textIndex = textIndexes.get(fileType);
+				if(textIndex.isWanted()) {
+					for(int index = 0; index < count; index++) {
+						records.position(index * SC_RECORD_SIZE);
+						int ID = records.getInt();
+						textIndex.add(ID, RecordFormat.getText(records), RecordFormat.getText(records));
+					}
+				}
+				firstID = scRecordID(fileType, offset);
+			} finally {
+				logShared.unlock();
+			}
+			checkpointIfDue();
+			return firstID;
+		} finally {
+			timer.stop();
+		}
+	}
+
+	//The ID of the student/course record at offset in its file.
+	private static int scRecordID(String fileType, long offset) {
+		return (int) ((offset - HEADER_SIZE) / SC_RECORD_SIZE) + OFFSET.get(fileType);
+	}
+
+	private static byte logTarget(String fileType) {
+		return fileType.equals("Student") ? WriteAheadLog.STUDENT_FILE : WriteAheadLog.COURSE_FILE;
+	}
+
+	private static long scRecordOffset(String fileType, int recordID) {
+		return HEADER_SIZE + (long) (recordID - OFFSET.get(fileType)) * SC_RECORD_SIZE;
+	}
+
+	private static byte choiceCode(String fileType, String choice) {
+		return RecordFormat.code(CHOICES.get(fileType), choice.trim(), fileType.equals("Student") ? "year level" : "major");
+	}
+
+	/*
+	 * Whether the student/course record at the buffer's position, read from offset, exists: it is not a tombstone, and it holds the ID of its
+	 * position. A slot whose append failed after its ID was handed out is never written, holds an ID of 0, and is left empty for good once
+	 * later appends follow it.
+	 */
+	private static boolean isLiveSCRecord(String fileType, ByteBuffer record, long offset) {
+		return record.getInt(record.position()) == scRecordID(fileType, offset) && record.get(record.position() + SC_RECORD_SIZE - 1) != RecordFormat.DELETED;
+	}
+
+	/*
+	 * readSCRecord(...) decodes the recordID passed to it into a byte position in the record, reversing the process that originally created the ID.
+	 * 		If the record does not exist (the recordID is either under or over the records in the file), null is returned. A record that is
+	 * 		still being appended does not exist yet.
+	 * 		A deleted record (a tombstone) does not exist either, nor does an empty slot (see isLiveSCRecord(...)).
+	 * 		otherwise, the record is returned positioned just past its ID, at the first text field.
+	 */
+	private ByteBuffer readSCRecord(String fileType, int recordID) throws IOException {
+		if(!containsSCRecord(fileType, recordID)) return null;
+		ByteBuffer record = RecordReader.readRecordAt(mapRecordToStream.get(fileType), scRecordOffset(fileType, recordID), SC_RECORD_SIZE);
+		if(!isLiveSCRecord(fileType, record, scRecordOffset(fileType, recordID))) return null;
+		record.getInt();
+		return record;
+	}
+
+	/*
+	 * The existing fields in the record are overwritten, leaving its ID as is.
+	 * The record must already exist, and not be deleted; the UI only enables updates after finding the record with a read. Called with the
+	 * record's lock held, so it cannot be deleted in between.
+	 */
+	private void updateSCRecord(String fileType, int recordID, ByteBuffer record) throws IOException {
+		if(readSCRecord(fileType, recordID) == null) throw new IllegalArgumentException("No such " + fileType.toLowerCase() + ".");
+		writeLogged(logTarget(fileType), 0, mapRecordToStream.get(fileType), record, scRecordOffset(fileType, recordID));
+	}
+
+	/*
+	 * Returns the students whose name and address match every word of query, at most limit of them: as prefixes of their words, or, if fuzzy,
+	 * within a typo or two of them (see TextIndex). Fuzzy matches come closest first; otherwise students come in ID order.
+	 * The text index is built by the first search of each file type, which scans the file once; it is kept up to date from then on.
+	 */
+	public List<Student> searchStudents(String query, boolean fuzzy, int limit) throws IOException {
+		List<Student> students = new ArrayList<>();
+		for(int studentID : searchSCRecords("Student", query, fuzzy, limit)) {
+			Student student = readStudent(studentID);
+			if(student != null)  //Deleted since it matched.
+				students.add(student);
+		}
+		return students;
+	}
+
+	//Returns the courses whose title and description match every word of query, as searchStudents(...) does.
+	public List<Course> searchCourses(String query, boolean fuzzy, int limit) throws IOException {
+		List<Course> courses = new ArrayList<>();
+		for(int courseID : searchSCRecords("Course", query, fuzzy, limit)) {
+			Course course = readCourse(courseID);
+			if(course != null)
+				courses.add(course);
+		}
+		return courses;
+	}
+
+	/*
+	 * The index only narrows the search down to candidates; each candidate is then read, through the cache, and checked against its text. A
+	 * fuzzy query checks at most MAX_SEARCH_CANDIDATES of them, those sharing the most trigrams with the query first, so a vague query stays fast.
+	 */
+	private List<Integer> searchSCRecords(final String fileType, String query, boolean fuzzy, int limit) throws IOException {
+		StoreMetrics.Timer timer = metrics.start(StoreMetrics.Operation.SEARCH_RECORDS);
+		try {
+			TextIndex textIndex = textIndexes.get(fileType);
+			textIndex.build(new TextIndex.Records() {
+				public void forEach(TextIndex index) throws IOException {
+					indexSCRecords(fileType, index, HEADER_SIZE, scAppends.get(fileType).end());
+				}
+			});
+			List<Integer> candidates = textIndex.candidates(query, fuzzy);
+			if(fuzzy && candidates.size() > MAX_SEARCH_CANDIDATES)
+				candidates = candidates.subList(0, MAX_SEARCH_CANDIDATES);
+			final Map<Integer,Integer> edits = new HashMap<>();
+			List<Integer> matches = new ArrayList<>();
+			for(int ID : candidates) {
+				String[] texts = readTexts(fileType, ID);
+				int missed = texts == null ? -1 : TextIndex.matches(query, fuzzy, texts);
+				if(missed < 0) continue;
+				edits.put(ID, missed);
+				matches.add(ID);
+				if(!fuzzy && matches.size() == limit) break;
+			}
+			if(fuzzy) {
+				matches.sort(new Comparator<Integer>() {
+					public int compare(Integer first, Integer second) {
+						int byEdits = Integer.compare(edits.get(first), edits.get(second));
+						return byEdits != 0 ? byEdits : Integer.compare(first, second);
+					}
+				});
+			}
+			return matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+		} finally {
+			timer.stop();
+		}
+	}
+
+	//Adds every record that exists, from start to end in the file, to the text index.
+	private void indexSCRecords(String fileType, TextIndex textIndex, long start, long end) throws IOException {
+		RecordReader reader = new RecordReader(mapRecordToStream.get(fileType), SC_RECORD_SIZE, start, end, ScanMonitor.IGNORE_PROGRESS);
+		ByteBuffer record;
+		while((record = reader.next()) != null) {
+			if(!isLiveSCRecord(fileType, record, reader.offset())) continue;
+			int ID = record.getInt();
+			textIndex.add(ID, RecordFormat.getText(record), RecordFormat.getText(record));
+		}
+	}
+
+	private File textIndexFile(String fileType) {
+		return new File(directory, fileType + TextIndex.FILE_SUFFIX);
+	}
+
+	/*
+	 * Loads the text index of a file type from its snapshot, if it has one that can be used, and brings it up to date, so a store that has
+	 * searched before opens with its index built, at the cost of what was written since the last checkpoint rather than of a scan of the
+	 * whole file: the records the log replay rewrote below the snapshot's watermark are indexed again, and the records past it are added. The
+	 * snapshot is then saved again at once, since the log that told which records to index again is gone. A snapshot that cannot be used is
+	 * deleted, so a stale one is never loaded later; the index is built on first search instead.
+	 */
+	private void loadTextIndex(String fileType, RosterBitmap replayed) throws IOException {
+		TextIndex textIndex = textIndexes.get(fileType);
+		File snapshot = textIndexFile(fileType);
+		long slots = (scAppends.get(fileType).end() - HEADER_SIZE) / SC_RECORD_SIZE,
+			 watermark = textIndex.load(snapshot, slots);
+		if(watermark < 0) {
+			Files.deleteIfExists(snapshot.toPath());
+			return;
+		}
+		RosterBitmap rewritten = new RosterBitmap();
+		for(int ID : replayed.toArray()) {
+			if(ID - OFFSET.get(fileType) < watermark)
+				rewritten.add(ID);
+		}
+		textIndex.removeAll(rewritten);
+		for(int ID : rewritten.toArray()) {
+			ByteBuffer record = readSCRecord(fileType, ID);
+			if(record != null)
+				textIndex.add(ID, RecordFormat.getText(record), RecordFormat.getText(record));
+		}
+		indexSCRecords(fileType, textIndex, HEADER_SIZE + watermark * SC_RECORD_SIZE, scAppends.get(fileType).end());
+		textIndex.save(snapshot, slots);
+	}
+
+	//Returns the indexed texts of a record as they are now, or null if the text index is not wanted yet; the caller holds the record's lock.
+	private String[] indexedTexts(String fileType, int recordID) throws IOException {
+		if(!textIndexes.get(fileType).isWanted()) return null;
+		ByteBuffer record = readSCRecord(fileType, recordID);
+		return record == null ? null : new String[] {RecordFormat.getText(record), RecordFormat.getText(record)};
+	}
+
+	//Returns the indexed texts of a record, read through the cache, or null if there is no such record.
+	private String[] readTexts(String fileType, int recordID) throws IOException {
+		if(fileType.equals("Student")) {
+			Student student = readStudent(recordID);
+			return student == null ? null : new String[] {student.getName(), student.getAddress()};
+		}
+		Course course = readCourse(recordID);
+		return course == null ? null : new String[] {course.getTitle(), course.getDescription()};
+	}
+
+	/*
+	 * Reindexes a record after an update, if the text index is wanted. oldTexts is null if it was not wanted when the update began; the new
+	 * texts are then added alone, and any trigrams left over from the old ones only cost the search a candidate that fails its check.
+	 */
+	private void reindexTexts(String fileType, int recordID, String[] oldTexts, String... newTexts) {
+		TextIndex textIndex = textIndexes.get(fileType);
+		if(!textIndex.isWanted()) return;
+		if(oldTexts == null)
+			textIndex.add(recordID, newTexts);
+		else
+			textIndex.update(recordID, oldTexts, newTexts);
+	}
+
+	//Returns the IDs of every student ("Student") or course ("Course") record that exists, in ID order.
+	public List<Integer> getIDsFromSCFile(String fileType) throws IOException {
+		return getIDsFromSCFile(fileType, ScanMonitor.IGNORE_PROGRESS);
+	}
+
+	public List<Integer> getIDsFromSCFile(String fileType, ScanMonitor monitor) throws IOException {
+		StoreMetrics.Timer timer = metrics.start(StoreMetrics.Operation.LIST_RECORD_IDS);
+		try {
+			if(!OFFSET.containsKey(fileType)) throw new IllegalArgumentException("Invalid file type.");
+			List<Integer> IDList = new ArrayList<>();
+			RecordReader reader = new RecordReader(mapRecordToStream.get(fileType), SC_RECORD_SIZE, HEADER_SIZE, scAppends.get(fileType).end(), monitor);
+			ByteBuffer record;
+			while((record = reader.next()) != null) {
+				if(isLiveSCRecord(fileType, record, reader.offset()))
+					IDList.add(record.getInt());
+			}
+
+			return IDList;
+		} finally {
+			timer.stop();
+		}
+	}
+
+	/*
+	 * writeEnrollRecord(...) enrolls a student in a course for a year and semester:
+	 *      -returns false if the enroll record, with exact year, semester, student ID and courseID already exists
+	 *      -returns true if the enroll record does not already exist, ---writing to the enroll record file.---
+	 */
+	public boolean writeEnrollRecord(short year, String semester, int courseID, int studentID) throws IOException {
+		return writeEnrollRecords(Collections.singletonList(new Enrollment(year, semester, courseID, studentID, "IP")))[0];
+	}
+
+	/*
+	 * writeEnrollRecords(...) is the batch form of writeEnrollRecord(...). Each enrollment is checked against the index and against the enrollments
+	 * before it in the list, and the new ones are appended with one write to the enroll file and one to the index. Enrollments keep their grade.
+	 * The returned array holds, for each enrollment in the list, whether it was written (true) or already existed (false).
+	 * The caller checks that the courses and students exist; IllegalArgumentException is thrown, with nothing written, if any has been deleted.
+	 */
+	public boolean[] writeEnrollRecords(List<Enrollment> enrollments) throws IOException {
+		return writeEnrollRecords(enrollments, false, null);
+	}
+
+	/*
+	 * Like writeEnrollRecords(...) above, but every course and student must exist, and an enrollment whose course or student does not is
+	 * refused alone instead of failing the batch: it is not written, and refusals, which has a slot per enrollment, gets the reason in its slot.
+	 * The slots of the other enrollments are left null, so an enrollment that is not written and has no reason already existed. This is the
+	 * only check a bulk import needs, since it is made under the term lock.
+	 */
+	public boolean[] writeEnrollRecords(List<Enrollment> enrollments, String[] refusals) throws IOException {
+		return writeEnrollRecords(enrollments, true, refusals);
+	}
+
+	//allMustExist and refusals are passed on to checkEnrollments(...).
+	private boolean[] writeEnrollRecords(List<Enrollment> enrollments, boolean allMustExist, String[] refusals) throws IOException {
+		StoreMetrics.Timer timer = metrics.start(StoreMetrics.Operation.ENROLL);
+		try {
+			boolean[] written = new boolean[enrollments.size()];
+			EnrollKey[] keys = new EnrollKey[enrollments.size()];
+			Map<Integer,List<Integer>> termRows = new TreeMap<>(); //The positions in the list of the enrollments of each term, in list order.
+			for(int index = 0; index < keys.length; index++) {
+				Enrollment enrollment = enrollments.get(index);
+				keys[index] = new EnrollKey(enrollment.getYear(), semesterCode(enrollment.getSemester()), enrollment.getCourseID(), enrollment.getStudentID());
+				gradeCode(enrollment.getGrade());  //An invalid grade fails the batch before anything is written.
+				int term = EnrollCatalog.term(keys[index].year, keys[index].semester);
+				if(!termRows.containsKey(term))
+					termRows.put(term, new ArrayList<Integer>());
+				termRows.get(term).add(index);
+			}
+			Lock termsShared = termLock.readLock();
+			termsShared.lock();
+			try {
+				checkEnrollments(enrollments, allMustExist, refusals);
+				Lock logShared = logLock.readLock();
+				logShared.lock();
+				List<EnrollAppend> appends = new ArrayList<>();
+				try {
+					//Every term's new enrollments are reserved and logged first, so a single force of the log commits the whole batch.
+					long logged = 0;
+					for(Map.Entry<Integer,List<Integer>> term : termRows.entrySet()) {
+						EnrollSegment segment = segment(EnrollCatalog.year(term.getKey()), EnrollCatalog.semester(term.getKey()), true);
+						segment.appendLock.lock();
+						try {
+							List<Enrollment> newEnrollments = new ArrayList<>();
+							Set<EnrollKey> newKeys = new HashSet<>();
+							for(int index : term.getValue()) {
+								//Enrollments logged by other threads but not yet indexed are pending; they are duplicates all the same.
+								if((refusals == null || refusals[index] == null) && segment.index.find(keys[index]) == null && !segment.pending.contains(keys[index])
+										&& newKeys.add(keys[index])) {
+									written[index] = true;
+									newEnrollments.add(enrollments.get(index));
+								}
+							}
+							if(newEnrollments.isEmpty()) continue;
+							ByteBuffer records = ByteBuffer.allocate(newEnrollments.size() * ENROLL_RECORD_SIZE);
+							for(Enrollment enrollment : newEnrollments)
+								RecordFormat.putEnrollRecord(records, enrollment.getYear(), semesterCode(enrollment.getSemester()), gradeCode(enrollment.getGrade()),
+										enrollment.getCourseID(), enrollment.getStudentID());
+							EnrollAppend append = new EnrollAppend(segment, segment.appends.reserve(records.capacity()), records, newEnrollments, newKeys);
+							appends.add(append);
+							segment.pending.addAll(newKeys);
+							ByteBuffer entry = records.duplicate();
+							entry.flip();
+							logged = log.append(WriteAheadLog.ENROLL_SEGMENT, segment.term, append.offset, entry);
+						} finally {
+							segment.appendLock.unlock();
+						}
+					}
+					if(!appends.isEmpty())
+						log.sync(logged);
+					for(EnrollAppend append : appends) {
+						EnrollSegment segment = append.segment;
+						writeAt(segment.file, append.records, append.offset);
+						if(segment.mapped != null)
+							segment.mapped.grow();
+						segment.index.addAll(append.enrollments, append.offset);  //Only now can other threads find the new records, which are already written and mapped.
+						summary.add(segment.term, append.records);
+						segment.pending.removeAll(append.keys);
+						segment.appends.publish(append.offset, append.offset + append.records.limit());
+					}
+				} catch (IOException exception) {  //Space reserved but never published would hold up every later append to its segment.
+					for(EnrollAppend append : appends)
+						append.segment.appends.fail(exception);
+					throw exception;
+				} finally {
+					logShared.unlock();
+				}
+			} finally {
+				termsShared.unlock();
+			}
+			checkpointIfDue();
+			return written;
+		} finally {
+			timer.stop();
+		}
+	}
+
+	/*
+	 * Checks the courses and students of a batch of enrollments, with the term lock held, so none of them can be deleted before the batch is
+	 * written (deleting takes the term lock exclusively). An ID fails the check if it is deleted, or if allMustExist and it does not exist at
+	 * all; otherwise IDs the file has no record for are let through, the caller having checked them. Each distinct ID is checked once, without
+	 * caching its record. If refusals is null, IllegalArgumentException is thrown if any ID fails; otherwise the slot of every enrollment with
+	 * a failed ID is given the reason.
+	 */
+	private void checkEnrollments(List<Enrollment> enrollments, boolean allMustExist, String[] refusals) throws IOException {
+		SortedSet<Integer> courseIDs = new TreeSet<>(),
+						   studentIDs = new TreeSet<>();
+		for(Enrollment enrollment : enrollments) {
+			courseIDs.add(enrollment.getCourseID());
+			studentIDs.add(enrollment.getStudentID());
+		}
+		SortedSet<Integer> missingCourses = missingSCRecords("Course", courseIDs, allMustExist),
+					  missingStudents = missingSCRecords("Student", studentIDs, allMustExist);
+		if(refusals != null) {
+			for(int index = 0; index < refusals.length; index++) {
+				Enrollment enrollment = enrollments.get(index);
+				if(missingCourses.contains(enrollment.getCourseID()))
+					refusals[index] = "course " + enrollment.getCourseID() + " does not exist";
+				else if(missingStudents.contains(enrollment.getStudentID()))
+					refusals[index] = "student " + enrollment.getStudentID() + " does not exist";
+			}
+			return;
+		}
+		if(!missingCourses.isEmpty())
+			throw new IllegalArgumentException("No such course" + (missingCourses.size() == 1 ? ": " + missingCourses.first() : "s: " + missingCourses) + ".");
+		if(!missingStudents.isEmpty())
+			throw new IllegalArgumentException("No such student" + (missingStudents.size() == 1 ? ": " + missingStudents.first() : "s: " + missingStudents) + ".");
+	}
+
+	private SortedSet<Integer> missingSCRecords(String fileType, Set<Integer> IDs, boolean allMustExist) throws IOException {
+		SortedSet<Integer> missing = new TreeSet<>();
+		for(int ID : IDs) {
+			if((allMustExist || containsSCRecord(fileType, ID)) && !scRecordExists(fileType, ID))
+				missing.add(ID);
+		}
+		return missing;
+	}
+
+	/*
+	 * enrollCohort(...) enrolls a list of students in one course for a year and semester, all or nothing. Every student and the course are
+	 * checked to exist under the term lock the write takes, so none can be deleted before the cohort is enrolled, and IllegalArgumentException
+	 * is thrown, with nothing written, if any does not. The check does not cache the students. The rest is writeEnrollRecords(...)
+	 * for a single term: the duplicates are found by probing the index once per student, and the new enrollments are appended with one write
+	 * and logged as one entry, so a crash leaves either all of them or none.
+	 * The returned array holds, for each student in the list, whether the student was enrolled (true) or already was (false).
+	 */
+	public boolean[] enrollCohort(short year, String semester, int courseID, List<Integer> studentIDs) throws IOException {
+		List<Enrollment> enrollments = new ArrayList<>(studentIDs.size());
+		for(int studentID : studentIDs)
+			enrollments.add(new Enrollment(year, semester, courseID, studentID, "IP"));
+		return writeEnrollRecords(enrollments, true, null);
+	}
+
+	//The new enrollments of one term in a writeEnrollRecords(...) batch, between their reservation and their publication.
+	private static class EnrollAppend {
+		final EnrollSegment segment;
+		final long offset;
+		final ByteBuffer records;
+		final List<Enrollment> enrollments;
+		final Set<EnrollKey> keys;
+		EnrollAppend(EnrollSegment segment, long offset, ByteBuffer records, List<Enrollment> enrollments, Set<EnrollKey> keys) {
+			this.segment = segment;
+			this.offset = offset;
+			this.records = records;
+			this.enrollments = enrollments;
+			this.keys = keys;
+		}
+	}
+
+	//Returns the enrollment with the given key, or null if the student is not enrolled in the course for that year and semester.
+	public Enrollment readEnrollment(short year, String semester, int courseID, int studentID) throws IOException {
+		StoreMetrics.Timer timer = metrics.start(StoreMetrics.Operation.READ_ENROLLMENT);
+		try {
+			Lock termsShared = termLock.readLock();
+			termsShared.lock();
+			try {
+				EnrollSegment segment = segment(year, semesterCode(semester), false);
+				Long offset = segment == null ? null : segment.index.find(year, semester, courseID, studentID);
+				if(offset == null) return null;
+				return new Enrollment(year, semester, courseID, studentID, readGradeAt(segment, offset));
+			} finally {
+				termsShared.unlock();
+			}
+		} finally {
+			timer.stop();
+		}
+	}
+
+	/*
+	 * Allows for viewing the grade of or writing a grade to an existing enrollment record, depending on the switch "action" argument passed to the function.
+	 * 		-"View" returns the grade, or null if a grade has not been added yet.
+	 * 		-"Add" adds the grade and returns it, or returns null if a grade has already been added.
+	 */
+	public String viewAddGrade(short year, String semester, int courseID, int studentID, String action, String grade) throws IOException {
+		StoreMetrics.Timer timer = metrics.start(StoreMetrics.Operation.VIEW_ADD_GRADE);
+		try {
+			if(!action.equals("View") && !action.equals("Add")) throw new IllegalArgumentException("Invalid action.");
+			Lock termsShared = termLock.readLock();
+			termsShared.lock();
+			try {
+				EnrollSegment segment = segment(year, semesterCode(semester), false);
+				Long offset = segment == null ? null : segment.index.find(year, semester, courseID, studentID);
+				if(offset == null) return grade;
+				if(action.equals("View")) {
+					String gradeField = readGradeAt(segment, offset);
+					if(!gradeField.equals("IP"))
+						grade = gradeField;
+					else
+						grade = null;
+				}
+				else {
+					//The grade is checked and written under the enrollment's lock, so of two threads adding a grade only one succeeds.
+					ByteBuffer gradeCode = ByteBuffer.allocate(1);
+					gradeCode.put(gradeCode(grade));
+					Lock logShared = logLock.readLock();
+					logShared.lock();
+					try {
+						Lock lock = enrollLocks.forKey(new EnrollKey(year, semesterCode(semester), courseID, studentID).hashCode()).writeLock();
+						lock.lock();
+						try {
+							if(readGradeAt(segment, offset).equals("IP")) {
+								writeLogged(WriteAheadLog.ENROLL_SEGMENT, segment.term, segment.file, gradeCode, offset + RecordFormat.GRADE_AT);
+								segment.modifications.incrementAndGet();
+							}
+							else
+								grade = null;
+						} finally {
+							lock.unlock();
+						}
+					} finally {
+						logShared.unlock();
+					}
+				}
+			} finally {
+				termsShared.unlock();
+			}
+			checkpointIfDue();
+
+			return grade;
+		} finally {
+			timer.stop();
+		}
+	}
+
+	/*
+	 * unenroll(...) drops a student from a course for a year and semester, returning false if the student is not enrolled. The record is turned
+	 * into a tombstone in place, its grade set to RecordFormat.DELETED, and the segment header's count of tombstones goes up by one; the
+	 * enrollment leaves the index, the course's roster and the term summary at once, and the segment file when the term is next compacted.
+	 *      -Both writes are logged before either is made, the count first, so a crash can lose the tombstone but never count one short.
+	 *      -The term lock is held exclusively, so no scan or report of the term is reading the record as it turns into a tombstone.
+	 */
+	public boolean unenroll(short year, String semester, int courseID, int studentID) throws IOException {
+		StoreMetrics.Timer timer = metrics.start(StoreMetrics.Operation.UNENROLL);
+		try {
+			EnrollKey key = new EnrollKey(year, semesterCode(semester), courseID, studentID);
+			termLock.writeLock().lock();
+			try {
+				EnrollSegment segment = segment(year, key.semester, false);
+				Long offset = segment == null ? null : segment.index.find(key);
+				if(offset == null) return false;
+				ByteBuffer count = ByteBuffer.allocate(4);
+				count.putInt(segment.tombstones + 1);
+				ByteBuffer gradeCode = ByteBuffer.allocate(1);
+				gradeCode.put(RecordFormat.DELETED);
+				Lock logShared = logLock.readLock();
+				logShared.lock();
+				try {
+					ByteBuffer entry = count.duplicate();
+					entry.flip();
+					log.append(WriteAheadLog.ENROLL_SEGMENT, segment.term, RecordFormat.TOMBSTONES_AT, entry);
+					entry = gradeCode.duplicate();
+					entry.flip();
+					log.sync(log.append(WriteAheadLog.ENROLL_SEGMENT, segment.term, offset + RecordFormat.GRADE_AT, entry));
+					writeAt(segment.file, count, RecordFormat.TOMBSTONES_AT);
+					writeAt(segment.file, gradeCode, offset + RecordFormat.GRADE_AT);
+				} finally {
+					logShared.unlock();
+				}
+				segment.tombstones++;
+				segment.modifications.incrementAndGet();
+				segment.index.remove(key);
+				summary.unenroll(segment.term, courseID);
+			} finally {
+				termLock.writeLock().unlock();
+			}
+			checkpointIfDue();
+			return true;
+		} finally {
+			timer.stop();
+		}
+	}
+
+	/*
+	 * Returns the IDs of every course with at least one student enrolled in the given year and semester, in ID order. They are read from the
+	 * term summary, so neither the segment nor its index is read, and the term's segment is not opened.
+	 */
+	public SortedSet<Integer> getCourseIDsFromEnrollFile(short year, String semester) throws IOException {
+		return new TreeSet<>(getCourseEnrollmentCounts(year, semester).keySet());
+	}
+
+	//Returns the number of students enrolled in each course with enrollments in the given year and semester, by course ID, from the term summary.
+	public SortedMap<Integer,Integer> getCourseEnrollmentCounts(short year, String semester) throws IOException {
+		StoreMetrics.Timer timer = metrics.start(StoreMetrics.Operation.COURSE_IDS);
+		try {
+			int term = EnrollCatalog.term(year, semesterCode(semester));
+			Lock termsShared = termLock.readLock();
+			termsShared.lock();
+			try {
+				return summary.courses(term);
+			} finally {
+				termsShared.unlock();
+			}
+		} finally {
+			timer.stop();
+		}
+	}
+
+	//Returns the IDs of every student enrolled in the course for the given year and semester, in ID order.
+	public List<Integer> getStudentIDsFromEnrollFile(short year, String semester, int courseID) throws IOException {
+		StoreMetrics.Timer timer = metrics.start(StoreMetrics.Operation.STUDENT_IDS);
+		try {
+			List<Integer> studentIDList = new ArrayList<>();
+			Lock termsShared = termLock.readLock();
+			termsShared.lock();
+			try {
+				EnrollSegment segment = segment(year, semesterCode(semester), false);
+				if(segment == null) return studentIDList;
+				for(int studentID : segment.index.roster(courseID).toArray())
+					studentIDList.add(studentID);
+			} finally {
+				termsShared.unlock();
+			}
+
+			return studentIDList;
+		} finally {
+			timer.stop();
+		}
+	}
+
+	//Returns the ID, name and grade of every student enrolled in the course for the given year and semester, in ID order.
+	public List<ReportRow> getReportDataFromEnrollFile(short year, String semester, int courseID) throws IOException {
+		return getReportDataFromEnrollFile(year, semester, courseID, ScanMonitor.IGNORE_PROGRESS);
+	}
+
+	public List<ReportRow> getReportDataFromEnrollFile(short year, String semester, int courseID, ScanMonitor monitor) throws IOException {
+		return getReportDataFromEnrollFile(year, semester, Collections.singleton(courseID), monitor).get(courseID);
+	}
+
+	/*
+	 * getReportDataFromEnrollFile(...) for several courses returns the report of each course, keyed by course ID in ID order; a course with no
+	 * students enrolled has an empty report. The matching enrollments are collected from the index, without touching either file, and then
+	 * joined with the student file by reportRows(...).
+	 * A student enrolled in several of the courses has their name read only once.
+	 * Like any bulk read, a report takes no record locks, so a student updated while it runs may be reported with their name before or after the update.
+	 */
+	public SortedMap<Integer,List<ReportRow>> getReportDataFromEnrollFile(short year, String semester, Collection<Integer> courseIDs, ScanMonitor monitor) throws IOException {
+		StoreMetrics.Timer timer = metrics.start(StoreMetrics.Operation.REPORT);
+		try {
+			Lock termsShared = termLock.readLock();
+			termsShared.lock();
+			try {
+				return reportData(year, semester, courseIDs, monitor);
+			} finally {
+				termsShared.unlock();
+			}
+		} finally {
+			timer.stop();
+		}
+	}
+
+	private SortedMap<Integer,List<ReportRow>> reportData(short year, String semester, Collection<Integer> courseIDs, ScanMonitor monitor) throws IOException {
+		SortedMap<Integer,List<ReportRow>> reports = new TreeMap<>();
+		List<Map.Entry<EnrollKey,Long>> enrollments = new ArrayList<>();
+		EnrollSegment segment = segment(year, semesterCode(semester), false);
+		for(int courseID : new TreeSet<>(courseIDs)) {
+			if(segment != null)
+				enrollments.addAll(segment.index.find(year, semester, courseID).entrySet());
+			reports.put(courseID, new ArrayList<ReportRow>());
+		}
+		List<ReportRow> rows = reportRows(segment, enrollments, monitor);
+		for(int row = 0; row < rows.size(); row++)
+			reports.get(enrollments.get(row).getKey().courseID).add(rows.get(row));
+
+		return reports;
+	}
+
+	//Returns the number of students enrolled in the course for the given year and semester, which is the length of its report.
+	public int countEnrolledStudents(short year, String semester, int courseID) throws IOException {
+		StoreMetrics.Timer timer = metrics.start(StoreMetrics.Operation.ROSTER);
+		try {
+			int term = EnrollCatalog.term(year, semesterCode(semester));
+			Lock termsShared = termLock.readLock();
+			termsShared.lock();
+			try {
+				return summary.count(term, courseID);
+			} finally {
+				termsShared.unlock();
+			}
+		} finally {
+			timer.stop();
+		}
+	}
+
+	/*
+	 * getRoster(...) returns the students enrolled in the course for the given year and semester as a RosterBitmap of their IDs, read from memory.
+	 * The bitmap is the caller's own copy, so rosters can be combined freely: e.g. the students taking both of two courses in a term are
+	 * getRoster(year, semester, a).and(getRoster(year, semester, b)), and those who took a course one term but not its sequel the next are
+	 * found with andNot(...).
+	 */
+	public RosterBitmap getRoster(short year, String semester, int courseID) throws IOException {
+		StoreMetrics.Timer timer = metrics.start(StoreMetrics.Operation.ROSTER);
+		try {
+			Lock termsShared = termLock.readLock();
+			termsShared.lock();
+			try {
+				EnrollSegment segment = segment(year, semesterCode(semester), false);
+				return segment == null ? new RosterBitmap() : segment.index.roster(courseID);
+			} finally {
+				termsShared.unlock();
+			}
+		} finally {
+			timer.stop();
+		}
+	}
+
+	//Returns whether the student is enrolled in the course for the given year and semester, without reading the enrollment.
+	public boolean isEnrolled(short year, String semester, int courseID, int studentID) throws IOException {
+		StoreMetrics.Timer timer = metrics.start(StoreMetrics.Operation.ROSTER);
+		try {
+			Lock termsShared = termLock.readLock();
+			termsShared.lock();
+			try {
+				EnrollSegment segment = segment(year, semesterCode(semester), false);
+				return segment != null && segment.index.isEnrolled(courseID, studentID);
+			} finally {
+				termsShared.unlock();
+			}
+		} finally {
+			timer.stop();
+		}
+	}
+
+	/*
+	 * getReportPage(...) returns one page of a course report, so a long roster can be shown without reading all of it: up to rows rows, in
+	 * student ID order, starting with the skip-th (from 0) of the students enrolled whose ID is fromStudentID or more.
+	 *      -A caller paging forwards passes the ID after the last student of the previous page and a skip of 0. To jump ahead, it passes the first
+	 *       ID of any page it has already seen and the number of rows between that page and the one it wants; skipped rows are passed over in
+	 *       the index, without reading either file.
+	 *      -Pages are read like a whole report, but only the page's enrollments and students are read.
+	 */
+	public List<ReportRow> getReportPage(short year, String semester, int courseID, int fromStudentID, int skip, int rows) throws IOException {
+		StoreMetrics.Timer timer = metrics.start(StoreMetrics.Operation.REPORT_PAGE);
+		try {
+			Lock termsShared = termLock.readLock();
+			termsShared.lock();
+			try {
+				List<Map.Entry<EnrollKey,Long>> enrollments = new ArrayList<>(rows);
+				EnrollSegment segment = segment(year, semesterCode(semester), false);
+				if(segment != null) {
+					NavigableMap<EnrollKey,Long> roster = segment.index.find(year, semester, courseID);
+					Iterator<Map.Entry<EnrollKey,Long>> entries = roster.tailMap(new EnrollKey(year, semesterCode(semester), courseID, fromStudentID), true).entrySet().iterator();
+					for(int skipped = 0; skipped < skip && entries.hasNext(); skipped++)
+						entries.next();
+					while(enrollments.size() < rows && entries.hasNext())
+						enrollments.add(entries.next());
+				}
+				return reportRows(segment, enrollments, ScanMonitor.IGNORE_PROGRESS);
+			} finally {
+				termsShared.unlock();
+			}
+		} finally {
+			timer.stop();
+		}
+	}
+
+	/*
+	 * Returns a report row for each of the enrollments, in the same order, as a join of the enrollments with the student file:
+	 *      -Their grades are read in enroll file order, and the names of the distinct students that are not in the student cache in student file
+	 *       order, each with RecordReader.readRecordsAt(...), so both files are read forwards in page-sized runs instead of with a random read per row.
+	 *      -The rows are then built in the order of the enrollments by looking the grades and names up in the hash maps the two passes filled.
+	 */
+	private List<ReportRow> reportRows(EnrollSegment segment, List<Map.Entry<EnrollKey,Long>> enrollments, ScanMonitor monitor) throws IOException {
+		SortedSet<Integer> studentIDs = new TreeSet<>();
+		for(Map.Entry<EnrollKey,Long> entry : enrollments)
+			studentIDs.add(entry.getKey().studentID);
+		final Map<Integer,String> names = new HashMap<>(studentIDs.size() * 2);
+		for(Iterator<Integer> studentID = studentIDs.iterator(); studentID.hasNext();) {  //Students already in the cache are not read again.
+			Student cached = studentCache.peek(studentID.next());
+			if(cached != null) {
+				names.put(cached.getID(), cached.getName());
+				studentID.remove();
+			}
+		}
+		final long total = enrollments.size() + studentIDs.size();
+
+		final long[] enrollOffsets = new long[enrollments.size()];
+		for(int index = 0; index < enrollOffsets.length; index++)
+			enrollOffsets[index] = enrollments.get(index).getValue();
+		Arrays.sort(enrollOffsets);
+		final Map<Long,String> grades = new HashMap<>(enrollOffsets.length * 2);
+		if(segment != null && segment.mapped != null) {
+			for(int index = 0; index < enrollOffsets.length; index++) {
+				if(index % 1024 == 0)
+					monitor.progress(index, total);
+				ByteBuffer record = segment.mapped.recordAt(enrollOffsets[index]);
+				grades.put(enrollOffsets[index], RecordFormat.choice(GRADES, record.get(record.position() + RecordFormat.GRADE_AT)));
+			}
+		}
+		else if(segment != null) {
+			RecordReader.readRecordsAt(segment.file, enrollOffsets, ENROLL_RECORD_SIZE, offsetMonitor(monitor, 0, total), new RecordReader.RecordVisitor() {
+				public void visit(int index, ByteBuffer record) throws IOException {
+					grades.put(enrollOffsets[index], RecordFormat.choice(GRADES, record.get(record.position() + RecordFormat.GRADE_AT)));
+				}
+			});
+		}
+
+		long[] studentOffsets = new long[studentIDs.size()];
+		int next = 0;
+		for(int studentID : studentIDs)
+			studentOffsets[next++] = scRecordOffset("Student", studentID);
+		RecordReader.readRecordsAt(mapRecordToStream.get("Student"), studentOffsets, SC_RECORD_SIZE, offsetMonitor(monitor, enrollOffsets.length, total), new RecordReader.RecordVisitor() {
+			public void visit(int index, ByteBuffer record) {
+				names.put(record.getInt(), RecordFormat.getText(record));
+			}
+		});
+
+		List<ReportRow> rows = new ArrayList<>(enrollments.size());
+		for(Map.Entry<EnrollKey,Long> entry : enrollments) {
+			EnrollKey key = entry.getKey();
+			rows.add(new ReportRow(key.studentID, names.get(key.studentID), grades.get(entry.getValue())));
+		}
+		return rows;
+	}
+
+	//Reports the progress of one pass of a multi-pass operation as progress through the whole operation, the pass starting at done.
+	private static ScanMonitor offsetMonitor(final ScanMonitor monitor, final long done, final long total) {
+		return new ScanMonitor() {
+			public void progress(long passDone, long passTotal) {
+				monitor.progress(done + passDone, total);
+			}
+		};
+	}
+
+	private static String readGradeAt(EnrollSegment segment, long offset) throws IOException {
+		ByteBuffer record = segment.recordAt(offset);
+		return RecordFormat.choice(GRADES, record.get(record.position() + RecordFormat.GRADE_AT));
+	}
+
+	//Returns every term with an enrollment segment, in calendar order.
+	public List<Term> getTerms() throws IOException {
+		List<Term> terms = new ArrayList<>();
+		Lock termsShared = termLock.readLock();
+		termsShared.lock();
+		try {
+			for(int term : catalog.terms()) {
+				terms.add(new Term(EnrollCatalog.year(term), SEMESTERS.get(EnrollCatalog.semester(term)), summary.enrollments(term)));
+			}
+		} finally {
+			termsShared.unlock();
+		}
+		return terms;
+	}
+
+	/*
+	 * getGradeAnalytics(...) computes the grade distributions of every course and term and the GPA of every student in one parallel pass over
+	 * every enroll segment; see GradeAnalytics. Each segment is read up to the end published when the pass starts, and the term lock is held
+	 * shared throughout, so terms cannot be archived or dropped under it while enrollments and grades go on being written.
+	 * Segments that are not open yet are opened, indexes and all, as any other use of their terms would.
+	 */
+	public GradeAnalytics getGradeAnalytics(ScanMonitor monitor) throws IOException {
+		StoreMetrics.Timer timer = metrics.start(StoreMetrics.Operation.GRADE_ANALYTICS);
+		try {
+			Lock termsShared = termLock.readLock();
+			termsShared.lock();
+			try {
+				List<GradeAnalytics.Chunk> chunks = new ArrayList<>();
+				long chunkSize = (long) GradeAnalytics.CHUNK_RECORDS * ENROLL_RECORD_SIZE;
+				for(int term : catalog.terms()) {
+					EnrollSegment segment = segment(EnrollCatalog.year(term), EnrollCatalog.semester(term), false);
+					long end = segment.end();
+					for(long start = HEADER_SIZE; start < end; start += chunkSize)
+						chunks.add(new GradeAnalytics.Chunk(segment, start, Math.min(end, start + chunkSize)));
+				}
+				int students = (int) ((scAppends.get("Student").end() - HEADER_SIZE) / SC_RECORD_SIZE);
+				return GradeAnalytics.compute(chunks, OFFSET.get("Student"), students, monitor);
+			} finally {
+				termsShared.unlock();
+			}
+		} finally {
+			timer.stop();
+		}
+	}
+
+	/*
+	 * archiveTerm(...) takes a term out of the store by moving its segment file into archiveDirectory, where restoreTerm(...) can bring it back
+	 * from. The segment's index is deleted rather than moved, since it is rebuilt when the segment is next opened.
+	 * IllegalArgumentException is thrown if the store has no such term, and IOException if the archive already holds the term.
+	 * Term changes hold the term lock exclusively, so they wait for the enroll operations in progress, and no segment is closed under one.
+	 */
+	public void archiveTerm(short year, String semester, File archiveDirectory) throws IOException {
+		termLock.writeLock().lock();
+		try {
+			checkpoint();  //The log may hold writes to the segment, which must be in its file before the file leaves the store.
+			int term = removeTerm(year, semester);
+			try {
+				Files.move(EnrollCatalog.segmentFile(directory, term).toPath(), EnrollCatalog.segmentFile(archiveDirectory, term).toPath());
+			} catch (IOException exception) {  //The segment is still in place, so the term is put back.
+				catalog.add(term);
+				summary.catchUp(directory, term);
+				throw exception;
+			}
+			Files.deleteIfExists(EnrollCatalog.indexFile(directory, term).toPath());
+		} finally {
+			termLock.writeLock().unlock();
+		}
+	}
+
+	//Brings an archived term back from archiveDirectory. IllegalArgumentException is thrown if the store already has the term.
+	public void restoreTerm(short year, String semester, File archiveDirectory) throws IOException {
+		int term = EnrollCatalog.term(year, semesterCode(semester));
+		termLock.writeLock().lock();
+		try {
+			if(catalog.contains(term)) throw new IllegalArgumentException("The store already has " + semester + " " + year + ".");
+			Files.deleteIfExists(EnrollCatalog.indexFile(directory, term).toPath());
+			Files.move(EnrollCatalog.segmentFile(archiveDirectory, term).toPath(), EnrollCatalog.segmentFile(directory, term).toPath());
+			try {
+				segment(year, semesterCode(semester), true);  //Opening the segment checks its file and builds its index.
+				summary.catchUp(directory, term);
+			} catch (IOException exception) {
+				Files.move(EnrollCatalog.segmentFile(directory, term).toPath(), EnrollCatalog.segmentFile(archiveDirectory, term).toPath());
+				throw exception;
+			}
+		} finally {
+			termLock.writeLock().unlock();
+		}
+	}
+
+	//Deletes every enrollment of a term. IllegalArgumentException is thrown if the store has no such term.
+	public void dropTerm(short year, String semester) throws IOException {
+		termLock.writeLock().lock();
+		try {
+			checkpoint();
+			int term = removeTerm(year, semester);
+			Files.delete(EnrollCatalog.segmentFile(directory, term).toPath());
+			Files.deleteIfExists(EnrollCatalog.indexFile(directory, term).toPath());
+		} finally {
+			termLock.writeLock().unlock();
+		}
+	}
+
+	/*
+	 * compactTerm(...) rewrites a term's segment without its tombstones, returning false if the term has none. The live records are copied, in
+	 * order, into a new file next to the segment while the term goes on being used, since the copy only shares the term lock. The term lock is
+	 * then held exclusively for the switch:
+	 *      -records appended since the copy began are copied too; if a grade or a tombstone was written in place in the meantime, which may have
+	 *       been to a record already copied, the copy is made again from the start instead.
+	 *      -the log is checkpointed, since its entries hold offsets into the old file; the segment is closed, its index file deleted, and the new
+	 *       file moved over the old one. The segment is reopened, which rebuilds its index, and the term summary counts the term again.
+	 * A crash before the move leaves the old segment in place, and one after it the new one, whose index is rebuilt when it is next opened.
+	 * IllegalArgumentException is thrown if the store has no such term.
+	 */
+	public boolean compactTerm(short year, String semester) throws IOException {
+		StoreMetrics.Timer timer = metrics.start(StoreMetrics.Operation.COMPACT);
+		try {
+			int term = EnrollCatalog.term(year, semesterCode(semester));
+			File segmentFile = EnrollCatalog.segmentFile(directory, term),
+				 compacted = new File(segmentFile.getPath() + ".compact");
+			EnrollSegment segment;
+			long copied,
+				 modifications;
+			Lock termsShared = termLock.readLock();
+			termsShared.lock();
+			try {
+				segment = segment(year, semesterCode(semester), false);
+				if(segment == null) throw new IllegalArgumentException("The store has no enrollments for " + semester + " " + year + ".");
+				if(segment.tombstones == 0) return false;
+				modifications = segment.modifications.get();
+				copied = segment.end();
+				Files.deleteIfExists(compacted.toPath());  //Left by a compaction that failed.
+				copyLiveRecords(segment, HEADER_SIZE, copied, compacted);
+			} finally {
+				termsShared.unlock();
+			}
+			termLock.writeLock().lock();
+			try {
+				if(segments.get(term) != segment) {  //The term was archived or dropped, or compacted by another thread, while it was copied.
+					Files.deleteIfExists(compacted.toPath());
+					return false;
+				}
+				if(segment.modifications.get() != modifications) {
+					Files.delete(compacted.toPath());
+					copyLiveRecords(segment, HEADER_SIZE, segment.end(), compacted);
+				}
+				else
+					copyLiveRecords(segment, copied, segment.end(), compacted);
+				checkpoint();
+				segments.remove(term);
+				segment.close();
+				Files.deleteIfExists(EnrollCatalog.indexFile(directory, term).toPath());
+				Files.move(compacted.toPath(), segmentFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				segment(year, semesterCode(semester), false);
+				summary.remove(term);
+				summary.catchUp(directory, term);
+				summary.save();
+				return true;
+			} finally {
+				termLock.writeLock().unlock();
+			}
+		} finally {
+			timer.stop();
+		}
+	}
+
+	/*
+	 * Compacts every term at least deadRatio of whose records are tombstones, and returns the number of terms compacted. The ratios come from
+	 * the term summary, so terms that need no compaction are not opened.
+	 */
+	public int compact(double deadRatio) throws IOException {
+		List<Integer> due = new ArrayList<>();
+		Lock termsShared = termLock.readLock();
+		termsShared.lock();
+		try {
+			for(int term : catalog.terms()) {
+				int tombstones = summary.tombstones(term);
+				if(tombstones > 0 && tombstones >= deadRatio * summary.records(term))
+					due.add(term);
+			}
+		} finally {
+			termsShared.unlock();
+		}
+		int compacted = 0;
+		for(int term : due) {
+			try {
+				if(compactTerm(EnrollCatalog.year(term), SEMESTERS.get(EnrollCatalog.semester(term))))
+					++compacted;
+			} catch (IllegalArgumentException exception) {}  //The term left the store since it was found.
+		}
+		return compacted;
+	}
+
+	//Appends the records of the segment from start to end that are not tombstones to the file, which is created with an empty header if it does not exist, and forces it.
+	private static void copyLiveRecords(EnrollSegment segment, long start, long end, File to) throws IOException {
+		try(RandomAccessFile file = new RandomAccessFile(to, "rw")) {
+			RecordFormat.openFile(file, ENROLL_RECORD_SIZE, to.getName());
+			long position = file.length();
+			ByteBuffer records = ByteBuffer.allocate(RecordReader.PAGE_SIZE / ENROLL_RECORD_SIZE * ENROLL_RECORD_SIZE);
+			RecordReader reader = new RecordReader(segment.file, ENROLL_RECORD_SIZE, start, end, ScanMonitor.IGNORE_PROGRESS);
+			ByteBuffer record;
+			while((record = reader.next()) != null) {
+				if(record.get(record.position() + RecordFormat.GRADE_AT) == RecordFormat.DELETED) continue;
+				if(!records.hasRemaining()) {
+					writeAt(file, records, position);
+					position += records.limit();
+					records.clear();
+				}
+				ByteBuffer live = record.duplicate();
+				live.limit(live.position() + ENROLL_RECORD_SIZE);
+				records.put(live);
+			}
+			writeAt(file, records, position);
+			file.getChannel().force(true);
+		}
+	}
+
+	//Closes a term's segment and takes it out of the catalog, which commits its removal; its files are left for the caller to move or delete. Called under the term lock.
+	private int removeTerm(short year, String semester) throws IOException {
+		int term = EnrollCatalog.term(year, semesterCode(semester));
+		if(!catalog.contains(term)) throw new IllegalArgumentException("The store has no enrollments for " + semester + " " + year + ".");
+		EnrollSegment segment = segments.remove(term);
+		if(segment != null)
+			segment.close();
+		catalog.remove(term);
+		summary.remove(term);
+		return term;
+	}
+
+	/*
+	 * Returns the segment of a term, opening it if this is the first time the term is used. A term that is not in the catalog has no segment:
+	 * null is returned, unless create is true, in which case its segment file is created and then added to the catalog.
+	 * Callers hold the term lock. Segments are opened under the lock of the segment map, so two threads using a new term open it only once.
+	 */
+	private EnrollSegment segment(short year, byte semester, boolean create) throws IOException {
+		int term = EnrollCatalog.term(year, semester);
+		EnrollSegment segment = segments.get(term);
+		if(segment != null) return segment;
+		synchronized(segments) {
+			segment = segments.get(term);
+			if(segment != null) return segment;
+			if(!create && !catalog.contains(term)) return null;
+			segment = new EnrollSegment(directory, term, mapEnrollFile);
+			try {
+				catalog.add(term);
+			} catch (IOException exception) {
+				segment.close();
+				throw exception;
+			}
+			segments.put(term, segment);
+			return segment;
+		}
+	}
+
+	/*
+	 * checkpoint() makes every write so far durable in the data files themselves, so the log can be emptied. It waits for the logged writes in
+	 * progress, forces the student and course files and every open segment, and then resets the log. Segments that are not open have nothing
+	 * left to force, since they are only closed by archiving or dropping their term and by close(), which checkpoint first.
+	 * The term summary and the text indexes that changed are saved first, as snapshots the next store to open resumes from.
+	 * Checkpoints run by themselves once the log grows past CHECKPOINT_BYTES, and when the store is closed.
+	 */
+	public void checkpoint() throws IOException {
+		StoreMetrics.Timer timer = metrics.start(StoreMetrics.Operation.CHECKPOINT);
+		try {
+			Lock termsShared = termLock.readLock();
+			termsShared.lock();
+			try {
+				logLock.writeLock().lock();
+				try {
+					summary.save();  //With no append in progress, the summary covers exactly the records written to each segment.
+					for(String fileType : mapRecordToStream.keySet())  //And each built text index covers exactly the records of its file.
+						textIndexes.get(fileType).save(textIndexFile(fileType), (scAppends.get(fileType).end() - HEADER_SIZE) / SC_RECORD_SIZE);
+					if(log.size() == HEADER_SIZE) return;  //Nothing has been logged since the last checkpoint.
+					for(RandomAccessFile file : mapRecordToStream.values())
+						file.getChannel().force(false);
+					for(EnrollSegment segment : segments.values())
+						segment.file.getChannel().force(false);
+					log.reset();
+				} finally {
+					logLock.writeLock().unlock();
+				}
+			} finally {
+				termsShared.unlock();
+			}
+		} finally {
+			timer.stop();
+		}
+	}
+
+	//Called after a logged write, with no store lock held, since a checkpoint has to wait for every logged write in progress.
+	private void checkpointIfDue() throws IOException {
+		if(log.size() >= CHECKPOINT_BYTES)
+			checkpoint();
+	}
+
+	//Operations still running on other threads when the store is closed fail with an IOException. The files are closed even if the final checkpoint fails.
+	public void close() throws IOException {
+		termLock.writeLock().lock();
+		try {
+			checkpoint();
+		} finally {
+			try {
+				for(EnrollSegment segment : segments.values())
+					segment.close();
+				try {
+					for(String fileType : mapRecordToStream.keySet())  //The empty slots allocated ahead are not left in the files.
+						idAllocators.get(fileType).trim((scAppends.get(fileType).end() - HEADER_SIZE) / SC_RECORD_SIZE);
+				} finally {
+					for(RandomAccessFile file : mapRecordToStream.values())
+						file.close();
+				}
+			} finally {
+				metrics.close();
+				log.close();
+				termLock.writeLock().unlock();
+			}
+		}
+	}
+
+	//Returns the index of semester in SEMESTERS, which is how the semester is stored in records and indexes.
+	static byte semesterCode(String semester) {
+		return RecordFormat.code(SEMESTERS, semester, "semester");
+	}
+
+	//Returns the index of grade in GRADES, which is how the grade is stored in records.
+	static byte gradeCode(String grade) {
+		return RecordFormat.code(GRADES, grade.trim(), "grade");
+	}
+
+	/*
+	 * Logs a write of the buffer, from its start to its position, at offset in one of the store's files, waits for the log to be durable, and then
+	 * writes the file. Called with the log lock shared.
+	 */
+	private void writeLogged(byte target, int term, RandomAccessFile file, ByteBuffer buffer, long offset) throws IOException {
+		ByteBuffer entry = buffer.duplicate();
+		entry.flip();
+		log.sync(log.append(target, term, offset, entry));
+		writeAt(file, buffer, offset);
+	}
+
+	//Writes the whole buffer, from its start, at offset in the file.
+	private static void writeAt(RandomAccessFile file, ByteBuffer buffer, long offset) throws IOException {
+		buffer.flip();
+		while(buffer.hasRemaining())
+			file.getChannel().write(buffer, offset + buffer.position());
+		StoreMetrics.written(buffer.limit());
+	}
+}
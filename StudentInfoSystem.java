@@ -10,21 +10,33 @@ import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
-import java.io.EOFException;
-import java.io.FileNotFoundException;
+import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 
 import javax.swing.*;
 import javax.swing.border.TitledBorder;
+import javax.swing.table.AbstractTableModel;
 import javax.swing.table.DefaultTableModel;
+import javax.swing.table.TableModel;
 import javax.swing.text.AttributeSet;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.Document;
@@ -33,6 +45,7 @@ import javax.swing.text.PlainDocument;
 public class StudentInfoSystem extends JFrame {
 	
 	private static final long serialVersionUID = 7411363481203108843L;
+	private static final int FIND_LIMIT = 50; //The most matches a find by name, title or text offers to pick from.
 	//########BEGIN JFRAME COMPONENTS########
 	private final StudentInfoSystem self = this;
 	private JMenuBar menuBar;
@@ -46,25 +59,37 @@ public class StudentInfoSystem extends JFrame {
 					  createCourseItem,
 					  viewUpdateCourseItem,
 					  enrollItem,
+					  enrollCohortItem,
 					  addGradesItem,
 					  viewGradesItem,
-					  viewReportsItem;
+					  viewReportsItem,
+					  viewAnalyticsItem;
 	private JPanel masterPanel; //masterPanel is the only panel directly added onto the JFrame; to change panels, I only need to change the masterPanel reference.
 	//########END JFRAME COMPONENTS########
 	
 	private final String[] year = {"2016","2015","2014","2013","2012","2011","2010","2009","2008","2007","2006","2005",
 								   "2004","2003","2002","2001","2000","1999","1998","1997","1996","1995"},
 				  		   semester = {"Spring", "Summer", "Fall", "Winter"};  //String arrays later used by JComboBox objects
-	private final Map<String,RandomAccessFile> mapRecordToStream;
-	private final int TEXT_SIZE = 30, //All strings are written to and read from a file as char arrays of this size. Including primitive data, a fixed text size ensures all records have fixed length.
-					  SC_RECORD_SIZE = 186; //int: 4 bytes + 3 * char[30]: 180 bytes + short: 2 bytes
-	private final Map<String,Integer> OFFSET = new HashMap<String,Integer>() { //These offsets are used to calculate student and course IDs. 
-		private static final long serialVersionUID = 1L;                       
-		{ put("Student",90000); put("Course",1000); }  //Student and Course IDs respectively begin at these offsets when their respective files contain no records.
+	private final StudentInfoStore store; //All records are read and written through the store; the UI is just one of its clients.
+	private final Compactor compactor; //Clears the tombstones left by unenrolling out of the enroll segments, in the background.
+	//All record I/O runs on this single thread, off the event dispatch thread. The store is thread-safe, but one thread keeps the UI's calls in the order they were made, so a lookup always sees the save before it.
+	private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		public Thread newThread(Runnable task) {
+			Thread thread = new Thread(task, "Record I/O");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+	//Runs RecordQuery callbacks on the event dispatch thread.
+	private final Executor swingExecutor = new Executor() {
+		public void execute(Runnable task) {
+			SwingUtilities.invokeLater(task);
+		}
 	};
 	public StudentInfoSystem() {
-		final RandomAccessFile[] stream = new RandomAccessFile[3];
-		
+		this(false);
+	}
+	public StudentInfoSystem(boolean mapEnrollFile) {
 		setTitle("Student Information System");
 		
 		setMinimumSize(new Dimension(800,700));  //A minimum size for the JFrame, so the title always remains visible even when masterPanel changes.
@@ -75,23 +100,18 @@ public class StudentInfoSystem extends JFrame {
 		
 		setVisible(true);
 		
-		/*In the following try-catch block we open our three streams for each of the record files. These streams stay open until program termination.
-		 * Note that the streams are opened as "rw", so if the files for these streams do not already exist, they will be created.
-		 * If the files for these streams already exist, they will not be overwritten.
+		/*The store opens the three record files in the working directory, and they stay open until program termination.
+		 * Note that the files are opened as "rw", so if they do not already exist, they will be created.
+		 * If the files already exist, they will not be overwritten.
 		 */
+		StudentInfoStore openedStore = null;
 		try {
-			stream[0] = new RandomAccessFile("StudentFile.dat","rw");
-			stream[1] = new RandomAccessFile("CourseFile.dat","rw");
-			stream[2] = new RandomAccessFile("EnrollmentFile.dat","rw");
-		} catch (FileNotFoundException exception) {
+			openedStore = new StudentInfoStore(new File("."), mapEnrollFile);
+		} catch (IOException exception) {
 			JOptionPane.showMessageDialog(null, "Error: " + exception);
 		}
-		
-		//Easy mapping of a record type to the stream of the relevant file.
-		mapRecordToStream = new HashMap<String,RandomAccessFile>() { 
-			private static final long serialVersionUID = 4796322824319795839L;
-			{ put("Student", stream[0]); put("Course",stream[1]); put("Enroll",stream[2]); }
-		};
+		store = openedStore;
+		compactor = store == null ? null : new Compactor(store);
 		
 		setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
 		
@@ -105,9 +125,13 @@ public class StudentInfoSystem extends JFrame {
 		             JOptionPane.QUESTION_MESSAGE, null, null, null);
 		        if (confirmExit == 0) {
 					try {
-						for(int stm = 0; stm < 3; stm++)
-							stream[stm].close();
-					} catch (IOException exception) {
+						ioExecutor.shutdown();  //Writes already submitted are allowed to finish before the streams are closed.
+						ioExecutor.awaitTermination(10, TimeUnit.SECONDS);
+						if(compactor != null)
+							compactor.close();
+						if(store != null)  //The store failed to open.
+							store.close();
+					} catch (IOException | InterruptedException exception) {
 						JOptionPane.showMessageDialog(null, "Error: " + exception);
 					}
 		           System.exit(0);
@@ -118,6 +142,8 @@ public class StudentInfoSystem extends JFrame {
 	
 	//To change the masterPanel, first remove masterPanel from the JFrame, link it to a new reference, and add it back onto the JFrame.
 	private void switchMasterPanelTo(JPanel panel) {
+		if(masterPanel instanceof TemplatePanel)
+			((TemplatePanel) masterPanel).cancelLoad();  //Nothing the old panel is still loading can be shown anymore.
 		remove(masterPanel);
 		masterPanel = panel;
 		add(masterPanel, BorderLayout.CENTER);
@@ -178,7 +204,14 @@ public class StudentInfoSystem extends JFrame {
 				switchMasterPanelTo(new EnrollPanel());
 			}
 		});
+		enrollCohortItem = new formattedJMenuItem("Enroll Cohort");
+		enrollCohortItem.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				switchMasterPanelTo(new CohortEnrollPanel());
+			}
+		});
 		enrollMenu.add(enrollItem);
+		enrollMenu.add(enrollCohortItem);
 	}
 	
 	private void buildGradesMenu() {
@@ -209,7 +242,14 @@ public class StudentInfoSystem extends JFrame {
 				switchMasterPanelTo(new ReportPanel());
 			}
 		});
+		viewAnalyticsItem = new formattedJMenuItem("Grade Analytics");
+		viewAnalyticsItem.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				switchMasterPanelTo(new GradeAnalyticsPanel());
+			}
+		});
 		reportsMenu.add(viewReportsItem);
+		reportsMenu.add(viewAnalyticsItem);
 	}
 	
 	private class formattedJMenu extends JMenu {
@@ -258,7 +298,7 @@ public class StudentInfoSystem extends JFrame {
 		private LabelPanel[] directionLabels;
 		private String welcomeText = "Welcome to the Student Information System.";
 		private String[] directionText = {"Students: Create or view/update a student.",
-				"Courses: Create or view/update a course.", "Enroll: Enroll a student in a course.",
+				"Courses: Create or view/update a course.", "Enroll: Enroll a student, or a whole cohort, in a course.",
 				"Grades: Add or view a grade.","Reports: View all students enrolled in a course for a given year and semester."};
 		public HomePanel() {
 			int length = directionText.length;
@@ -291,6 +331,8 @@ public class StudentInfoSystem extends JFrame {
 	 *       masterPanel is then switched to this new instance, destroying the old reference.
 	 *      -Note that resetPanel() requires that the subclass have a no-arg default constructor so that it can be found by reflection.
 	 *       The constructors of inner classes implicitly put the instance of their outer class in their first argument, much like other languages like Python.
+	 *      -Record I/O is submitted with load(...) or save(...), which run a RecordQuery on the I/O thread and show its progress in progressBar.
+	 *       A panel only ever waits on its latest load: starting a new load cancels the previous one, since its result would be stale. Saves are never cancelled.
 	 */
 	private abstract class TemplatePanel extends JPanel {
 		private static final long serialVersionUID = 702205217604505954L;
@@ -299,6 +341,9 @@ public class StudentInfoSystem extends JFrame {
 						    resetButtonPanel;
 		protected LabelPanel purpose,
 							 userGuide;
+		protected final JProgressBar progressBar;
+		private RecordQuery<?> pendingLoad;
+		private int runningQueries;
 		public TemplatePanel(String title, String purposeText, String userGuideText) {
 			setLayout(new GridBagLayout());
 			setBorder(BorderFactory.createTitledBorder(null,title,TitledBorder.CENTER, TitledBorder.TOP,new Font("Monospaced",Font.BOLD,30)));
@@ -323,9 +368,38 @@ public class StudentInfoSystem extends JFrame {
 			});
 			purpose = new LabelPanel(purposeText);
 			userGuide = new LabelPanel(userGuideText);
+			progressBar = new JProgressBar(0, 100);
+			progressBar.setStringPainted(true);
+			progressBar.setVisible(false);
 			addAsNewRow(homeButtonPanel, resetButtonPanel);
-			addToCenter(purpose, userGuide);
+			addToCenter(purpose, userGuide, progressBar);
 		};
+		public <T> CompletableFuture<T> load(RecordQuery<T> query) {
+			cancelLoad();
+			pendingLoad = query;
+			return run(query);
+		}
+		public <T> CompletableFuture<T> save(RecordQuery<T> query) {
+			return run(query);
+		}
+		public void cancelLoad() {
+			if(pendingLoad != null)
+				pendingLoad.cancel();
+			pendingLoad = null;
+		}
+		private <T> CompletableFuture<T> run(RecordQuery<T> query) {
+			++runningQueries;
+			progressBar.setValue(0);
+			progressBar.setVisible(true);
+			CompletableFuture<T> future = query.submit(progressBar);
+			future.whenCompleteAsync(new BiConsumer<T,Throwable>() {
+				public void accept(T result, Throwable failure) {
+					if(--runningQueries == 0)
+						progressBar.setVisible(false);
+				}
+			}, swingExecutor);
+			return future;
+		}
 		@Override
 		public Component add(Component comp) {
 			add(comp,c);
@@ -379,9 +453,9 @@ public class StudentInfoSystem extends JFrame {
 		protected ComboBoxPanel cbPanel;
 		protected String[] studentTextField = {"Name","Address","Age"},
 						 courseTextField = {"Title","Description","Room"},
-						 studentYear = {"Freshman","Sophomore","Junior","Senior"},
-						 major = {"Engineering","Informatics","Social Sciences","Physical Sciences"};
-		protected int[] textFieldSize = {TEXT_SIZE,TEXT_SIZE,3};
+						 studentYear = StudentInfoStore.YEAR_LEVELS.toArray(new String[0]),
+						 major = StudentInfoStore.MAJORS.toArray(new String[0]);
+		protected int[] textFieldSize = {StudentInfoStore.TEXT_SIZE,StudentInfoStore.TEXT_SIZE,3};
 		private String type;
 		public SCPanel(String type,String titleAction, String purposeAction, String userGuideText) {
 			super(titleAction + type, purposeAction + type.toLowerCase() + ".", userGuideText);
@@ -419,23 +493,32 @@ public class StudentInfoSystem extends JFrame {
 			createButtonPanel.button.setToolTipText("Create a " + type);
 			createButtonPanel.button.addActionListener(new ActionListener() {
 				public void actionPerformed(ActionEvent e) {
-					String[] data = new String[4];
+					final String[] data = new String[4];
 					String[] reason = {" cannot be empty", " cannot be empty", " must be an integer between " + (type == "Student" ? "16 and 122" : "1 and 999")};
 					int failIndex = validateSCFields(textPanels,data,type);
-					try {
-						if(failIndex == -1) {
-							for(int index = 0; index < 3; index++)
-								data[index] = textPanels[index].textField.getText();
-							data[3] = cbPanel.getSelectedItem();
-							JOptionPane.showMessageDialog(null, "New " + type + " Created.\n Your " + type + " ID is: " + writeSCRecord(data, type) + ".\nRemember this ID!");
-							resetPanel();
-						}
-						else {
-							JOptionPane.showMessageDialog(null, (type == "Student" ? studentTextField[failIndex] : courseTextField[failIndex]) + reason[failIndex] + ".");
-							textPanels[failIndex].textField.requestFocusInWindow();
-						}
-					} catch (IOException exception) {
-						JOptionPane.showMessageDialog(null, "Error: " + exception);
+					if(failIndex == -1) {
+						for(int index = 0; index < 3; index++)
+							data[index] = textPanels[index].textField.getText();
+						data[3] = cbPanel.getSelectedItem();
+						createButtonPanel.button.setEnabled(false);  //Prevents the same record from being created twice while the write is queued.
+						save(new RecordQuery<Integer>() {
+							protected Integer call(ScanMonitor monitor) throws IOException {
+								return writeSCRecord(data, type);
+							}
+							protected void succeeded(Integer ID) {
+								JOptionPane.showMessageDialog(null, "New " + type + " Created.\n Your " + type + " ID is: " + ID + ".\nRemember this ID!");
+								resetPanel();
+							}
+							@Override
+							protected void failed(Throwable failure) {
+								super.failed(failure);
+								createButtonPanel.button.setEnabled(true);
+							}
+						});
+					}
+					else {
+						JOptionPane.showMessageDialog(null, (type == "Student" ? studentTextField[failIndex] : courseTextField[failIndex]) + reason[failIndex] + ".");
+						textPanels[failIndex].textField.requestFocusInWindow();
 					}
 				}
 			});
@@ -457,13 +540,20 @@ public class StudentInfoSystem extends JFrame {
 	 */
 	private class ViewUpdatePanel extends SCPanel {
 		private static final long serialVersionUID = 6780901698837407809L;
-		private TextPanel IDPanel;
+		private TextPanel IDPanel,
+						  findPanel;
 		private ButtonPanel searchButtonPanel,
-						    updateButtonPanel;
+							findButtonPanel,
+						    updateButtonPanel,
+						    deleteButtonPanel;
 		private int ID;
 		public ViewUpdatePanel(final String type) {
-			super(type,"View/Update ", "View or update an existing ", "Search for a " + type.toLowerCase() + " by ID, update any necessary fields, and then click \"Update " + type + "\".");
+			super(type,"View/Update ", "View or update an existing ", "Search for a " + type.toLowerCase() + " by ID, or find one by its " + (type == "Student" ? "name or address" : "title or description") + ", update any necessary fields, and then click \"Update " + type + "\".");
 			IDPanel = new TextPanel(type + " ID",8);
+			findPanel = new TextPanel("Find by " + (type == "Student" ? "Name/Address" : "Title/Description"),40);
+			findButtonPanel = new ButtonPanel("Find (alt+F)");
+			findButtonPanel.button.setMnemonic(KeyEvent.VK_F);
+			findButtonPanel.button.setToolTipText("Find a " + type.toLowerCase() + " by the start of any words of its text; close misspellings are found too");
 			for(TextPanel tp : textPanels)
 				tp.textField.setEnabled(false);
 			cbPanel.comboBox.setEnabled(false);
@@ -474,64 +564,133 @@ public class StudentInfoSystem extends JFrame {
 			updateButtonPanel.button.setMnemonic(KeyEvent.VK_E);
 			updateButtonPanel.setToolTipText("Update the " + type);
 			updateButtonPanel.button.setEnabled(false);
+			deleteButtonPanel = new ButtonPanel("Delete " + type + " (alt+D)");
+			deleteButtonPanel.button.setMnemonic(KeyEvent.VK_D);
+			deleteButtonPanel.button.setToolTipText("Delete the " + type + (type == "Student" ? "; a student enrolled in any course cannot be deleted" : "; a course with enrollments cannot be deleted"));
+			deleteButtonPanel.button.setEnabled(false);
 			searchButtonPanel.button.addActionListener(new ActionListener() {
 				public void actionPerformed(ActionEvent e) {
 					try {
-						ID = Integer.parseInt(IDPanel.textField.getText());
-						String[] textData = readTextFields(ID,type);
-						if(textData != null) {
-							for(int index = 0; index < 3; index++) {
-								textPanels[index].textField.setText(textData[index]);
-								textPanels[index].textField.setEnabled(true);
+						final int searchID = Integer.parseInt(IDPanel.textField.getText());
+						load(new RecordQuery<String[]>() {
+							protected String[] call(ScanMonitor monitor) throws IOException {
+								return readTextFields(searchID,type);
 							}
-							String userInputCBField = textData[3];
-							String[] cbFields = (type == "Student" ? studentYear : major);
-							for(int index = 0; index < cbFields.length; index++) {
-								if(userInputCBField.equals(cbFields[index])) {
-									cbPanel.comboBox.setSelectedIndex(index);
-									break;
+							protected void succeeded(String[] textData) {
+								if(textData != null) {
+									ID = searchID;
+									for(int index = 0; index < 3; index++) {
+										textPanels[index].textField.setText(textData[index]);
+										textPanels[index].textField.setEnabled(true);
+									}
+									String userInputCBField = textData[3];
+									String[] cbFields = (type == "Student" ? studentYear : major);
+									for(int index = 0; index < cbFields.length; index++) {
+										if(userInputCBField.equals(cbFields[index])) {
+											cbPanel.comboBox.setSelectedIndex(index);
+											break;
+										}
+									}
+									cbPanel.comboBox.setEnabled(true);
+									updateButtonPanel.button.setEnabled(true);
+									deleteButtonPanel.button.setEnabled(true);
+								}
+								else {
+									JOptionPane.showMessageDialog(null, type + " Not Found.");
 								}
 							}
-							cbPanel.comboBox.setEnabled(true);
-							updateButtonPanel.button.setEnabled(true);
-						}
-						else {
-							JOptionPane.showMessageDialog(null, type + " Not Found.");
-						}
+						});
 					} catch (NumberFormatException exception) {
 						JOptionPane.showMessageDialog(null,"Error: ID must be a number.");
 						IDPanel.textField.requestFocusInWindow();
-					} catch (IOException exception) {
-						JOptionPane.showMessageDialog(null, "Error: " + exception);
 					}
 				}
 			});
+			//One match is looked up straight away; between several, the user picks one, which is then looked up by its ID.
+			findButtonPanel.button.addActionListener(new ActionListener() {
+				public void actionPerformed(ActionEvent e) {
+					final String query = findPanel.textField.getText();
+					if(query.trim().isEmpty()) {
+						JOptionPane.showMessageDialog(null, "Enter part of a " + (type == "Student" ? "name or address." : "title or description."));
+						findPanel.textField.requestFocusInWindow();
+						return;
+					}
+					load(new RecordQuery<Map<String,Integer>>() {
+						protected Map<String,Integer> call(ScanMonitor monitor) throws IOException {
+							return findSCRecords(query, type);
+						}
+						protected void succeeded(Map<String,Integer> found) {
+							if(found.isEmpty()) {
+								JOptionPane.showMessageDialog(null, "No " + type.toLowerCase() + " matches \"" + query + "\".");
+								return;
+							}
+							String[] choices = found.keySet().toArray(new String[0]);
+							String choice = found.size() == 1 ? choices[0] : (String) JOptionPane.showInputDialog(null, found.size() + " matches" + (found.size() == FIND_LIMIT ? " (the first " + FIND_LIMIT + ")" : "") + ":",
+									"Find " + type, JOptionPane.QUESTION_MESSAGE, null, choices, choices[0]);
+							if(choice != null) {
+								IDPanel.textField.setText(String.valueOf(found.get(choice)));
+								searchButtonPanel.button.doClick();
+							}
+						}
+					});
+				}
+			});
 			updateButtonPanel.button.addActionListener(new ActionListener() {
 				public void actionPerformed(ActionEvent e) {
-					String[] data = new String[4];
+					final String[] data = new String[4];
 					String[] reason = {" cannot be empty", " cannot be empty", " must be an integer between " + (type == "Student" ? "16 and 122" : "1 and 999")};
 					int failIndex = validateSCFields(textPanels,data,type);
-					try {
-						if(failIndex == -1) {
-							for(int index = 0; index < 3; index++)
-								data[index] = textPanels[index].textField.getText();
-							data[3] = cbPanel.getSelectedItem();
-							updateTextFields(ID,data,type);
-							JOptionPane.showMessageDialog(null, type + " updated.");
+					if(failIndex == -1) {
+						for(int index = 0; index < 3; index++)
+							data[index] = textPanels[index].textField.getText();
+						data[3] = cbPanel.getSelectedItem();
+						final int updateID = ID;
+						save(new RecordQuery<Void>() {
+							protected Void call(ScanMonitor monitor) throws IOException {
+								updateTextFields(updateID,data,type);
+								return null;
+							}
+							protected void succeeded(Void result) {
+								JOptionPane.showMessageDialog(null, type + " updated.");
+								resetPanel();
+							}
+						});
+					}
+					else {
+						JOptionPane.showMessageDialog(null, (type == "Student" ? studentTextField[failIndex] : courseTextField[failIndex]) + reason[failIndex] + ".");
+						textPanels[failIndex].textField.requestFocusInWindow();
+					}
+				}
+			});
+			//The store refuses to delete a record that still has enrollments, and says in which term; that message is shown as it is.
+			deleteButtonPanel.button.addActionListener(new ActionListener() {
+				public void actionPerformed(ActionEvent e) {
+					int confirmDelete = JOptionPane.showConfirmDialog(null, "Delete " + type.toLowerCase() + " " + ID + "? This cannot be undone.",
+							"Delete " + type, JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
+					if(confirmDelete != JOptionPane.YES_OPTION) return;
+					final int deleteID = ID;
+					save(new RecordQuery<Boolean>() {
+						protected Boolean call(ScanMonitor monitor) throws IOException {
+							return type == "Student" ? store.deleteStudent(deleteID) : store.deleteCourse(deleteID);
+						}
+						protected void succeeded(Boolean deleted) {
+							JOptionPane.showMessageDialog(null, deleted ? type + " deleted." : type + " Not Found.");
 							resetPanel();
 						}
-						else {
-							JOptionPane.showMessageDialog(null, (type == "Student" ? studentTextField[failIndex] : courseTextField[failIndex]) + reason[failIndex] + ".");
-							textPanels[failIndex].textField.requestFocusInWindow();
+						@Override
+						protected void failed(Throwable failure) {
+							if(failure instanceof IllegalArgumentException)
+								JOptionPane.showMessageDialog(null, "Cannot delete: " + failure.getMessage());
+							else
+								super.failed(failure);
 						}
-					} catch (IOException exception) {
-						JOptionPane.showMessageDialog(null, "Error: " + exception);
-					}
+					});
 				}
 			});
 			addToCenter(IDPanel, searchButtonPanel);
+			addToCenter(findPanel, findButtonPanel);
 			addAsMatrix(2, 2, textPanels[0], textPanels[1], textPanels[2], cbPanel);
-			addToCenter(updateButtonPanel);
+			addToCenter(updateButtonPanel, deleteButtonPanel);
 		}
 	}
 	
@@ -583,28 +742,58 @@ public class StudentInfoSystem extends JFrame {
 			super("Enroll Student", "Enroll a student in a course.", "Fill out the fields below and click \"Enroll Student\".");
 			yearPanel = new ComboBoxPanel("Year", year);
 			semesterPanel = new ComboBoxPanel("Semester", semester);
-			try {
-				courseIDPanel = new ComboBoxPanel("Course ID",getIDsFromSCFile("Course"));
-				studentIDPanel = new ComboBoxPanel("Student ID",getIDsFromSCFile("Student"));
-			} catch (IOException e1) {
-				JOptionPane.showMessageDialog(null,"Error generating Enroll Page.");
-				switchMasterPanelTo(new HomePanel());
-			}
+			courseIDPanel = new ComboBoxPanel("Course ID",new String[]{});
+			studentIDPanel = new ComboBoxPanel("Student ID",new String[]{});
+			courseIDPanel.comboBox.setEnabled(false);
+			studentIDPanel.comboBox.setEnabled(false);
+			load(new RecordQuery<String[][]>() {
+				protected String[][] call(ScanMonitor monitor) throws IOException {
+					return new String[][]{toStrings(store.getIDsFromSCFile("Course", monitor)), toStrings(store.getIDsFromSCFile("Student", monitor))};
+				}
+				protected void succeeded(String[][] IDs) {
+					courseIDPanel.reload(IDs[0]);
+					studentIDPanel.reload(IDs[1]);
+					courseIDPanel.comboBox.setEnabled(true);
+					studentIDPanel.comboBox.setEnabled(true);
+				}
+				@Override
+				protected void failed(Throwable failure) {
+					JOptionPane.showMessageDialog(null,"Error generating Enroll Page.");
+					switchMasterPanelTo(new HomePanel());
+				}
+			});
 			enrollButtonPanel = new ButtonPanel("Enroll Student (alt+E)");
 			enrollButtonPanel.button.setMnemonic(KeyEvent.VK_E);
 			enrollButtonPanel.button.setToolTipText("Enroll the student in the course.");
 			enrollButtonPanel.button.addActionListener(new ActionListener() {
 				public void actionPerformed(ActionEvent e) {
 					try {
-						if(writeEnrollRecord(Short.parseShort(yearPanel.getSelectedItem()), semesterPanel.getSelectedItem(), 
-								Integer.parseInt(courseIDPanel.getSelectedItem()), Integer.parseInt(studentIDPanel.getSelectedItem())))
-							JOptionPane.showMessageDialog(null, "Student enrolled.");	
-						else
-							JOptionPane.showMessageDialog(null, "Student already enrolled.");
-					} catch (NumberFormatException | IOException exception) {
+						final short selectedYear = Short.parseShort(yearPanel.getSelectedItem());
+						final String selectedSemester = semesterPanel.getSelectedItem();
+						final int courseID = Integer.parseInt(courseIDPanel.getSelectedItem()),
+								  studentID = Integer.parseInt(studentIDPanel.getSelectedItem());
+						enrollButtonPanel.button.setEnabled(false);
+						save(new RecordQuery<Boolean>() {
+							protected Boolean call(ScanMonitor monitor) throws IOException {
+								return store.writeEnrollRecord(selectedYear, selectedSemester, courseID, studentID);
+							}
+							protected void succeeded(Boolean enrolled) {
+								if(enrolled)
+									JOptionPane.showMessageDialog(null, "Student enrolled.");	
+								else
+									JOptionPane.showMessageDialog(null, "Student already enrolled.");
+								resetPanel();
+							}
+							@Override
+							protected void failed(Throwable failure) {
+								super.failed(failure);
+								resetPanel();
+							}
+						});
+					} catch (NumberFormatException exception) {
 						JOptionPane.showMessageDialog(null, "Error: " + exception);
+						resetPanel();
 					}
-					resetPanel();
 				}
 			});
 			addAsMatrix(2, 2, yearPanel, semesterPanel, courseIDPanel, studentIDPanel);
@@ -612,6 +801,106 @@ public class StudentInfoSystem extends JFrame {
 		}
 	}
 	
+	/*
+	 * CohortEnrollPanel enrolls a whole cohort of students in a course at once, through enrollCohort(...), instead of one EnrollPanel click per student.
+	 * The student IDs are typed as a list of IDs and ranges, e.g. "90001-90200, 90250", and are checked to be numbers before anything is sent to the store.
+	 * The store enrolls all of them or none:
+	 *      -if any student does not exist, nothing is written, and the user is told which IDs are missing.
+	 *      -otherwise, the user is told how many students were enrolled, and how many already were.
+	 */
+	private class CohortEnrollPanel extends TemplatePanel {
+		private static final long serialVersionUID = 1L;
+		private static final int MAX_COHORT = 10000;
+		private ComboBoxPanel yearPanel,
+							  semesterPanel,
+							  courseIDPanel;
+		private TextPanel studentIDsPanel;
+		private ButtonPanel enrollButtonPanel;
+		public CohortEnrollPanel() {
+			super("Enroll Cohort", "Enroll a cohort of students in a course.", "Fill out the fields below and click \"Enroll Cohort\".");
+			yearPanel = new ComboBoxPanel("Year", year);
+			semesterPanel = new ComboBoxPanel("Semester", semester);
+			courseIDPanel = new ComboBoxPanel("Course ID",new String[]{});
+			courseIDPanel.comboBox.setEnabled(false);
+			studentIDsPanel = new TextPanel("Student IDs (e.g. 90001-90200, 90250)",4000);
+			load(new RecordQuery<String[]>() {
+				protected String[] call(ScanMonitor monitor) throws IOException {
+					return toStrings(store.getIDsFromSCFile("Course", monitor));
+				}
+				protected void succeeded(String[] IDs) {
+					courseIDPanel.reload(IDs);
+					courseIDPanel.comboBox.setEnabled(true);
+				}
+				@Override
+				protected void failed(Throwable failure) {
+					JOptionPane.showMessageDialog(null,"Error generating Enroll Cohort Page.");
+					switchMasterPanelTo(new HomePanel());
+				}
+			});
+			enrollButtonPanel = new ButtonPanel("Enroll Cohort (alt+E)");
+			enrollButtonPanel.button.setMnemonic(KeyEvent.VK_E);
+			enrollButtonPanel.button.setToolTipText("Enroll every listed student in the course, or none if any of them does not exist.");
+			enrollButtonPanel.button.addActionListener(new ActionListener() {
+				public void actionPerformed(ActionEvent e) {
+					final List<Integer> studentIDs;
+					try {
+						studentIDs = parseIDs(studentIDsPanel.textField.getText());
+					} catch (IllegalArgumentException exception) {  //Includes NumberFormatException.
+						JOptionPane.showMessageDialog(null, "Error: " + exception.getMessage());
+						studentIDsPanel.textField.requestFocusInWindow();
+						return;
+					}
+					if(courseIDPanel.getSelectedItem() == null) {
+						JOptionPane.showMessageDialog(null, "Choose a course.");
+						return;
+					}
+					final short selectedYear = Short.parseShort(yearPanel.getSelectedItem());
+					final String selectedSemester = semesterPanel.getSelectedItem();
+					final int courseID = Integer.parseInt(courseIDPanel.getSelectedItem());
+					enrollButtonPanel.button.setEnabled(false);
+					save(new RecordQuery<boolean[]>() {
+						protected boolean[] call(ScanMonitor monitor) throws IOException {
+							return store.enrollCohort(selectedYear, selectedSemester, courseID, studentIDs);
+						}
+						protected void succeeded(boolean[] enrolled) {
+							int count = 0;
+							for(boolean written : enrolled)
+								if(written) ++count;
+							JOptionPane.showMessageDialog(null, count + " students enrolled" + (count == enrolled.length ? "." : "; " + (enrolled.length - count) + " already were."));
+							resetPanel();
+						}
+						@Override
+						protected void failed(Throwable failure) {
+							if(failure instanceof IllegalArgumentException)
+								JOptionPane.showMessageDialog(null, "Nobody was enrolled. " + failure.getMessage());
+							else
+								super.failed(failure);
+							enrollButtonPanel.button.setEnabled(true);
+						}
+					});
+				}
+			});
+			addAsMatrix(1, 3, yearPanel, semesterPanel, courseIDPanel);
+			addToCenter(studentIDsPanel, enrollButtonPanel);
+		}
+		//Parses a list of IDs and ranges of IDs, separated by commas or spaces, into the IDs in the order given.
+		private List<Integer> parseIDs(String text) {
+			List<Integer> IDs = new ArrayList<>();
+			for(String item : text.trim().split("[,\\s]+")) {
+				if(item.isEmpty()) continue;
+				int dash = item.indexOf('-');
+				int first = Integer.parseInt(dash < 0 ? item : item.substring(0, dash)),
+					last = dash < 0 ? first : Integer.parseInt(item.substring(dash + 1));
+				if(last < first) throw new IllegalArgumentException("The range " + item + " is backwards.");
+				if(IDs.size() + (long) last - first + 1 > MAX_COHORT) throw new IllegalArgumentException("A cohort can have at most " + MAX_COHORT + " students.");
+				for(int ID = first; ID <= last; ID++)
+					IDs.add(ID);
+			}
+			if(IDs.isEmpty()) throw new IllegalArgumentException("Enter the IDs of the students to enroll.");
+			return IDs;
+		}
+	}
+	
 	/*
 	 * GRPanel abstracts common fields and behavior to GradesPanel and ReportsPanel into one superclass.
 	 */
@@ -632,6 +921,7 @@ public class StudentInfoSystem extends JFrame {
 		}
 		protected class YearListener implements ActionListener {
 			public void actionPerformed(ActionEvent e) {
+				cancelLoad();
 				semesterPanel.reload(semester);
 				semesterPanel.comboBox.setEnabled(true);
 				courseIDPanel.reload(new String[]{});
@@ -641,16 +931,24 @@ public class StudentInfoSystem extends JFrame {
 		protected class SemesterListener implements ActionListener {
 			public void actionPerformed(ActionEvent e) {
 				try {
-					String[] courseIDs = getCourseIDsFromEnrollFile(Short.parseShort(((String) yearPanel.comboBox.getSelectedItem())),
-							(String) semesterPanel.comboBox.getSelectedItem());
-					if(courseIDs.length != 0) {
-						courseIDPanel.reload(courseIDs);
-						courseIDPanel.comboBox.setEnabled(true);
-					}
-					else {
-						JOptionPane.showMessageDialog(null, "No students are enrolled for courses in given year and semester.");
-					}
-				} catch (NumberFormatException | IOException exception) {
+					final short selectedYear = Short.parseShort(((String) yearPanel.comboBox.getSelectedItem()));
+					final String selectedSemester = (String) semesterPanel.comboBox.getSelectedItem();
+					courseIDPanel.comboBox.setEnabled(false);
+					load(new RecordQuery<String[]>() {
+						protected String[] call(ScanMonitor monitor) throws IOException {
+							return toStrings(store.getCourseIDsFromEnrollFile(selectedYear, selectedSemester));
+						}
+						protected void succeeded(String[] courseIDs) {
+							if(courseIDs.length != 0) {
+								courseIDPanel.reload(courseIDs);
+								courseIDPanel.comboBox.setEnabled(true);
+							}
+							else {
+								JOptionPane.showMessageDialog(null, "No students are enrolled for courses in given year and semester.");
+							}
+						}
+					});
+				} catch (NumberFormatException exception) {
 					JOptionPane.showMessageDialog(null, "Error: " + exception);
 				}
 			}
@@ -672,12 +970,22 @@ public class StudentInfoSystem extends JFrame {
 		protected class CourseIDListener implements ActionListener {
 			public void actionPerformed(ActionEvent e) {
 				try {
-					studentIDPanel.reload(getStudentIDsFromEnrollFile(Short.parseShort((String) yearPanel.comboBox.getSelectedItem()),
-							(String) semesterPanel.comboBox.getSelectedItem(), Integer.parseInt((String) courseIDPanel.getSelectedItem())));
-				} catch (NumberFormatException | IOException exception) {
+					final short selectedYear = Short.parseShort((String) yearPanel.comboBox.getSelectedItem());
+					final String selectedSemester = (String) semesterPanel.comboBox.getSelectedItem();
+					final int courseID = Integer.parseInt(courseIDPanel.getSelectedItem());
+					load(new RecordQuery<String[]>() {
+						protected String[] call(ScanMonitor monitor) throws IOException {
+							return toStrings(store.getStudentIDsFromEnrollFile(selectedYear, selectedSemester, courseID));
+						}
+						protected void succeeded(String[] studentIDs) {
+							studentIDPanel.reload(studentIDs);
+							studentIDPanel.comboBox.setEnabled(true);
+						}
+					});
+				} catch (NumberFormatException exception) {
 					JOptionPane.showMessageDialog(null, "Error: " + exception);
+					studentIDPanel.comboBox.setEnabled(true);
 				}
-				studentIDPanel.comboBox.setEnabled(true);
 			}
 		}
 	}
@@ -753,13 +1061,23 @@ public class StudentInfoSystem extends JFrame {
 			addButtonPanel.button.addActionListener(new ActionListener() {
 				public void actionPerformed(ActionEvent e) {
 					try {
-						if(viewAddGrade(Short.parseShort(yearPanel.getSelectedItem()), semesterPanel.getSelectedItem(), 
-								Integer.parseInt(courseIDPanel.getSelectedItem()), Integer.parseInt(studentIDPanel.getSelectedItem()), "Add", 
-								(String) gradePanel.comboBox.getSelectedItem()) != null)
-							JOptionPane.showMessageDialog(null,"Grade added.");
-						else
-							JOptionPane.showMessageDialog(null,"Grade has already been assigned");
-					} catch (NumberFormatException | IOException exception) {
+						final short selectedYear = Short.parseShort(yearPanel.getSelectedItem());
+						final String selectedSemester = semesterPanel.getSelectedItem(),
+									 grade = (String) gradePanel.comboBox.getSelectedItem();
+						final int courseID = Integer.parseInt(courseIDPanel.getSelectedItem()),
+								  studentID = Integer.parseInt(studentIDPanel.getSelectedItem());
+						save(new RecordQuery<String>() {
+							protected String call(ScanMonitor monitor) throws IOException {
+								return store.viewAddGrade(selectedYear, selectedSemester, courseID, studentID, "Add", grade);
+							}
+							protected void succeeded(String addedGrade) {
+								if(addedGrade != null)
+									JOptionPane.showMessageDialog(null,"Grade added.");
+								else
+									JOptionPane.showMessageDialog(null,"Grade has already been assigned");
+							}
+						});
+					} catch (NumberFormatException exception) {
 						JOptionPane.showMessageDialog(null, "Error: " + exception);
 					}
 				}
@@ -774,10 +1092,12 @@ public class StudentInfoSystem extends JFrame {
 	 * from the enroll file if a grade has been added.
 	 * 		-If viewAddGrade(...) returns null, the user is informed that a grade has not yet been added.
 	 * 		-otherwise, the grade is loaded into the grade JComboBox for the user to see.
+	 * The chosen enrollment can also be dropped with unenrollButton, after a confirmation; the panel is then reset.
 	 */
 	private class ViewGradesPanel extends GradesPanel {
 		private static final long serialVersionUID = -8499921261606665631L;
-		private ButtonPanel viewButton;
+		private ButtonPanel viewButton,
+							unenrollButton;
 		private TextPanel gradePanel;
 		public ViewGradesPanel() {
 			super("View Grade", "View the grade of", "View Grade");
@@ -788,6 +1108,7 @@ public class StudentInfoSystem extends JFrame {
 					studentIDPanel.reload(new String[]{});
 					studentIDPanel.comboBox.setEnabled(false);
 					viewButton.button.setEnabled(false);
+					unenrollButton.button.setEnabled(false);
 					gradePanel.textField.setText("  ");
 					gradePanel.textField.setEnabled(false);
 				}
@@ -799,6 +1120,7 @@ public class StudentInfoSystem extends JFrame {
 					studentIDPanel.reload(new String[]{});
 					studentIDPanel.comboBox.setEnabled(false);
 					viewButton.button.setEnabled(false);
+					unenrollButton.button.setEnabled(false);
 					gradePanel.textField.setText("  ");
 					gradePanel.textField.setEnabled(false);
 				}
@@ -808,6 +1130,7 @@ public class StudentInfoSystem extends JFrame {
 				public void actionPerformed(ActionEvent e) {
 					super.actionPerformed(e);
 					viewButton.button.setEnabled(false);
+					unenrollButton.button.setEnabled(false);
 					gradePanel.textField.setText("  ");
 					gradePanel.textField.setEnabled(false);
 				}
@@ -815,6 +1138,7 @@ public class StudentInfoSystem extends JFrame {
 			studentIDPanel.comboBox.addActionListener(new ActionListener() {
 				public void actionPerformed(ActionEvent e) {
 					viewButton.button.setEnabled(true);
+					unenrollButton.button.setEnabled(true);
 					gradePanel.textField.setText("  ");
 					gradePanel.textField.setEnabled(false);
 				}
@@ -826,21 +1150,60 @@ public class StudentInfoSystem extends JFrame {
 			viewButton.button.addActionListener(new ActionListener() {
 				public void actionPerformed(ActionEvent e) {
 					try {
-						String grade = viewAddGrade(Short.parseShort(yearPanel.getSelectedItem()), semesterPanel.getSelectedItem(), 
-								Integer.parseInt(courseIDPanel.getSelectedItem()), Integer.parseInt(studentIDPanel.getSelectedItem()), "View", "");
-						if(grade != null) 
-							gradePanel.textField.setText(grade);
-						else
-							JOptionPane.showMessageDialog(null, "Grade has not yet been assigned.");
-					} catch (NumberFormatException | IOException exception) {
+						final short selectedYear = Short.parseShort(yearPanel.getSelectedItem());
+						final String selectedSemester = semesterPanel.getSelectedItem();
+						final int courseID = Integer.parseInt(courseIDPanel.getSelectedItem()),
+								  studentID = Integer.parseInt(studentIDPanel.getSelectedItem());
+						load(new RecordQuery<String>() {
+							protected String call(ScanMonitor monitor) throws IOException {
+								return store.viewAddGrade(selectedYear, selectedSemester, courseID, studentID, "View", "");
+							}
+							protected void succeeded(String grade) {
+								if(grade != null) 
+									gradePanel.textField.setText(grade);
+								else
+									JOptionPane.showMessageDialog(null, "Grade has not yet been assigned.");
+								gradePanel.textField.setEnabled(true);
+							}
+						});
+					} catch (NumberFormatException exception) {
+						JOptionPane.showMessageDialog(null, "Error: " + exception);
+						gradePanel.textField.setEnabled(true);
+					}
+				}
+			});
+			unenrollButton = new ButtonPanel("Unenroll (alt+U)");
+			unenrollButton.button.setMnemonic(KeyEvent.VK_U);
+			unenrollButton.button.setEnabled(false);
+			unenrollButton.button.setToolTipText("Drop the student from the course.");
+			unenrollButton.button.addActionListener(new ActionListener() {
+				public void actionPerformed(ActionEvent e) {
+					try {
+						final short selectedYear = Short.parseShort(yearPanel.getSelectedItem());
+						final String selectedSemester = semesterPanel.getSelectedItem();
+						final int courseID = Integer.parseInt(courseIDPanel.getSelectedItem()),
+								  studentID = Integer.parseInt(studentIDPanel.getSelectedItem());
+						int confirmUnenroll = JOptionPane.showConfirmDialog(null, "Drop student " + studentID + " from course " + courseID + " for " + selectedSemester + " " + selectedYear + "?",
+								"Unenroll", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
+						if(confirmUnenroll != JOptionPane.YES_OPTION) return;
+						save(new RecordQuery<Boolean>() {
+							protected Boolean call(ScanMonitor monitor) throws IOException {
+								return store.unenroll(selectedYear, selectedSemester, courseID, studentID);
+							}
+							protected void succeeded(Boolean unenrolled) {
+								JOptionPane.showMessageDialog(null, unenrolled ? "Student unenrolled." : "Student is not enrolled.");
+								resetPanel();
+							}
+						});
+					} catch (NumberFormatException exception) {
 						JOptionPane.showMessageDialog(null, "Error: " + exception);
 					}
-					gradePanel.textField.setEnabled(true);
 				}
 			});
 			gradePanel = new TextPanel("Grade",2);
 			gradePanel.textField.setEnabled(false);
 			addToCenter(viewButton, gradePanel);
+			addToCenter(unenrollButton);
 		}
 	}
 	
@@ -851,6 +1214,7 @@ public class StudentInfoSystem extends JFrame {
 	 * 		If no courses exist for a given year and semester, the user is informed by message dialog and the courseIDPanel is not enabled.
 	 * 		otherwise, the user selects a course, clicks the searchButton, and a list of the students taking the course for the given
 	 * 		year and semester are loaded into the JTable and displayed.
+	 * 		The list is shown through a ReportTableModel, so only its first page is read before it appears, and the rest as it is scrolled to.
 	 */
 	private class ReportPanel extends GRPanel {
 		private static final long serialVersionUID = -7073629582921359715L;
@@ -858,6 +1222,12 @@ public class StudentInfoSystem extends JFrame {
 		private JTable table;
 		private ButtonPanel searchButtonPanel;
 		private String[] columnNames = {"Student ID","Name","Grade"};
+		//Replaces the table's model, closing the report it was showing so its pages stop loading.
+		private void setTableModel(TableModel model) {
+			if(table.getModel() instanceof ReportTableModel)
+				((ReportTableModel) table.getModel()).close();
+			table.setModel(model);
+		}
 		public ReportPanel() {
 			super("Report of Enrolled Students", "View all of the students enrolled in a course for a given year and semester.", "Search");
 			yearPanel.comboBox.addActionListener(new YearListener() {
@@ -865,7 +1235,7 @@ public class StudentInfoSystem extends JFrame {
 				public void actionPerformed(ActionEvent e) {
 					super.actionPerformed(e);
 					searchButtonPanel.button.setEnabled(false);
-					table.setModel(new DefaultTableModel(new String[][]{}, columnNames));
+					setTableModel(new DefaultTableModel(new String[][]{}, columnNames));
 				}
 			});
 			semesterPanel.comboBox.addActionListener(new SemesterListener() {
@@ -873,13 +1243,14 @@ public class StudentInfoSystem extends JFrame {
 				public void actionPerformed(ActionEvent e) {
 					super.actionPerformed(e);
 					searchButtonPanel.button.setEnabled(false);
-					table.setModel(new DefaultTableModel(new String[][]{}, columnNames));
+					setTableModel(new DefaultTableModel(new String[][]{}, columnNames));
 				}
 			});
 			courseIDPanel.comboBox.addActionListener(new ActionListener() {
 				public void actionPerformed(ActionEvent e) {
+					cancelLoad();
 					searchButtonPanel.button.setEnabled(true);
-					table.setModel(new DefaultTableModel(new String[][]{}, columnNames));
+					setTableModel(new DefaultTableModel(new String[][]{}, columnNames));
 				}
 			});
 			searchButtonPanel = new ButtonPanel("Search (alt+S)");
@@ -889,9 +1260,20 @@ public class StudentInfoSystem extends JFrame {
 			searchButtonPanel.button.addActionListener(new ActionListener() {
 				public void actionPerformed(ActionEvent e) {
 					try {
-						table.setModel(new DefaultTableModel(getReportDataFromEnrollFile(Short.parseShort(yearPanel.getSelectedItem()), semesterPanel.getSelectedItem(),
-								Integer.parseInt((String) courseIDPanel.comboBox.getSelectedItem())), columnNames));
-					} catch (NumberFormatException | IOException  exception) {
+						final short selectedYear = Short.parseShort(yearPanel.getSelectedItem());
+						final String selectedSemester = semesterPanel.getSelectedItem();
+						final int courseID = Integer.parseInt((String) courseIDPanel.comboBox.getSelectedItem());
+						load(new RecordQuery<ReportTableModel>() {
+							protected ReportTableModel call(ScanMonitor monitor) throws IOException {
+								int rowCount = store.countEnrolledStudents(selectedYear, selectedSemester, courseID);
+								List<ReportRow> firstPage = store.getReportPage(selectedYear, selectedSemester, courseID, 0, 0, ReportTableModel.PAGE_ROWS);
+								return new ReportTableModel(ReportPanel.this, columnNames, selectedYear, selectedSemester, courseID, rowCount, firstPage);
+							}
+							protected void succeeded(ReportTableModel model) {
+								setTableModel(model);
+							}
+						});
+					} catch (NumberFormatException exception) {
 						JOptionPane.showMessageDialog(null, "Error: " + exception);
 					}
 				}
@@ -911,6 +1293,280 @@ public class StudentInfoSystem extends JFrame {
 		}
 	}
 	
+	/*
+	 * GradeAnalyticsPanel shows the grade statistics of the whole store, computed by StudentInfoStore.getGradeAnalytics(...) in one parallel pass.
+	 * 		The analysis only runs when the user clicks the analyzeButton, since it reads every enrollment the store holds.
+	 * 		The table then lists the grade counts, pass rate and withdraw rate of every course in every term, each term followed by a row of its totals,
+	 * 		and the summary label those of the whole history, with the mean GPA.
+	 * 		Once the analysis has run, the GPA of a student can be looked up by ID without reading anything again.
+	 */
+	private class GradeAnalyticsPanel extends TemplatePanel {
+		private static final long serialVersionUID = 1L;
+		private JScrollPane tablePane;
+		private JTable table;
+		private ButtonPanel analyzeButtonPanel,
+							lookupButtonPanel;
+		private LabelPanel summaryPanel;
+		private TextPanel studentIDPanel;
+		private GradeAnalytics analytics;
+		private String[] columnNames;
+		public GradeAnalyticsPanel() {
+			super("Grade Analytics", "View grade distributions, pass and withdraw rates, and GPAs.", "Click \"Analyze\", then look up a student's GPA by ID.");
+			List<String> columns = new ArrayList<>(Arrays.asList("Year", "Semester", "Course ID"));
+			columns.addAll(StudentInfoStore.GRADES);
+			columns.addAll(Arrays.asList("Pass", "Withdraw"));
+			columnNames = columns.toArray(new String[columns.size()]);
+			analyzeButtonPanel = new ButtonPanel("Analyze (alt+A)");
+			analyzeButtonPanel.button.setMnemonic(KeyEvent.VK_A);
+			analyzeButtonPanel.button.setToolTipText("Compute the grade statistics of every enrollment.");
+			analyzeButtonPanel.button.addActionListener(new ActionListener() {
+				public void actionPerformed(ActionEvent e) {
+					analyzeButtonPanel.button.setEnabled(false);
+					load(new RecordQuery<GradeAnalytics>() {
+						protected GradeAnalytics call(ScanMonitor monitor) throws IOException {
+							return store.getGradeAnalytics(monitor);
+						}
+						protected void succeeded(GradeAnalytics result) {
+							analytics = result;
+							table.setModel(new DefaultTableModel(toTableData(result), columnNames));
+							GradeDistribution overall = result.getOverallDistribution();
+							summaryPanel.label.setText(String.format("All terms: %d enrollments, %s passed, %s withdrew, mean GPA %s",
+									overall.getTotal(), percent(overall.getPassRate()), percent(overall.getWithdrawRate()), gpa(result.getMeanGPA())));
+							analyzeButtonPanel.button.setEnabled(true);
+							lookupButtonPanel.button.setEnabled(true);
+						}
+						@Override
+						protected void failed(Throwable failure) {
+							super.failed(failure);
+							analyzeButtonPanel.button.setEnabled(true);
+						}
+					});
+				}
+			});
+			studentIDPanel = new TextPanel("Student ID", 9);
+			lookupButtonPanel = new ButtonPanel("Look up GPA (alt+L)");
+			lookupButtonPanel.button.setMnemonic(KeyEvent.VK_L);
+			lookupButtonPanel.button.setToolTipText("Show the GPA of the student, from the last analysis.");
+			lookupButtonPanel.button.setEnabled(false);
+			lookupButtonPanel.button.addActionListener(new ActionListener() {
+				public void actionPerformed(ActionEvent e) {
+					try {
+						int studentID = Integer.parseInt(studentIDPanel.textField.getText().trim());
+						int graded = analytics.getGradedCourses(studentID);
+						if(graded == 0)
+							JOptionPane.showMessageDialog(null, "Student " + studentID + " has no graded courses.");
+						else
+							JOptionPane.showMessageDialog(null, "Student " + studentID + ": GPA " + gpa(analytics.getGPA(studentID)) + " over " + graded + " graded courses.");
+					} catch (NumberFormatException exception) {
+						JOptionPane.showMessageDialog(null, "Error: " + exception);
+					}
+				}
+			});
+			summaryPanel = new LabelPanel(" ");
+			table = new JTable(new String[][]{}, columnNames);
+			table.setRowHeight(30);
+			table.getTableHeader().setFont(new Font("Sans Serif", Font.PLAIN, 18));
+			table.setFont(new Font("Sans Serif", Font.PLAIN, 16));
+			tablePane = new JScrollPane(table);
+			tablePane.setPreferredSize(new Dimension(1000,300));
+			table.setFillsViewportHeight(true);
+			addToCenter(analyzeButtonPanel, summaryPanel);
+			addAsNewRow(studentIDPanel, lookupButtonPanel);
+			c.fill = GridBagConstraints.HORIZONTAL;
+			addToCenter(tablePane);
+		}
+		private String[][] toTableData(GradeAnalytics analytics) {
+			List<String[]> rows = new ArrayList<>();
+			for(Term term : analytics.getTerms()) {
+				for(Map.Entry<Integer,GradeDistribution> course : analytics.getCourseDistributions(term.getYear(), term.getSemester()).entrySet())
+					rows.add(toRow(term, String.valueOf(course.getKey()), course.getValue()));
+				rows.add(toRow(term, "All", analytics.getTermDistribution(term.getYear(), term.getSemester())));
+			}
+			return rows.toArray(new String[rows.size()][]);
+		}
+		private String[] toRow(Term term, String course, GradeDistribution distribution) {
+			List<String> row = new ArrayList<>(Arrays.asList(String.valueOf(term.getYear()), term.getSemester(), course));
+			for(String grade : StudentInfoStore.GRADES)
+				row.add(String.valueOf(distribution.getCount(grade)));
+			row.add(percent(distribution.getPassRate()));
+			row.add(percent(distribution.getWithdrawRate()));
+			return row.toArray(new String[row.size()]);
+		}
+		private String percent(double rate) {
+			return Double.isNaN(rate) ? "-" : String.format("%.1f%%", rate * 100);
+		}
+		private String gpa(double gpa) {
+			return Double.isNaN(gpa) ? "-" : String.format("%.2f", gpa);
+		}
+	}
+	
+	/*
+	 * ReportTableModel shows a course report in pages read from the store as the table asks for them, so a roster of any length appears as soon
+	 * as its first page has been read, and only a few pages of it are held in memory at once.
+	 *      -getValueAt(...) for a row whose page is not held shows the row as loading and queues a RecordQuery for the page. When the page arrives,
+	 *       its rows are repainted. A page the table has scrolled far past by the time the I/O thread gets to it is not read at all.
+	 *      -At most MAX_PAGES pages are held; the least recently shown is dropped first, and read again if it is scrolled back to.
+	 *      -Pages are found by student ID: the first ID of every page read is remembered (a few bytes a page), and a page is read from the nearest
+	 *       remembered page before it, skipping the rows in between in the index, so jumping to the end of a long roster reads no other page.
+	 *      -The row count is taken when the report is searched for. A student enrolled after that is not shown until the report is searched for again.
+	 * All of its methods run on the event dispatch thread, like the rest of the Swing code; only the page reads run on the I/O thread.
+	 */
+	private class ReportTableModel extends AbstractTableModel {
+		private static final long serialVersionUID = 4137020613875460541L;
+		static final int PAGE_ROWS = 100,
+						 MAX_PAGES = 10;
+		private final TemplatePanel panel;
+		private final String[] columnNames;
+		private final short year;
+		private final String semester;
+		private final int courseID,
+						  rowCount;
+		private final Map<Integer,List<ReportRow>> pages = new LinkedHashMap<Integer,List<ReportRow>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer,List<ReportRow>> eldest) {
+				return size() > MAX_PAGES;
+			}
+		};
+		private final TreeMap<Integer,Integer> pageStarts = new TreeMap<>(); //The first student ID of each page read so far, by page.
+		private final Set<Integer> loading = new HashSet<>();
+		private volatile int shownPage; //The page last asked for by the table; read by the I/O thread to skip pages that are no longer wanted.
+		private boolean closed;
+		public ReportTableModel(TemplatePanel panel, String[] columnNames, short year, String semester, int courseID, int rowCount, List<ReportRow> firstPage) {
+			this.panel = panel;
+			this.columnNames = columnNames;
+			this.year = year;
+			this.semester = semester;
+			this.courseID = courseID;
+			this.rowCount = rowCount;
+			pageStarts.put(0, 0);
+			addPage(0, firstPage);
+		}
+		public int getRowCount() {
+			return rowCount;
+		}
+		public int getColumnCount() {
+			return columnNames.length;
+		}
+		@Override
+		public String getColumnName(int column) {
+			return columnNames[column];
+		}
+		public Object getValueAt(int row, int column) {
+			int page = row / PAGE_ROWS;
+			shownPage = page;
+			List<ReportRow> rows = pages.get(page);
+			if(rows == null) {
+				loadPage(page);
+				return column == 1 ? "Loading..." : null;
+			}
+			if(row % PAGE_ROWS >= rows.size()) return null;  //Students unenrolled since the search leave the end of the report blank.
+			ReportRow reportRow = rows.get(row % PAGE_ROWS);
+			switch(column) {
+				case 0: return String.valueOf(reportRow.getStudentID());
+				case 1: return reportRow.getName();
+				default: return reportRow.getGrade();
+			}
+		}
+		//Stops loading pages once the table shows another model.
+		public void close() {
+			closed = true;
+		}
+		private void loadPage(final int page) {
+			if(closed || !loading.add(page)) return;
+			Map.Entry<Integer,Integer> start = pageStarts.floorEntry(page);
+			final int fromStudentID = start.getValue(),
+					  skip = (page - start.getKey()) * PAGE_ROWS;
+			panel.save(new RecordQuery<List<ReportRow>>() {
+				protected List<ReportRow> call(ScanMonitor monitor) throws IOException {
+					if(Math.abs(page - shownPage) > MAX_PAGES) return null;
+					return store.getReportPage(year, semester, courseID, fromStudentID, skip, PAGE_ROWS);
+				}
+				protected void succeeded(List<ReportRow> rows) {
+					loading.remove(page);
+					if(closed || rows == null) return;
+					addPage(page, rows);
+					fireTableRowsUpdated(page * PAGE_ROWS, Math.min(rowCount, (page + 1) * PAGE_ROWS) - 1);
+				}
+				@Override
+				protected void failed(Throwable failure) {
+					loading.remove(page);
+					if(!closed) super.failed(failure);
+				}
+			});
+		}
+		private void addPage(int page, List<ReportRow> rows) {
+			pages.put(page, rows);
+			if(!rows.isEmpty()) {
+				pageStarts.put(page, rows.get(0).getStudentID());
+				if(rows.size() == PAGE_ROWS)
+					pageStarts.put(page + 1, rows.get(rows.size() - 1).getStudentID() + 1);
+			}
+		}
+	}
+	
+	/*
+	 * A RecordQuery is one unit of record I/O requested by a panel. submit(...) queues it on the I/O thread and returns a CompletableFuture of its result.
+	 *      -call(...) runs on the I/O thread. The query passes itself in as the ScanMonitor, so long scans update the progress bar and stop once cancelled.
+	 *      -succeeded(...) or failed(...) then runs on the event dispatch thread. failed(...) shows the error by message dialog unless overridden.
+	 *      -cancel() is only called on the event dispatch thread. After it, neither callback runs, even if the I/O had already finished.
+	 */
+	private abstract class RecordQuery<T> implements ScanMonitor {
+		private final CompletableFuture<T> future = new CompletableFuture<>();
+		private volatile boolean cancelled;
+		private volatile int percentShown = -1;
+		private JProgressBar progressBar;
+		protected abstract T call(ScanMonitor monitor) throws IOException;
+		protected abstract void succeeded(T result);
+		protected void failed(Throwable failure) {
+			JOptionPane.showMessageDialog(null, "Error: " + failure);
+		}
+		public void progress(long done, long total) {
+			if(cancelled) throw new CancellationException();
+			final int percent = total <= 0 ? 100 : (int) (done * 100 / total);
+			if(percent != percentShown) {  //Only a change of whole percent is worth a trip to the event dispatch thread.
+				percentShown = percent;
+				SwingUtilities.invokeLater(new Runnable() {
+					public void run() {
+						if(!cancelled) progressBar.setValue(percent);
+					}
+				});
+			}
+		}
+		public CompletableFuture<T> submit(JProgressBar progressBar) {
+			this.progressBar = progressBar;
+			ioExecutor.execute(new Runnable() {
+				public void run() {
+					if(cancelled) {
+						future.cancel(false);
+						return;
+					}
+					try {
+						future.complete(call(RecordQuery.this));
+					} catch (CancellationException exception) {
+						future.cancel(false);
+					} catch (Exception exception) {
+						future.completeExceptionally(exception);
+					}
+				}
+			});
+			future.whenCompleteAsync(new BiConsumer<T,Throwable>() {
+				public void accept(T result, Throwable failure) {
+					if(cancelled || future.isCancelled()) return;
+					if(failure != null)
+						failed(failure instanceof CompletionException ? failure.getCause() : failure);
+					else
+						succeeded(result);
+				}
+			}, swingExecutor);
+			return future;
+		}
+		public void cancel() {
+			cancelled = true;
+			future.cancel(false);
+		}
+	}
+	
 	/*
 	 * The following four panels provide a simple way to encapsulate a JComponent with a preset border, size, and/or dimension. 
 	 * Being a panel also prevents the element from being fit to size and getting distorted/looking really ugly. 
@@ -969,252 +1625,62 @@ public class StudentInfoSystem extends JFrame {
 	}
 	
 	/*
-	 * writeSCRecord(...) writes a student/course record to its respective file (depending on the fileType passed to the method) and returns the ID generated.
-	 * Student/course records are functionally identical except for the record they are written in.
-	 * The ID is generated by taking the length of the respective student/course file, dividing by the length of a single student/course file,
-	 * and adding the respective student or course offset.
+	 * The following methods convert between the string fields of the panels and the typed records of the store. They are called on the I/O thread.
+	 * The text fields of an SCPanel are {Name, Address, Age, Year} for a student, and {Title, Description, Room, Major} for a course.
 	 */
-	public int writeSCRecord(String[] textField, String fileType) throws IOException {
-		if(fileType != "Student" && fileType != "Course") throw new IllegalArgumentException("Invalid file type.");
-		RandomAccessFile file = mapRecordToStream.get(fileType);
-		file.seek(file.length());
-		int ID = (int) file.length() / SC_RECORD_SIZE + OFFSET.get(fileType);
-		file.writeInt(ID);
-		for(int index = 0; index < 2; index++) {
-			file.writeChars(convertToProperLength(textField[index],TEXT_SIZE));
-		}
-		file.writeShort(Short.parseShort(textField[2]));
-		file.writeChars(convertToProperLength(textField[3],TEXT_SIZE));
-		return ID;
+	private int writeSCRecord(String[] textField, String fileType) throws IOException {
+		if(fileType == "Student")
+			return store.createStudent(new Student(textField[0], textField[1], Short.parseShort(textField[2]), textField[3]));
+		return store.createCourse(new Course(textField[0], textField[1], Short.parseShort(textField[2]), textField[3]));
 	}
 	
-	/*
-	 * writeEnrollRecord(...) is described in EnrollPanel
-	 */
-	public boolean writeEnrollRecord(short year, String semester, int courseID, int studentID) throws IOException {
-		RandomAccessFile file = mapRecordToStream.get("Enroll");
-		short yearField;
-		int	courseIDField,
-			studentIDField;
-		String semesterField;
-		boolean recordDoesNotAlreadyExist = true;
-		try {
-			file.seek(0);
-			while(true) {
-				yearField = file.readShort();
-				semesterField = readCharArray(file,6).trim();
-				courseIDField = file.readInt();
-				studentIDField = file.readInt();
-				if(year == yearField && semester.equals(semesterField) && courseID == courseIDField && studentID == studentIDField) {
-					recordDoesNotAlreadyExist = false;
-				}
-				file.seek(file.getFilePointer() + 4);
-			} 	
-		} catch(EOFException e) {}
-		if(recordDoesNotAlreadyExist) {
-			file.seek(file.length());
-			file.writeShort(year);
-			file.writeChars(convertToProperLength(semester,6));
-			file.writeInt(courseID);
-			file.writeInt(studentID);
-			file.writeChars("IP");
+	private String[] readTextFields(int recordID, String fileType) throws IOException {
+		if(fileType == "Student") {
+			Student student = store.readStudent(recordID);
+			return student == null ? null : new String[]{student.getName(), student.getAddress(), String.valueOf(student.getAge()), student.getYear()};
 		}
-		return recordDoesNotAlreadyExist;
+		Course course = store.readCourse(recordID);
+		return course == null ? null : new String[]{course.getTitle(), course.getDescription(), String.valueOf(course.getRoom()), course.getMajor()};
 	}
 	
 	/*
-	 * readTextFields(...) decodes the recordID passed to it into a byte position in the record, reversing the process that originally created the
-	 * ID. 
-	 * 		If the record does not exist (the recordID is either under or over the records in the file), null is returned.
-	 * 		otherwise, the text fields are read from file and returned.
+	 * Finds up to FIND_LIMIT students or courses by their text, as "ID - first text, second text" mapped to their ID, in the order found.
+	 * The words of query are matched as prefixes first; only if nothing matches is the search repeated allowing for typos.
 	 */
-	public String[] readTextFields(int recordID, String fileType) throws IOException {
-		if(fileType != "Student" && fileType != "Course") throw new IllegalArgumentException("Invalid file type.");
-		String[] textFields = new String[4];
-		try {
-			RandomAccessFile file = mapRecordToStream.get(fileType);
-			int bytePos = (recordID - OFFSET.get(fileType)) * SC_RECORD_SIZE + 4;
-			if(bytePos < 0) return null; //If bytePos negative (under file) return null.
-			file.seek(bytePos);
-			for(int index = 0; index < 2; index++)
-				textFields[index] = readCharArray(file,TEXT_SIZE).trim();
-			textFields[2] = String.valueOf(file.readShort()).trim();
-			textFields[3] = readCharArray(file,TEXT_SIZE).trim();
-			return textFields;     //If the textFields are successfully read in, they are returned.
-		} catch(EOFException e) {} //If bytePos is over file, EOFException is immediately thrown, and null is returned.
-		
-		return null;
+	private Map<String,Integer> findSCRecords(String query, String fileType) throws IOException {
+		Map<String,Integer> found = new LinkedHashMap<>();
+		if(fileType == "Student") {
+			List<Student> students = store.searchStudents(query, false, FIND_LIMIT);
+			if(students.isEmpty())
+				students = store.searchStudents(query, true, FIND_LIMIT);
+			for(Student student : students)
+				found.put(student.getID() + " - " + student.getName() + ", " + student.getAddress(), student.getID());
+		}
+		else {
+			List<Course> courses = store.searchCourses(query, false, FIND_LIMIT);
+			if(courses.isEmpty())
+				courses = store.searchCourses(query, true, FIND_LIMIT);
+			for(Course course : courses)
+				found.put(course.getID() + " - " + course.getTitle() + ", " + course.getDescription(), course.getID());
+		}
+		return found;
 	}
 	
-	/*
-	 * The existing text fields in the record are overwritten by new text field input from a user.
-	 * Note that viewUpdatePanel, the user of this method, already checked if the record existed with readTextFields,
-	 * and doesn't enable the updateButton unless the record exists, so verification that the record exists is unnecessary.
-	 */
-	public void updateTextFields(int recordID, String[] textField, String fileType) throws IOException {
-		if(fileType != "Student" && fileType != "Course") throw new IllegalArgumentException("Invalid file type.");
-		try {
-			RandomAccessFile file = mapRecordToStream.get(fileType);
-			file.seek((recordID - OFFSET.get(fileType)) * SC_RECORD_SIZE + 4);
-			for(int index = 0; index < 2; index++) {
-				file.writeChars(convertToProperLength(textField[index],TEXT_SIZE));
-			}
-			file.writeShort(Short.parseShort(textField[2]));
-			file.writeChars(convertToProperLength(textField[3],TEXT_SIZE));
-		} catch(EOFException e) {}
+	private void updateTextFields(int recordID, String[] textField, String fileType) throws IOException {
+		if(fileType == "Student")
+			store.updateStudent(new Student(recordID, textField[0], textField[1], Short.parseShort(textField[2]), textField[3]));
+		else
+			store.updateCourse(new Course(recordID, textField[0], textField[1], Short.parseShort(textField[2]), textField[3]));
 	}
 	
-	public String[] getIDsFromSCFile(String fileType) throws IOException {
-		if(fileType != "Student" && fileType != "Course") throw new IllegalArgumentException("Invalid file type.");
-		List<String> IDList = new ArrayList<>();
-		RandomAccessFile file = mapRecordToStream.get(fileType);
-		file.seek(0);
-		try {
-			while(true) {
-				IDList.add(String.valueOf(file.readInt()).trim());
-				file.seek(file.getFilePointer() + (SC_RECORD_SIZE - 4));
-			} 	
-		} catch(EOFException e) {}
-		
+	//JComboBox models take String arrays, so IDs from the store are converted before being loaded into one.
+	private String[] toStrings(Collection<Integer> IDs) {
+		List<String> IDList = new ArrayList<>(IDs.size());
+		for(Integer ID : IDs)
+			IDList.add(String.valueOf(ID));
 		return IDList.toArray(new String[IDList.size()]);
 	}
 	
-	public String[] getCourseIDsFromEnrollFile(short year, String semester) throws IOException {
-		Set<String> courseIDList = new TreeSet<>();
-		short yearField;
-		String semesterField;
-		try {
-			RandomAccessFile file = mapRecordToStream.get("Enroll");
-			file.seek(0);
-			while(true) {
-				yearField = file.readShort();
-				semesterField = readCharArray(file,6).trim();
-				if(year == yearField && semester.equals(semesterField)) {
-					courseIDList.add(String.valueOf(file.readInt()).trim());
-					file.seek(file.getFilePointer() + 8);
-				}
-				else 
-					file.seek(file.getFilePointer() + 12);
-			} 	
-		} catch(EOFException e) {}
-		
-		return courseIDList.toArray(new String[courseIDList.size()]);
-	}
-	
-	public String[] getStudentIDsFromEnrollFile(short year, String semester, int courseID) throws IOException {
-		List<String> studentIDList = new ArrayList<>();
-		short yearField;
-		int	courseIDField;
-		String semesterField;
-		try {
-			RandomAccessFile file = mapRecordToStream.get("Enroll");
-			file.seek(0);
-			while(true) {
-				yearField = file.readShort();
-				semesterField = readCharArray(file,6).trim();
-				courseIDField = file.readInt();
-				if(year == yearField && semester.equals(semesterField) && courseID == courseIDField) {
-					studentIDList.add(String.valueOf(file.readInt()).trim());
-					file.seek(file.getFilePointer() + 4);
-				}
-				else 
-					file.seek(file.getFilePointer() + 8);
-			} 	
-		} catch(EOFException e) {}
-		
-		return studentIDList.toArray(new String[studentIDList.size()]);
-	}
-	
-	//Allows for viewing the grade of or writing a grade to an existing enrollment record, depending on the switch "action" argument passed to the function.
-	public String viewAddGrade(short year, String semester, int courseID, int studentID, String action, String grade) throws IOException {
-		if(action != "View" && action != "Add") throw new IllegalArgumentException("Invalid action.");
-		RandomAccessFile file = mapRecordToStream.get("Enroll");
-		short yearField;
-		int	courseIDField,
-			studentIDField;
-		String semesterField;
-		try {
-			file.seek(0);
-			while(true) {
-				yearField = file.readShort();
-				semesterField = readCharArray(file,6).trim();
-				courseIDField = file.readInt();
-				studentIDField = file.readInt();
-				if(year == yearField && semester.equals(semesterField) && courseID == courseIDField && studentID == studentIDField) {
-					if(action == "View") {
-						if(!readCharArray(file,2).equals("IP")) {
-							file.seek(file.getFilePointer() - 4);
-							grade = readCharArray(file, 2).trim();
-						}
-						else 
-							grade = null;
-					}
-					else {
-						if(readCharArray(file,2).equals("IP")) {
-							file.seek(file.getFilePointer() - 4);
-							file.writeChars(convertToProperLength(grade,2));	
-						}
-						else 
-							grade = null;
-					}	
-				}
-				else
-					file.seek(file.getFilePointer() + 4);
-			} 	
-		} catch(EOFException e) {}
-		
-		return grade;
-	}
-	
-	public String[][] getReportDataFromEnrollFile(short year, String semester, int courseID) throws IOException {
-		RandomAccessFile enrollFile = mapRecordToStream.get("Enroll");
-		RandomAccessFile studentFile = mapRecordToStream.get("Student");
-		enrollFile.seek(0);
-		studentFile.seek(0);
-		short yearField;
-		int	courseIDField,
-			studentIDField;
-		String semesterField;
-		List<String[]> reportData = new ArrayList<String[]>();
-		try {
-			while(true) {
-				yearField = enrollFile.readShort();
-				semesterField = readCharArray(enrollFile,6).trim();
-				courseIDField = enrollFile.readInt();
-				if(year == yearField && semester.equals(semesterField) && courseID == courseIDField) {
-					String[] reportRow = new String[]{String.valueOf(studentIDField = enrollFile.readInt()),"",readCharArray(enrollFile,2).trim()};
-					studentFile.seek((studentIDField - OFFSET.get("Student")) * SC_RECORD_SIZE + 4);
-					reportRow[1] = readCharArray(studentFile,TEXT_SIZE).trim();
-					reportData.add(reportRow);
-				}
-				else {
-					enrollFile.seek(enrollFile.getFilePointer() + 8);
-				}
-			}
-		} catch(EOFException e){}
-		
-		return reportData.toArray(new String[reportData.size()][3]);
-	}
-	
-	private String readCharArray(RandomAccessFile file, int length) throws IOException {
-		char[] buffer = new char[length];
-		for(int index = 0; index < length; index++) 
-			buffer[index] = file.readChar();
-		return String.valueOf(buffer);
-	}
-	
-	/*
-	 * This method, convertToProperLength(..), is used to ensure that text strings stored in file are all the same length. 
-	 */
-	private String convertToProperLength(String text, int properLength) {
-		char[] converter = new char[properLength];
-		int textLength;
-		textLength = text.length();
-		for(int index = 0; index < textLength; index++)
-			converter[index] = text.charAt(index);
-		return String.valueOf(converter);
-	}
-	
 	/*
 	 * The JTextFieldLimit class was taken from here: https://stackoverflow.com/questions/3519151/how-to-limit-the-number-of-characters-in-jtextfield
 	 * This class is a subclass of JTextField that limits the maximum number of characters that can be typed into the text field. This ensures that
@@ -1250,7 +1716,8 @@ public class StudentInfoSystem extends JFrame {
 
 	}
 	
+	//Pass "--mmap" to scan the enroll file through a memory mapping instead of buffered reads.
 	public static void main(String[] args) {
-		new StudentInfoSystem();
+		new StudentInfoSystem(Arrays.asList(args).contains("--mmap"));
 	}
 }
\ No newline at end of file
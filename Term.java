@@ -0,0 +1,26 @@
+/*
+ * A term held by a store: a year and semester with an enrollment segment of its own, and the number of enrollments in it.
+ */
+public class Term {
+	private final short year;
+	private final String semester;
+	private final long enrollments;
+	public Term(short year, String semester, long enrollments) {
+		this.year = year;
+		this.semester = semester;
+		this.enrollments = enrollments;
+	}
+	public short getYear() {
+		return year;
+	}
+	public String getSemester() {
+		return semester;
+	}
+	public long getEnrollments() {
+		return enrollments;
+	}
+	@Override
+	public String toString() {
+		return semester + " " + year;
+	}
+}
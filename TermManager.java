@@ -0,0 +1,78 @@
+import java.io.File;
+import java.io.IOException;
+
+/*
+ * TermManager lists the terms of a store and archives, restores, drops or compacts whole terms. Each term is a segment file of its own, so none
+ * of these rewrite any other file: archiving moves the term's segment into an archive directory, restoring moves it back, dropping deletes it,
+ * and compacting rewrites it without the tombstones its unenrollments left. Without a term, --compact compacts every term that has any.
+ *
+ * Usage: java TermManager [--dir directory] --list
+ *        java TermManager [--dir directory] --archive year semester --to archiveDirectory
+ *        java TermManager [--dir directory] --restore year semester --from archiveDirectory
+ *        java TermManager [--dir directory] --drop year semester
+ *        java TermManager [--dir directory] --compact [year semester]
+ */
+public class TermManager {
+	public static void main(String[] args) throws IOException {
+		File directory = new File("."),
+			 archive = null;
+		String action = null,
+			   semester = null;
+		short year = 0;
+		for(int arg = 0; arg < args.length; arg++) {
+			switch(args[arg]) {
+				case "--dir": directory = new File(args[++arg]); break;
+				case "--list": action = args[arg]; break;
+				case "--compact":
+					action = args[arg];
+					if(arg + 2 < args.length && !args[arg + 1].startsWith("--")) {
+						year = Short.parseShort(args[++arg]);
+						semester = args[++arg];
+					}
+					break;
+				case "--archive":
+				case "--restore":
+				case "--drop":
+					action = args[arg];
+					year = Short.parseShort(args[++arg]);
+					semester = args[++arg];
+					break;
+				case "--to":
+				case "--from": archive = new File(args[++arg]); break;
+				default: throw new IllegalArgumentException("Unknown argument: " + args[arg]);
+			}
+		}
+		if(action == null) throw new IllegalArgumentException("One of --list, --archive, --restore, --drop or --compact is required.");
+		if((action.equals("--archive") || action.equals("--restore")) && archive == null)
+			throw new IllegalArgumentException(action + " needs an archive directory (--to or --from).");
+		try(StudentInfoStore store = new StudentInfoStore(directory)) {
+			switch(action) {
+				case "--list":
+					for(Term term : store.getTerms())
+						System.out.printf("%-12s %12d enrollments%n", term, term.getEnrollments());
+					break;
+				case "--archive":
+					if(!archive.isDirectory() && !archive.mkdirs()) throw new IOException("Cannot create " + archive);
+					store.archiveTerm(year, semester, archive);
+					System.out.println(semester + " " + year + " archived to " + archive + ".");
+					break;
+				case "--restore":
+					store.restoreTerm(year, semester, archive);
+					System.out.println(semester + " " + year + " restored from " + archive + ".");
+					break;
+				case "--drop":
+					store.dropTerm(year, semester);
+					System.out.println(semester + " " + year + " dropped.");
+					break;
+				case "--compact":
+					if(semester == null)
+						System.out.println(store.compact(0) + " terms compacted.");
+					else if(store.compactTerm(year, semester))
+						System.out.println(semester + " " + year + " compacted.");
+					else
+						System.out.println(semester + " " + year + " has no tombstones to compact.");
+					break;
+			}
+		}
+	}
+}
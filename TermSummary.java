@@ -0,0 +1,218 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/*
+ * TermSummary keeps, for every term in the catalog, the IDs of the courses with enrollments and the number of students enrolled in each, so
+ * the course lists of a term are read from memory without opening its segment, whatever its size.
+ *      -The store adds to the summary as it appends to a segment, and takes a term out of it as the term leaves the catalog.
+ *      -Unenrolling takes one off the course's count, and adds one to the term's count of tombstones, which is kept to match the one in the
+ *       segment's header. Tombstones are counted as records covered, but not as enrollments.
+ *      -The summary file is a RecordFormat header followed by SUMMARY_ENTRY_SIZE entries: for each term, one entry with the number of
+ *       segment records the summary covers (course ID TERM_RECORDS) and one with its tombstones (TERM_TOMBSTONES), then one per course
+ *       with its count. Like the catalog, it is rewritten
+ *       whole into a temporary file that is moved over the old one. It is only saved by save(), which the store calls at each checkpoint,
+ *       when no append is in progress, so the records a saved term covers are always the first records of its segment.
+ *      -When the summary is opened, a term whose segment holds more records than it covers (e.g. after a crash between checkpoints) is caught
+ *       up by reading the course IDs of just the records past those; a term it does not cover at all, covers more records of than its
+ *       segment holds, or whose tombstones do not match the segment's (e.g. after a compaction), is counted again from the whole segment. So
+ *       is every term when the file is missing or cannot be read.
+ *      -The methods of a summary are synchronized, so it can be read and changed from several threads.
+ */
+class TermSummary {
+	static final String FILE_NAME = "EnrollmentSummary.dat";
+	private static final int SUMMARY_ENTRY_SIZE = 16, //short year: 2 bytes + byte semester: 1 byte + 1 byte reserved + int courseID: 4 bytes + long count: 8 bytes
+							 TERM_RECORDS = -1, //The course ID of the entry holding the number of records a term covers,
+							 TERM_TOMBSTONES = -2; //and of the one holding its number of tombstones.
+	private final File file;
+	private final Map<Integer,SortedMap<Integer,Integer>> courses = new HashMap<>(); //Enrollment counts by course ID, by term.
+	private final Map<Integer,Long> records = new HashMap<>(); //The number of segment records each term covers.
+	private final Map<Integer,Integer> tombstones = new HashMap<>(); //The number of them that are tombstones.
+	private boolean changed;
+
+	//Opens the summary of a directory and brings it up to date with the segments of the catalog's terms.
+	public TermSummary(File directory, EnrollCatalog catalog) throws IOException {
+		this.file = new File(directory, FILE_NAME);
+		if(file.exists() && !load()) {
+			courses.clear();
+			records.clear();
+			tombstones.clear();
+		}
+		for(int term : catalog.terms())
+			catchUp(directory, term);
+		if(records.keySet().retainAll(catalog.terms()) | tombstones.keySet().retainAll(catalog.terms()) | courses.keySet().retainAll(catalog.terms())
+				|| !file.exists())
+			changed = true;
+		save();
+	}
+
+	//Returns the course IDs with enrollments in the term, in ID order, with the number of students enrolled in each.
+	public synchronized SortedMap<Integer,Integer> courses(int term) {
+		SortedMap<Integer,Integer> termCourses = courses.get(term);
+		return termCourses == null ? new TreeMap<Integer,Integer>() : new TreeMap<>(termCourses);
+	}
+
+	//The number of students enrolled in the course in the term.
+	public synchronized int count(int term, int courseID) {
+		SortedMap<Integer,Integer> termCourses = courses.get(term);
+		Integer count = termCourses == null ? null : termCourses.get(courseID);
+		return count == null ? 0 : count;
+	}
+
+	//The number of enrollments in the term, tombstones aside.
+	public synchronized long enrollments(int term) {
+		long enrollments = 0;
+		SortedMap<Integer,Integer> termCourses = courses.get(term);
+		if(termCourses != null) {
+			for(int count : termCourses.values())
+				enrollments += count;
+		}
+		return enrollments;
+	}
+
+	//The number of the term's records that are tombstones, and the number of records in all, for deciding whether to compact it.
+	public synchronized int tombstones(int term) {
+		Integer termTombstones = tombstones.get(term);
+		return termTombstones == null ? 0 : termTombstones;
+	}
+
+	public synchronized long records(int term) {
+		Long covered = records.get(term);
+		return covered == null ? 0 : covered;
+	}
+
+	//Counts the enrollments of records appended to the term's segment.
+	public synchronized void add(int term, ByteBuffer records) {
+		for(int at = 0; at + StudentInfoStore.ENROLL_RECORD_SIZE <= records.limit(); at += StudentInfoStore.ENROLL_RECORD_SIZE)
+			countEnrollment(term, records.getInt(at + RecordFormat.COURSE_AT));
+		Long covered = this.records.get(term);
+		this.records.put(term, (covered == null ? 0 : covered) + records.limit() / StudentInfoStore.ENROLL_RECORD_SIZE);
+		changed = true;
+	}
+
+	//Takes an unenrolled student off the course's count; the record stays behind as a tombstone.
+	public synchronized void unenroll(int term, int courseID) {
+		SortedMap<Integer,Integer> termCourses = termCourses(term);
+		Integer count = termCourses.get(courseID);
+		if(count == null || count == 1)
+			termCourses.remove(courseID);
+		else
+			termCourses.put(courseID, count - 1);
+		tombstones.put(term, tombstones(term) + 1);
+		changed = true;
+	}
+
+	public synchronized void remove(int term) {
+		if(records.remove(term) != null | tombstones.remove(term) != null | courses.remove(term) != null)
+			changed = true;
+	}
+
+	/*
+	 * Brings the term up to date with its segment file, reading the course IDs of the records it does not cover yet. Used when the summary is
+	 * opened, and when a term comes back into the catalog.
+	 */
+	public synchronized void catchUp(File directory, int term) throws IOException {
+		try(RandomAccessFile segment = new RandomAccessFile(EnrollCatalog.segmentFile(directory, term), "r")) {
+			long segmentRecords = RecordFormat.records(segment, StudentInfoStore.ENROLL_RECORD_SIZE);
+			int segmentTombstones = RecordFormat.tombstones(segment);
+			Long covered = records.get(term);
+			boolean sameTombstones = tombstones.containsKey(term) && tombstones.get(term) == segmentTombstones;
+			if(covered != null && covered == segmentRecords && sameTombstones) return;
+			if(covered == null || covered > segmentRecords || !sameTombstones) {
+				courses.remove(term);
+				covered = 0L;
+			}
+			RecordReader reader = new RecordReader(segment, StudentInfoStore.ENROLL_RECORD_SIZE, StudentInfoStore.HEADER_SIZE + covered * StudentInfoStore.ENROLL_RECORD_SIZE);
+			ByteBuffer record;
+			while((record = reader.next()) != null) {
+				if(record.get(record.position() + RecordFormat.GRADE_AT) != RecordFormat.DELETED)
+					countEnrollment(term, record.getInt(record.position() + RecordFormat.COURSE_AT));
+			}
+			records.put(term, segmentRecords);
+			tombstones.put(term, segmentTombstones);
+			changed = true;
+		}
+	}
+
+	//Writes the summary to its file if it changed since it was last saved. The caller makes sure no append is in progress.
+	public synchronized void save() throws IOException {
+		if(!changed) return;
+		int entries = records.size() * 2;
+		for(SortedMap<Integer,Integer> termCourses : courses.values())
+			entries += termCourses.size();
+		ByteBuffer summary = ByteBuffer.allocate(RecordFormat.HEADER_SIZE + entries * SUMMARY_ENTRY_SIZE);
+		summary.putInt(RecordFormat.MAGIC).putInt(RecordFormat.VERSION).putInt(SUMMARY_ENTRY_SIZE).putInt(0);
+		for(Map.Entry<Integer,Long> term : new TreeMap<>(records).entrySet()) {
+			short year = EnrollCatalog.year(term.getKey());
+			byte semester = EnrollCatalog.semester(term.getKey());
+			summary.putShort(year).put(semester).put((byte) 0).putInt(TERM_RECORDS).putLong(term.getValue());
+			summary.putShort(year).put(semester).put((byte) 0).putInt(TERM_TOMBSTONES).putLong(tombstones(term.getKey()));
+			SortedMap<Integer,Integer> termCourses = courses.get(term.getKey());
+			if(termCourses == null) continue;
+			for(Map.Entry<Integer,Integer> course : termCourses.entrySet())
+				summary.putShort(year).put(semester).put((byte) 0).putInt(course.getKey()).putLong(course.getValue());
+		}
+		summary.flip();
+		Path temporary = new File(file.getPath() + ".tmp").toPath();
+		try(FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			while(summary.hasRemaining())
+				channel.write(summary);
+			channel.force(true);
+		}
+		Files.move(temporary, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		changed = false;
+	}
+
+	//Returns false if the summary file cannot be read, in which case every term is counted again.
+	private boolean load() throws IOException {
+		try(RandomAccessFile summary = new RandomAccessFile(file, "r")) {
+			if(summary.length() < RecordFormat.HEADER_SIZE) return false;
+			RecordFormat.openFile(summary, SUMMARY_ENTRY_SIZE, FILE_NAME);
+			if((summary.length() - RecordFormat.HEADER_SIZE) % SUMMARY_ENTRY_SIZE != 0) return false;
+			RecordReader reader = new RecordReader(summary, SUMMARY_ENTRY_SIZE, RecordFormat.HEADER_SIZE);
+			ByteBuffer entry;
+			while((entry = reader.next()) != null) {
+				int term = EnrollCatalog.term(entry.getShort(), entry.get());
+				entry.get();
+				int courseID = entry.getInt();
+				long count = entry.getLong();
+				if(courseID == TERM_RECORDS)
+					records.put(term, count);
+				else if(courseID == TERM_TOMBSTONES)
+					tombstones.put(term, (int) count);
+				else if(!records.containsKey(term) || count <= 0 || count > Integer.MAX_VALUE)
+					return false;
+				else
+					termCourses(term).put(courseID, (int) count);
+			}
+			return true;
+		} catch (IOException exception) {
+			return false;
+		}
+	}
+
+	private void countEnrollment(int term, int courseID) {
+		SortedMap<Integer,Integer> termCourses = termCourses(term);
+		Integer count = termCourses.get(courseID);
+		termCourses.put(courseID, count == null ? 1 : count + 1);
+	}
+
+	private SortedMap<Integer,Integer> termCourses(int term) {
+		SortedMap<Integer,Integer> termCourses = courses.get(term);
+		if(termCourses == null) {
+			termCourses = new TreeMap<>();
+			courses.put(term, termCourses);
+		}
+		return termCourses;
+	}
+}
@@ -0,0 +1,370 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/*
+ * TextIndex is an inverted trigram index over the two text fields of the student or course records (Name and Address, or Title and
+ * Description), so records can be found by what they say rather than by ID.
+ *      -Text is split into words of letters and digits, lowercased. Each word is indexed under its trigrams, with two START marks in front, so
+ *       "ann" has the trigrams "^^a", "^an" and "ann": the first trigrams of a word are the trigrams of its prefixes, and a prefix query only
+ *       needs the trigrams of what was typed. Each trigram maps to a RosterBitmap of the IDs whose text has it.
+ *      -candidates(...) narrows a query down without reading any record: for a prefix query, to the IDs with every trigram of every query word;
+ *       for a fuzzy query, to the IDs sharing enough trigrams with every query word that the word could be within editsAllowed(...) edits of
+ *       one of theirs, since one edit changes at most three trigrams. The store then checks the candidates against their records with
+ *       matches(...), which is what decides.
+ *      -The index is built on first use, by build(...), which is handed every record; until then, add(...) and update(...) are not called,
+ *       so opening a store and bulk loading pay nothing for it. The store keeps it up to date from then on, under the index's lock.
+ *      -Once built, the index is written to a snapshot file by save(...) at each checkpoint at which it has changed, with the watermark it
+ *       covers: the number of record slots in the file at the time. The next store to open the file loads the snapshot with load(...) rather
+ *       than scanning every record, and indexes only the records past the watermark and those the log replay rewrote.
+ *      -The snapshot file is a RecordFormat header (record size 0), the long watermark and the int number of trigrams, then for each trigram its
+ *       three chars, the int number of its IDs and the IDs in ascending order, and last an int CRC32 of everything after the header. Like the
+ *       term summary, it is written whole into a temporary file that is moved over the old one.
+ */
+class TextIndex {
+	static final String FILE_SUFFIX = "TextIndex.dat"; //A snapshot is named after its file type, as in StudentTextIndex.dat.
+	private static final char START = '^';
+	private final Map<String,RosterBitmap> postings = new HashMap<>();
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private volatile boolean wanted; //Set once a build has started; records written before then are found by the build itself.
+	private boolean built, //Guarded by lock.
+					changed; //Since the index was last saved or loaded; guarded by lock.
+
+	//A source of every record to index, for build(...).
+	interface Records {
+		void forEach(TextIndex index) throws IOException;
+	}
+
+	public boolean isWanted() {
+		return wanted;
+	}
+
+	/*
+	 * Builds the index once, from records, which calls add(...) for every record written so far. Writers that publish a record or an update
+	 * while the build runs wait for it, then add their change themselves.
+	 */
+	public void build(Records records) throws IOException {
+		lock.writeLock().lock();
+		try {
+			if(built) return;
+			wanted = true;
+			records.forEach(this);
+			built = true;
+			changed = true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	//Indexes the texts of a new record. Called by build(...) with the lock held, and by the store once the index is wanted.
+	public void add(int ID, String... texts) {
+		lock.writeLock().lock();
+		try {
+			for(String trigram : trigrams(texts))
+				posting(trigram).add(ID);
+			changed = true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	//Reindexes a record whose texts changed from oldTexts to newTexts; only the trigrams that differ are touched.
+	public void update(int ID, String[] oldTexts, String[] newTexts) {
+		Set<String> oldTrigrams = trigrams(oldTexts),
+					newTrigrams = trigrams(newTexts);
+		lock.writeLock().lock();
+		try {
+			for(String trigram : oldTrigrams) {
+				if(!newTrigrams.contains(trigram)) {
+					RosterBitmap posting = postings.get(trigram);
+					if(posting != null && posting.remove(ID) && posting.isEmpty())
+						postings.remove(trigram);
+				}
+			}
+			for(String trigram : newTrigrams) {
+				if(!oldTrigrams.contains(trigram))
+					posting(trigram).add(ID);
+			}
+			changed = true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	//Takes the IDs out of every trigram, for records whose texts the index may not have right; the store then adds them with their texts as they are.
+	public void removeAll(RosterBitmap IDs) {
+		if(IDs.isEmpty()) return;
+		lock.writeLock().lock();
+		try {
+			Iterator<Map.Entry<String,RosterBitmap>> postingIterator = postings.entrySet().iterator();
+			while(postingIterator.hasNext()) {
+				Map.Entry<String,RosterBitmap> posting = postingIterator.next();
+				RosterBitmap remaining = posting.getValue().andNot(IDs);
+				if(remaining.isEmpty())
+					postingIterator.remove();
+				else
+					posting.setValue(remaining);
+			}
+			changed = true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/*
+	 * Writes the index to its snapshot file if it is built and has changed since it was last saved or loaded. watermark is the number of record
+	 * slots it covers; the caller makes sure no record is written meanwhile.
+	 */
+	public void save(File file, long watermark) throws IOException {
+		lock.writeLock().lock();
+		try {
+			if(!built || !changed) return;
+			int size = RecordFormat.HEADER_SIZE + 8 + 4 + 4; //Header + long watermark + int trigrams + int CRC32
+			Map<String,int[]> sorted = new TreeMap<>();
+			for(Map.Entry<String,RosterBitmap> posting : postings.entrySet()) {
+				int[] IDs = posting.getValue().toArray();
+				sorted.put(posting.getKey(), IDs);
+				size += 3 * 2 + 4 + IDs.length * 4;
+			}
+			ByteBuffer snapshot = ByteBuffer.allocate(size);
+			snapshot.putInt(RecordFormat.MAGIC).putInt(RecordFormat.VERSION).putInt(0).putInt(0);
+			snapshot.putLong(watermark).putInt(sorted.size());
+			for(Map.Entry<String,int[]> posting : sorted.entrySet()) {
+				for(int index = 0; index < 3; index++)
+					snapshot.putChar(posting.getKey().charAt(index));
+				snapshot.putInt(posting.getValue().length);
+				for(int ID : posting.getValue())
+					snapshot.putInt(ID);
+			}
+			CRC32 checksum = new CRC32();
+			checksum.update(snapshot.array(), RecordFormat.HEADER_SIZE, snapshot.position() - RecordFormat.HEADER_SIZE);
+			snapshot.putInt((int) checksum.getValue());
+			snapshot.flip();
+			Path temporary = new File(file.getPath() + ".tmp").toPath();
+			try(FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+				while(snapshot.hasRemaining())
+					channel.write(snapshot);
+				channel.force(true);
+			}
+			Files.move(temporary, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			changed = false;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/*
+	 * Loads the index from its snapshot file, leaving it built, and returns the watermark the snapshot covers; the caller indexes what has
+	 * been written since. Returns -1, and the index is built on first use as before, if there is no snapshot, it cannot be read, or it covers
+	 * more than the slots the record file now holds.
+	 */
+	public long load(File file, long slots) throws IOException {
+		if(!file.isFile()) return -1;
+		ByteBuffer snapshot = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+		int end = snapshot.limit() - 4;
+		if(end < RecordFormat.HEADER_SIZE + 8 + 4 || snapshot.getInt(0) != RecordFormat.MAGIC || snapshot.getInt(4) != RecordFormat.VERSION) return -1;
+		CRC32 checksum = new CRC32();
+		checksum.update(snapshot.array(), RecordFormat.HEADER_SIZE, end - RecordFormat.HEADER_SIZE);
+		if((int) checksum.getValue() != snapshot.getInt(end)) return -1;
+		snapshot.position(RecordFormat.HEADER_SIZE).limit(end);
+		long watermark = snapshot.getLong();
+		if(watermark < 0 || watermark > slots) return -1;
+		Map<String,RosterBitmap> loaded = new HashMap<>();
+		try {
+			for(int trigrams = snapshot.getInt(); trigrams > 0; trigrams--) {
+				String trigram = new String(new char[] {snapshot.getChar(), snapshot.getChar(), snapshot.getChar()});
+				RosterBitmap posting = new RosterBitmap();
+				for(int IDs = snapshot.getInt(); IDs > 0; IDs--)
+					posting.add(snapshot.getInt());
+				loaded.put(trigram, posting);
+			}
+		} catch (BufferUnderflowException exception) {
+			return -1;
+		}
+		lock.writeLock().lock();
+		try {
+			postings.clear();
+			postings.putAll(loaded);
+			wanted = true;
+			built = true;
+			changed = false;
+		} finally {
+			lock.writeLock().unlock();
+		}
+		return watermark;
+	}
+
+	/*
+	 * Returns the IDs that may match every word of the query, as a prefix (fuzzy false) or within editsAllowed(...) edits of a prefix (fuzzy
+	 * true), with the number of query trigrams each shares, highest first, so the likeliest matches are checked first. A query with no words
+	 * has no candidates.
+	 */
+	public List<Integer> candidates(String query, boolean fuzzy) {
+		List<String> words = words(query);
+		if(words.isEmpty()) return new ArrayList<>();
+		lock.readLock().lock();
+		try {
+			RosterBitmap matching = null;
+			Map<Integer,Integer> shared = new HashMap<>();
+			for(String word : words) {
+				Set<String> trigrams = trigrams(word);
+				RosterBitmap wordMatching;
+				if(!fuzzy) {
+					wordMatching = null;
+					for(String trigram : trigrams) {
+						RosterBitmap posting = postings.get(trigram);
+						if(posting == null) return new ArrayList<>();
+						wordMatching = wordMatching == null ? posting.copy() : wordMatching.and(posting);
+					}
+				}
+				else {
+					//An ID is a candidate if it shares at least as many trigrams as an ID within the allowed edits must.
+					int needed = Math.max(1, trigrams.size() - 3 * editsAllowed(word));
+					Map<Integer,Integer> counts = new HashMap<>();
+					for(String trigram : trigrams) {
+						RosterBitmap posting = postings.get(trigram);
+						if(posting == null) continue;
+						for(int ID : posting.toArray()) {
+							Integer count = counts.get(ID);
+							counts.put(ID, count == null ? 1 : count + 1);
+						}
+					}
+					wordMatching = new RosterBitmap();
+					for(Map.Entry<Integer,Integer> count : counts.entrySet()) {
+						if(count.getValue() >= needed) {
+							wordMatching.add(count.getKey());
+							Integer total = shared.get(count.getKey());
+							shared.put(count.getKey(), (total == null ? 0 : total) + count.getValue());
+						}
+					}
+				}
+				matching = matching == null ? wordMatching : matching.and(wordMatching);
+				if(matching.isEmpty()) break;
+			}
+			List<Integer> candidates = new ArrayList<>(matching.cardinality());
+			for(int ID : matching.toArray())
+				candidates.add(ID);
+			if(fuzzy) {
+				final Map<Integer,Integer> score = shared;
+				candidates.sort(new Comparator<Integer>() {
+					public int compare(Integer first, Integer second) {
+						return Integer.compare(score.get(second), score.get(first));
+					}
+				});
+			}
+			return candidates;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/*
+	 * Returns the number of edits by which a record with the given texts misses the query: the sum, over the query's words, of the fewest
+	 * edits that turn the word into a prefix of a word of the texts. Returns -1 if some query word is further than editsAllowed(...) from every
+	 * word (for a prefix query, anything but 0).
+	 */
+	public static int matches(String query, boolean fuzzy, String... texts) {
+		List<String> recordWords = new ArrayList<>();
+		for(String text : texts)
+			recordWords.addAll(words(text));
+		int edits = 0;
+		for(String word : words(query)) {
+			int allowed = fuzzy ? editsAllowed(word) : 0,
+				best = allowed + 1;
+			for(String recordWord : recordWords) {
+				best = Math.min(best, prefixDistance(word, recordWord, allowed));
+				if(best == 0) break;
+			}
+			if(best > allowed) return -1;
+			edits += best;
+		}
+		return edits;
+	}
+
+	//Words of up to two letters must match exactly, up to five allow one edit, and longer ones two, so a typo still finds "Smith" but "Li" does not match every short name.
+	static int editsAllowed(String word) {
+		return word.length() <= 2 ? 0 : word.length() <= 5 ? 1 : 2;
+	}
+
+	/*
+	 * Returns the Levenshtein distance from word to the closest prefix of recordWord, or more than limit once every prefix is further than
+	 * that. One row of the distance table is kept, and a row whose every entry is past limit ends the search early.
+	 */
+	static int prefixDistance(String word, String recordWord, int limit) {
+		int[] row = new int[recordWord.length() + 1],
+			  next = new int[recordWord.length() + 1];
+		for(int column = 0; column < row.length; column++)
+			row[column] = column;
+		for(int line = 1; line <= word.length(); line++) {
+			next[0] = line;
+			int smallest = next[0];
+			for(int column = 1; column < row.length; column++) {
+				int substitute = row[column - 1] + (word.charAt(line - 1) == recordWord.charAt(column - 1) ? 0 : 1);
+				next[column] = Math.min(substitute, Math.min(row[column], next[column - 1]) + 1);
+				smallest = Math.min(smallest, next[column]);
+			}
+			if(smallest > limit) return limit + 1;
+			int[] swap = row;
+			row = next;
+			next = swap;
+		}
+		int best = row[0];
+		for(int distance : row)
+			best = Math.min(best, distance);
+		return best;
+	}
+
+	//Splits text into its words: runs of letters and digits, lowercased.
+	static List<String> words(String text) {
+		List<String> words = new ArrayList<>();
+		StringBuilder word = new StringBuilder();
+		for(int index = 0; index <= text.length(); index++) {
+			char ch = index < text.length() ? text.charAt(index) : ' ';
+			if(Character.isLetterOrDigit(ch))
+				word.append(Character.toLowerCase(ch));
+			else if(word.length() > 0) {
+				words.add(word.toString());
+				word.setLength(0);
+			}
+		}
+		return words;
+	}
+
+	private static Set<String> trigrams(String... texts) {
+		Set<String> trigrams = new HashSet<>();
+		for(String text : texts) {
+			for(String word : words(text)) {
+				String marked = "" + START + START + word;
+				for(int index = 0; index + 3 <= marked.length(); index++)
+					trigrams.add(marked.substring(index, index + 3));
+			}
+		}
+		return trigrams;
+	}
+
+	private RosterBitmap posting(String trigram) {
+		RosterBitmap posting = postings.get(trigram);
+		if(posting == null) {
+			posting = new RosterBitmap();
+			postings.put(trigram, posting);
+		}
+		return posting;
+	}
+}
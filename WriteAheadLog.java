@@ -0,0 +1,203 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/*
+ * WriteAheadLog makes the writes of a store durable without forcing the data files after every operation.
+ *      -Every write to a data file (an appended batch of records, a rewritten record, a grade) is first appended to the log as a physical redo
+ *       entry: the file, the offset and the bytes. Only once the log has been forced to disk is the data file written, and that write is left in
+ *       the page cache; the data files are forced later, all at once, by a checkpoint, after which the log is emptied.
+ *      -sync(...) is a group commit. The first thread to need a force becomes the leader and forces everything appended so far; the threads that
+ *       appended while it was forcing wait for it, and when they get their turn their entries are usually already durable, so one force covers
+ *       a whole group of concurrent operations.
+ *      -When a store is opened, replay(...) applies every complete entry of a log left behind by a crash to its file, forces the files and empties
+ *       the log. Entries are physical and idempotent, so replaying one that had already reached its file does no harm, and a torn entry at the
+ *       end of the log (one whose operation was never acknowledged) is dropped.
+ *
+ * The log file is a RecordFormat header (with a record size of 0, since entries vary in length) followed by entries of:
+ *      int bodyLength, int CRC32 of the body, then the body: byte target, int term, long offset, the data
+ * target is STUDENT_FILE, COURSE_FILE or ENROLL_SEGMENT; term is only used by ENROLL_SEGMENT, and names the segment as the EnrollCatalog does.
+ */
+class WriteAheadLog implements Closeable {
+	static final String FILE_NAME = "WriteAheadLog.dat";
+	static final byte STUDENT_FILE = 0,
+					  COURSE_FILE = 1,
+					  ENROLL_SEGMENT = 2;
+	private static final int ENTRY_HEADER_SIZE = 8, //int: 4 bytes + int: 4 bytes
+							 BODY_HEADER_SIZE = 13; //byte: 1 byte + int: 4 bytes + long: 8 bytes
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private final Object syncLock = new Object();
+	private long end; //Guarded by this.
+	private volatile long durable;
+	private volatile IOException failure;
+	//Opens the log of a directory, which must be empty: a log left with entries by a crash is replayed first.
+	public WriteAheadLog(File directory) throws IOException {
+		file = new RandomAccessFile(new File(directory, FILE_NAME), "rw");
+		channel = file.getChannel();
+		try {
+			RecordFormat.openFile(file, 0, FILE_NAME);
+			if(file.length() > RecordFormat.HEADER_SIZE) throw new IOException(FILE_NAME + " holds entries that have not been replayed.");
+		} catch (IOException exception) {
+			file.close();
+			throw exception;
+		}
+		end = durable = RecordFormat.HEADER_SIZE;
+	}
+
+	/*
+	 * Appends an entry for writing data, from its position to its limit, at offset in the target file, and returns the log position just past
+	 * it, which is what sync(...) is given to make the entry durable. data itself is left as it was.
+	 */
+	public synchronized long append(byte target, int term, long offset, ByteBuffer data) throws IOException {
+		checkFailure();
+		ByteBuffer body = data.duplicate();
+		ByteBuffer entry = ByteBuffer.allocate(ENTRY_HEADER_SIZE + BODY_HEADER_SIZE + body.remaining());
+		entry.position(ENTRY_HEADER_SIZE);
+		entry.put(target).putInt(term).putLong(offset).put(body);
+		CRC32 checksum = new CRC32();
+		checksum.update(entry.array(), ENTRY_HEADER_SIZE, entry.capacity() - ENTRY_HEADER_SIZE);
+		entry.putInt(0, entry.capacity() - ENTRY_HEADER_SIZE).putInt(4, (int) checksum.getValue());
+		entry.rewind();
+		try {
+			while(entry.hasRemaining())
+				channel.write(entry, end + entry.position());
+		} catch (IOException exception) {
+			failure = exception;
+			throw exception;
+		}
+		end += entry.capacity();
+		StoreMetrics.written(entry.capacity());
+		return end;
+	}
+
+	//Chooses where an entry's data goes, as the entry is appended; see append(..., Placement, ...).
+	interface Placement {
+		long place(ByteBuffer data) throws IOException;
+	}
+
+	/*
+	 * Appends an entry like append(...) above, but with the offset chosen by placement, which is called once no other entry can be appended
+	 * and may fill in data before it is logged. Offsets chosen this way are in the order the log holds their entries.
+	 */
+	public synchronized long append(byte target, int term, Placement placement, ByteBuffer data) throws IOException {
+		checkFailure();
+		return append(target, term, placement.place(data), data);
+	}
+
+	//Returns once the log is durable up to position, forcing it if no other thread already has.
+	public void sync(long position) throws IOException {
+		if(durable >= position) return;
+		synchronized(syncLock) {
+			if(durable >= position) return;  //Forced by the leader of the group this thread was waiting behind.
+			checkFailure();
+			long forced = size();
+			try {
+				channel.force(false);
+			} catch (IOException exception) {  //Whether anything after the last force reached the disk is unknown, so nothing more is acknowledged.
+				failure = exception;
+				throw exception;
+			}
+			durable = forced;
+		}
+	}
+
+	//The length of the log, in bytes. A checkpoint is due once it grows past the store's limit.
+	public synchronized long size() {
+		return end;
+	}
+
+	//Empties the log once a checkpoint has forced every data file. No entry may be appended while this runs.
+	public void reset() throws IOException {
+		synchronized(syncLock) {
+			synchronized(this) {
+				checkFailure();
+				file.setLength(RecordFormat.HEADER_SIZE);
+				channel.force(true);
+				end = durable = RecordFormat.HEADER_SIZE;
+			}
+		}
+	}
+
+	private void checkFailure() throws IOException {
+		if(failure != null) throw new IOException("The write-ahead log failed; the store must be reopened.", failure);
+	}
+
+	public void close() throws IOException {
+		file.close();
+	}
+
+	//Told of each entry replay(...) applies, so the store can bring what it keeps of the files (its text indexes) up to date with them.
+	interface ReplayListener {
+		void replayed(byte target, int term, long offset, int length) throws IOException;
+	}
+
+	/*
+	 * Applies every complete entry of the log in the directory, in order, then forces the files it wrote and empties the log. Returns the
+	 * number of entries applied; a directory without a log has none. Must run before the store opens any of the files.
+	 */
+	static int replay(File directory, ReplayListener listener) throws IOException {
+		File logFile = new File(directory, FILE_NAME);
+		if(!logFile.isFile()) return 0;
+		Map<String,RandomAccessFile> targets = new HashMap<>();
+		int applied = 0;
+		try(RandomAccessFile log = new RandomAccessFile(logFile, "rw")) {
+			if(RecordFormat.version(log) != RecordFormat.VERSION) return 0;
+			FileChannel channel = log.getChannel();
+			long position = RecordFormat.HEADER_SIZE;
+			ByteBuffer header = ByteBuffer.allocate(ENTRY_HEADER_SIZE);
+			while(position + ENTRY_HEADER_SIZE <= channel.size()) {
+				header.clear();
+				while(header.hasRemaining() && channel.read(header, position + header.position()) >= 0);
+				int bodyLength = header.getInt(0);
+				if(bodyLength < BODY_HEADER_SIZE || position + ENTRY_HEADER_SIZE + bodyLength > channel.size()) break; //A torn entry ends the log.
+				ByteBuffer body = ByteBuffer.allocate(bodyLength);
+				while(body.hasRemaining() && channel.read(body, position + ENTRY_HEADER_SIZE + body.position()) >= 0);
+				CRC32 checksum = new CRC32();
+				checksum.update(body.array(), 0, bodyLength);
+				if((int) checksum.getValue() != header.getInt(4)) break;
+				body.flip();
+				byte target = body.get();
+				int term = body.getInt();
+				long offset = body.getLong();
+				RandomAccessFile file = target(directory, target, term, targets);
+				if(file != null) {
+					while(body.hasRemaining())
+						file.getChannel().write(body, offset + body.position() - BODY_HEADER_SIZE);
+					listener.replayed(target, term, offset, bodyLength - BODY_HEADER_SIZE);
+					++applied;
+				}
+				position += ENTRY_HEADER_SIZE + bodyLength;
+			}
+			for(RandomAccessFile file : targets.values())
+				file.getChannel().force(false);
+			log.setLength(RecordFormat.HEADER_SIZE);
+			channel.force(true);
+		} finally {
+			for(RandomAccessFile file : targets.values())
+				file.close();
+		}
+		return applied;
+	}
+
+	//Opens the file an entry is for, once per replay. A segment whose file is gone (which a checkpoint before every term change prevents) is skipped.
+	private static RandomAccessFile target(File directory, byte target, int term, Map<String,RandomAccessFile> targets) throws IOException {
+		File file;
+		switch(target) {
+			case STUDENT_FILE: file = new File(directory, "StudentFile.dat"); break;
+			case COURSE_FILE: file = new File(directory, "CourseFile.dat"); break;
+			case ENROLL_SEGMENT: file = EnrollCatalog.segmentFile(directory, term); break;
+			default: throw new IOException(FILE_NAME + " has an entry for an unknown file (" + target + ").");
+		}
+		if(!file.isFile()) return null;
+		if(!targets.containsKey(file.getName()))
+			targets.put(file.getName(), new RandomAccessFile(file, "rw"));
+		return targets.get(file.getName());
+	}
+}